@@ -0,0 +1,194 @@
+package net.theJ89.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import net.theJ89.forge.ForgeDownload;
+import net.theJ89.forge.ForgeIndex;
+import net.theJ89.forge.ForgeIndex.ParseMode;
+import net.theJ89.forge.ForgeIndexContentHandler;
+import net.theJ89.forge.ForgeVersion;
+import net.theJ89.forge.MinecraftVersion;
+
+/**
+ * Compares the two ways ForgeIndex can parse index pages (ParseMode.DOM and ParseMode.STREAMING) on the saved Forge Files index pages in bench/fixtures/forge/,
+ * then times each of them and reports how much heap each of them needs.
+ *
+ * The pages are served from a local HTTP server, so ForgeIndex.parse() fetches them just as it would from the Forge Files website.
+ * The first page (index_1.12.2.html) is always parsed into a DOM, since its links to the other pages are needed; the other pages are parsed the given way.
+ * Downloads aren't probed for their sizes.
+ *
+ * Before timing anything, this checks that both modes report the same Minecraft versions, Forge versions and downloads to the handler, in the same order.
+ * Heap is measured as the peak heap use during a single parse, over what was in use before it; it includes garbage that hasn't been collected yet,
+ * so it's steadier with a small heap (e.g. -Xmx64m).
+ *
+ * Usage:
+ *     java -cp <classpath> net.theJ89.bench.ForgeIndexParseBenchmark <fixtures directory> [iterations]
+ */
+public class ForgeIndexParseBenchmark {
+    private static final String ROOT_PAGE          = "index_1.12.2.html";
+    private static final int    DEFAULT_ITERATIONS = 20;
+    
+    /**
+     * Records everything a parse reports to the handler, in the order it's reported.
+     */
+    private static class RecordingHandler implements ForgeIndexContentHandler {
+        private final List< String > events = new ArrayList< String >();
+        
+        @Override
+        public void startMinecraft( final MinecraftVersion mv ) {
+            this.events.add( String.format( "minecraft %s latest=%s recommended=%s", mv.getName(), mv.getLatest(), mv.getRecommended() ) );
+        }
+        
+        @Override
+        public void endMinecraft( final MinecraftVersion mv ) {
+            this.events.add( "end " + mv.getName() );
+        }
+        
+        @Override
+        public void forge( final ForgeVersion fv ) {
+            this.events.add( String.format( "forge %s %s", fv.getName(), fv.getTime() ) );
+        }
+        
+        //Don't probe the downloads' sizes
+        @Override
+        public boolean startDownload( final ForgeDownload fd ) {
+            return false;
+        }
+        
+        @Override
+        public void endDownload( final ForgeDownload fd ) {
+            this.events.add( String.format( "download %s %s md5=%s sha1=%s size=%s", fd.getType(), fd.getURL(), fd.getMD5(), fd.getSHA1(), fd.getSize() ) );
+        }
+    }
+    
+    @FunctionalInterface
+    private static interface Parse {
+        void run() throws Exception;
+    }
+    
+    private ForgeIndexParseBenchmark() {
+        throw new Error();
+    }
+    
+    public static void main( final String[] args ) throws Exception {
+        if( args.length < 1 ) {
+            System.err.println( "Usage: ForgeIndexParseBenchmark <fixtures directory> [iterations]" );
+            return;
+        }
+        Path fixtures   = Paths.get( args[0] );
+        int  iterations = args.length > 1 ? Integer.parseInt( args[1] ) : DEFAULT_ITERATIONS;
+        
+        HttpServer server = serve( fixtures );
+        try {
+            String url = String.format( "http://%s:%d/%s", server.getAddress().getHostString(), server.getAddress().getPort(), ROOT_PAGE );
+            
+            List< String > dom       = parse( url, ParseMode.DOM );
+            List< String > streaming = parse( url, ParseMode.STREAMING );
+            compare( dom, streaming );
+            System.out.println( String.format( "Both modes report the same %d events.", dom.size() ) );
+            
+            for( ParseMode mode : ParseMode.values() )
+                time( mode.name(), iterations, () -> parse( url, mode ) );
+            for( ParseMode mode : ParseMode.values() )
+                heap( mode.name(), () -> parse( url, mode ) );
+        } finally {
+            server.stop( 0 );
+        }
+    }
+    
+    /**
+     * Parses the index at the given URL the given way and returns what it reported to the handler.
+     */
+    private static List< String > parse( final String url, final ParseMode mode ) throws Exception {
+        RecordingHandler handler = new RecordingHandler();
+        ForgeIndex.parse( url, handler, ForgeIndex.DEFAULT_THREADS, ForgeIndex.ALL_VERSIONS, mode );
+        return handler.events;
+    }
+    
+    /**
+     * Checks that both modes reported the same events, and if they didn't, points out the first difference.
+     */
+    private static void compare( final List< String > dom, final List< String > streaming ) {
+        int count = Math.min( dom.size(), streaming.size() );
+        for( int i = 0; i < count; ++i )
+            if( !dom.get( i ).equals( streaming.get( i ) ) )
+                throw new RuntimeException( String.format( "The modes differ at event %d:%n  DOM:       %s%n  STREAMING: %s", i, dom.get( i ), streaming.get( i ) ) );
+        if( dom.size() != streaming.size() )
+            throw new RuntimeException( String.format( "DOM reported %d events, but STREAMING reported %d.", dom.size(), streaming.size() ) );
+    }
+    
+    /**
+     * Serves the files in the given directory over HTTP on the loopback interface.
+     */
+    private static HttpServer serve( final Path directory ) throws IOException {
+        HttpServer server = HttpServer.create( new InetSocketAddress( InetAddress.getLoopbackAddress(), 0 ), 0 );
+        server.createContext( "/", ( HttpExchange exchange ) -> {
+            try {
+                Path file = directory.resolve( exchange.getRequestURI().getPath().substring( 1 ) ).normalize();
+                if( !file.startsWith( directory.normalize() ) || !Files.isRegularFile( file ) ) {
+                    exchange.sendResponseHeaders( 404, -1 );
+                    return;
+                }
+                byte[] content = Files.readAllBytes( file );
+                exchange.getResponseHeaders().set( "Content-Type", "text/html; charset=utf-8" );
+                exchange.sendResponseHeaders( 200, content.length );
+                try( OutputStream out = exchange.getResponseBody() ) {
+                    out.write( content );
+                }
+            } finally {
+                exchange.close();
+            }
+        } );
+        server.start();
+        return server;
+    }
+    
+    /**
+     * Runs the given parse as many times as we've been asked to, once to warm up and once more to time it, and prints the average time.
+     */
+    private static void time( final String name, final int iterations, final Parse parse ) throws Exception {
+        for( int i = 0; i < iterations; ++i )
+            parse.run();
+        long start = System.nanoTime();
+        for( int i = 0; i < iterations; ++i )
+            parse.run();
+        long average = ( System.nanoTime() - start ) / iterations;
+        System.out.println( String.format( "%-26s %8.3f ms", name + ":", average / 1e6 ) );
+    }
+    
+    /**
+     * Runs the given parse once and prints the peak heap use during the parse, over what was in use before it.
+     */
+    private static void heap( final String name, final Parse parse ) throws Exception {
+        List< MemoryPoolMXBean > pools = new ArrayList< MemoryPoolMXBean >();
+        for( MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() )
+            if( pool.getType() == MemoryType.HEAP )
+                pools.add( pool );
+        
+        System.gc();
+        long before = 0;
+        for( MemoryPoolMXBean pool : pools ) {
+            pool.resetPeakUsage();
+            before += pool.getUsage().getUsed();
+        }
+        parse.run();
+        long peak = 0;
+        for( MemoryPoolMXBean pool : pools )
+            peak += pool.getPeakUsage().getUsed();
+        System.out.println( String.format( "%-26s %8.1f MB", name + " peak heap:", ( peak - before ) / 1e6 ) );
+    }
+}
@@ -0,0 +1,142 @@
+package net.theJ89.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Date;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.mojang.launcher.updater.DateTypeAdapter;
+import com.mojang.launcher.updater.LowerCaseEnumTypeAdapterFactory;
+import com.mojang.launcher.updater.download.assets.AssetIndex;
+import com.mojang.launcher.updater.download.assets.AssetIndex.AssetObject;
+
+import net.minecraft.launcher.updater.CompleteMinecraftVersion;
+
+/**
+ * Compares the streaming type adapters (e.g. CompleteMinecraftVersion.Adapter) with Gson's reflective adapters on the version and asset index fixtures in bench/fixtures/,
+ * then times how long each takes to parse them.
+ *
+ * Before timing anything, this checks that:
+ * <ul>
+ * <li>the adapters read the same version as the reflective adapters do (compared by serializing both reflectively),</li>
+ * <li>the adapters read the same asset objects as the reflective adapters do (AssetIndex is compact now, so it's compared with a plain map of the objects),</li>
+ * <li>and whatever the adapters write, they read back unchanged.</li>
+ * </ul>
+ *
+ * Usage:
+ *     java -cp <classpath> net.theJ89.bench.MetadataParseBenchmark <fixtures directory> [iterations]
+ */
+public class MetadataParseBenchmark {
+    private static final String VERSION_FIXTURE     = "version_1.12.2.json";
+    private static final String ASSET_INDEX_FIXTURE = "asset_index_1.12.json";
+    private static final int    DEFAULT_ITERATIONS  = 200;
+    
+    //What an asset index looked like before it was made compact, for the reflective adapters to read
+    private static class ReflectiveAssetIndex {
+        private Map< String, ReflectiveAssetObject > objects;
+        private boolean                              virtual;
+    }
+    
+    private static class ReflectiveAssetObject {
+        private String hash;
+        private long   size;
+    }
+    
+    private MetadataParseBenchmark() {
+        throw new Error();
+    }
+    
+    public static void main( final String[] args ) throws IOException {
+        if( args.length < 1 ) {
+            System.err.println( "Usage: MetadataParseBenchmark <fixtures directory> [iterations]" );
+            return;
+        }
+        Path fixtures   = Paths.get( args[0] );
+        int  iterations = args.length > 1 ? Integer.parseInt( args[1] ) : DEFAULT_ITERATIONS;
+        
+        String version    = new String( Files.readAllBytes( fixtures.resolve( VERSION_FIXTURE     ) ), StandardCharsets.UTF_8 );
+        String assetIndex = new String( Files.readAllBytes( fixtures.resolve( ASSET_INDEX_FIXTURE ) ), StandardCharsets.UTF_8 );
+        
+        Gson reflective = new GsonBuilder()
+            .registerTypeAdapter( Date.class, new DateTypeAdapter() )
+            .registerTypeAdapterFactory( new LowerCaseEnumTypeAdapterFactory() )
+            .create();
+        Gson streaming = new GsonBuilder()
+            .registerTypeAdapter( Date.class,                     new DateTypeAdapter()                  )
+            .registerTypeAdapter( CompleteMinecraftVersion.class, new CompleteMinecraftVersion.Adapter() )
+            .registerTypeAdapter( AssetIndex.class,               new AssetIndex.Adapter()               )
+            .registerTypeAdapterFactory( new LowerCaseEnumTypeAdapterFactory() )
+            .create();
+        
+        checkVersion( reflective, streaming, version );
+        checkAssetIndex( reflective, streaming, assetIndex );
+        System.out.println( "The streaming adapters read the fixtures the same way the reflective adapters do." );
+        
+        time( "Version (reflective)",      iterations, () -> reflective.fromJson( version,    CompleteMinecraftVersion.class ) );
+        time( "Version (streaming)",       iterations, () -> streaming.fromJson(  version,    CompleteMinecraftVersion.class ) );
+        time( "Asset index (reflective)",  iterations, () -> reflective.fromJson( assetIndex, ReflectiveAssetIndex.class     ) );
+        time( "Asset index (streaming)",   iterations, () -> streaming.fromJson(  assetIndex, AssetIndex.class               ) );
+    }
+    
+    /**
+     * Checks that the streaming and reflective adapters read the same version from the given JSON, and that the streaming adapter reads back what it writes.
+     */
+    private static void checkVersion( final Gson reflective, final Gson streaming, final String json ) {
+        JsonElement expected = reflective.toJsonTree( reflective.fromJson( json, CompleteMinecraftVersion.class ) );
+        
+        CompleteMinecraftVersion read = streaming.fromJson( json, CompleteMinecraftVersion.class );
+        if( !expected.equals( reflective.toJsonTree( read ) ) )
+            throw new RuntimeException( "The streaming adapter read a different version than the reflective adapter did." );
+        
+        CompleteMinecraftVersion reread = streaming.fromJson( streaming.toJson( read ), CompleteMinecraftVersion.class );
+        if( !expected.equals( reflective.toJsonTree( reread ) ) )
+            throw new RuntimeException( "The streaming adapter didn't read back the version it wrote." );
+    }
+    
+    /**
+     * Checks that the streaming and reflective adapters read the same asset objects from the given JSON, and that the streaming adapter reads back what it writes.
+     */
+    private static void checkAssetIndex( final Gson reflective, final Gson streaming, final String json ) {
+        ReflectiveAssetIndex expected = reflective.fromJson( json, ReflectiveAssetIndex.class );
+        
+        AssetIndex read = streaming.fromJson( json, AssetIndex.class );
+        compare( expected, read, "The streaming adapter read a different asset index than the reflective adapter did." );
+        
+        String written = streaming.toJson( read );
+        compare( expected, streaming.fromJson( written, AssetIndex.class ), "The streaming adapter didn't read back the asset index it wrote." );
+        if( !reflective.fromJson( written, JsonElement.class ).equals( reflective.toJsonTree( expected ) ) )
+            throw new RuntimeException( "The streaming adapter wrote a different asset index than the reflective adapter did." );
+    }
+    
+    private static void compare( final ReflectiveAssetIndex expected, final AssetIndex actual, final String message ) {
+        boolean same = expected.virtual == actual.isVirtual() && expected.objects.size() == actual.size();
+        for( Entry< String, ReflectiveAssetObject > entry : expected.objects.entrySet() ) {
+            if( !same )
+                break;
+            AssetObject object = actual.get( entry.getKey() );
+            same = object != null && object.getHash().equals( entry.getValue().hash ) && object.getSize() == entry.getValue().size;
+        }
+        if( !same )
+            throw new RuntimeException( message );
+    }
+    
+    /**
+     * Runs the given parse as many times as we've been asked to, once to warm up and once more to time it, and prints the average time.
+     */
+    private static void time( final String name, final int iterations, final Runnable parse ) {
+        for( int i = 0; i < iterations; ++i )
+            parse.run();
+        long start = System.nanoTime();
+        for( int i = 0; i < iterations; ++i )
+            parse.run();
+        long average = ( System.nanoTime() - start ) / iterations;
+        System.out.println( String.format( "%-26s %8.3f ms", name + ":", average / 1e6 ) );
+    }
+}
@@ -0,0 +1,58 @@
+package net.theJ89.bench;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+
+import net.minecraft.launcher.game.MinecraftReleaseType;
+import net.theJ89.minecraft.MinecraftVersions;
+import net.theJ89.mmm.MMM;
+
+/**
+ * Times MinecraftVersions.update() against a local copy of Mojang's version manifest (e.g. bench/fixtures/version_manifest.json, which lists 715 versions).
+ * Reports the time to import every version into an empty database, then the average time of an update where nothing has changed.
+ *
+ * Run this from an empty directory, with MMM not installed, so MMM runs in portable mode and creates a fresh database there:
+ *     java -cp <classpath> net.theJ89.bench.MinecraftVersionsBenchmark <manifest> [iterations]
+ */
+public class MinecraftVersionsBenchmark {
+    private static final int DEFAULT_ITERATIONS = 20;
+    
+    private MinecraftVersionsBenchmark() {
+        throw new Error();
+    }
+    
+    public static void main( final String[] args ) throws IOException, SQLException {
+        if( args.length < 1 ) {
+            System.err.println( "Usage: MinecraftVersionsBenchmark <manifest> [iterations]" );
+            return;
+        }
+        Path manifest   = Paths.get( args[0] ).toAbsolutePath();
+        int  iterations = args.length > 1 ? Integer.parseInt( args[1] ) : DEFAULT_ITERATIONS;
+        
+        MMM.init();
+        try {
+            if( !MMM.isPortable() || MinecraftVersions.getLatestVersion( MinecraftReleaseType.RELEASE ) != null )
+                throw new RuntimeException( "Run this from an empty directory, with MMM not installed; it needs an empty database." );
+            
+            //Cold import: every version in the manifest is new
+            long start = System.nanoTime();
+            MinecraftVersions.update( manifest );
+            long cold = System.nanoTime() - start;
+            
+            //Warm up, then time updates where nothing has changed
+            for( int i = 0; i < iterations; ++i )
+                MinecraftVersions.update( manifest );
+            start = System.nanoTime();
+            for( int i = 0; i < iterations; ++i )
+                MinecraftVersions.update( manifest );
+            long unchanged = ( System.nanoTime() - start ) / iterations;
+            
+            System.out.println( String.format( "Import into an empty database: %.2f ms", cold / 1e6 ) );
+            System.out.println( String.format( "Update with no changes (average of %d): %.2f ms", iterations, unchanged / 1e6 ) );
+        } finally {
+            MMM.close();
+        }
+    }
+}
@@ -2,9 +2,10 @@ package com.mojang.launcher.updater;
 
 import java.io.IOException;
 
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.time.DateTimeException;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.Date;
 
 import com.google.gson.JsonParseException;
@@ -15,40 +16,33 @@ import com.google.gson.stream.JsonWriter;
 
 //Another difference from Mojang's version: Using TypeAdapter<Date> instead of implementing Serializer / Deserializer.
 public class DateTypeAdapter extends TypeAdapter<Date> {
-    private final DateFormat ISO_8601;
-    
-    public DateTypeAdapter() {
-        //Note: Mojang uses ISO 8601 formatted dates in their .json files.
-        //The launcher also seems to support default US format date strings (e.g. "Jun 30, 2009 7:03:47 AM"),
-        //but I can't see these used anywhere in the .json files, so unless I'm mistaken, I'm dropping support for these.
-        //Mojang uses "Z" in their format strings, which is intended for RFC 822 date strings.
-        //Apparantly this works, but only after doing some ugly hacks to clean up the date string.
-        //I use "X" here instead. This was introduced in Java 7 and is parses ISO 8601 date strings correctly.
-        //Most likely Mojang uses "Z" for compatibility reasons.
-        ISO_8601  = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssX");
-    }
+    //Note: Mojang uses ISO 8601 formatted dates in their .json files.
+    //The launcher also seems to support default US format date strings (e.g. "Jun 30, 2009 7:03:47 AM"),
+    //but I can't see these used anywhere in the .json files, so unless I'm mistaken, I'm dropping support for these.
+    //Mojang's files use offsets like "+00:00", but "Z", "+0000" and "+00" are accepted too (as SimpleDateFormat's "X" did).
+    //Unlike SimpleDateFormat, DateTimeFormatter is immutable and threadsafe, so these can be shared without locking.
+    private static final DateTimeFormatter ISO_8601_READ  = DateTimeFormatter.ofPattern( "yyyy-MM-dd'T'HH:mm:ss[XXX][XX][X]" );
+    private static final DateTimeFormatter ISO_8601_WRITE = DateTimeFormatter.ofPattern( "yyyy-MM-dd'T'HH:mm:ssxxx" );
 
     @Override
     public void write(JsonWriter out, Date value) throws IOException {
-        //Note: DateFormat is not threadsafe
-        synchronized( ISO_8601 ) {
-            out.value( ISO_8601.format( value ) );
+        if( value == null ) {
+            out.nullValue();
+            return;
         }
+        out.value( value.toInstant().atOffset( ZoneOffset.UTC ).format( ISO_8601_WRITE ) );
     }
 
     @Override
     public Date read(JsonReader in) throws IOException {
-        //Note: DateFormat is not threadsafe
-        synchronized( ISO_8601 ) {
-            //Handle null dates
-            if( in.peek() == JsonToken.NULL ) {
-                in.nextNull();
-                return null;
-            }
-            
-            //Try to parse the date string using the ISO_8601 format, or throw a JsonParseException.
-            try                       { return ISO_8601.parse( in.nextString() );             }
-            catch( ParseException e ) { throw new JsonParseException( "Cannot parse date." ); }
+        //Handle null dates
+        if( in.peek() == JsonToken.NULL ) {
+            in.nextNull();
+            return null;
         }
+        
+        //Try to parse the date string using the ISO_8601 format, or throw a JsonParseException.
+        try                          { return Date.from( OffsetDateTime.parse( in.nextString(), ISO_8601_READ ).toInstant() ); }
+        catch( DateTimeException e ) { throw new JsonParseException( "Cannot parse date." );                                   }
     }
 }
@@ -1,17 +1,48 @@
 package com.mojang.launcher.updater.download.assets;
 
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import net.theJ89.json.JsonIO;
+
+/**
+ * An asset index maps resource paths (e.g. "minecraft/sounds/ambient/cave/cave1.ogg") to asset objects (a SHA-1 hash and a size in bytes).
+ * Indices hold thousands of objects and several can be loaded at once, so rather than a map of objects, they're stored compactly:
+ * resource paths are kept in a sorted table and looked up with a binary search, and the object at the same position
+ * has its hash stored as 20 bytes in a single shared array and its size in a parallel long array.
+ * AssetObjects are only created when they're asked for.
+ */
 public class AssetIndex {
-    public class AssetObject {
-        private String hash;
-        private long size;
+    private static final int    HASH_LENGTH = 20;
+    private static final char[] HEX_DIGITS  = "0123456789abcdef".toCharArray();
+    
+    public static class AssetObject {
+        private final String hash;
+        private final long   size;
         
         //These don't appear to be used anywhere in the asset index .json files
         //private boolean reconstruct;
         //private String compressedHash;
         //private long compressedSize;
         
+        private AssetObject( final String hash, final long size ) {
+            this.hash = hash;
+            this.size = size;
+        }
+        
         public String getHash() {
             return this.hash;
         }
@@ -29,16 +60,38 @@ public class AssetIndex {
         }
     }
     
-    private Map<String,AssetObject> objects;
-    private boolean virtual;
+    //Resource paths in ascending order. The hash of the object at names[i] is stored at hashes[ i*HASH_LENGTH ] through hashes[ (i+1)*HASH_LENGTH - 1 ], and its size at sizes[i].
+    private String[] names;
+    private byte[]   hashes;
+    private long[]   sizes;
+    private boolean  virtual;
+    
+    /**
+     * Returns the number of asset objects in this index.
+     * @return
+     */
+    public int size() {
+        return this.names.length;
+    }
+    
+    /**
+     * Returns the asset object with the given resource path, or null if this index doesn't have one.
+     * @param name - The resource path of the asset object.
+     * @return
+     */
+    public AssetObject get( final String name ) {
+        int i = Arrays.binarySearch( this.names, name );
+        return i >= 0 ? this.getObject( i ) : null;
+    }
     
     /**
      * Returns the asset object map.
      * This maps an asset object's resource path to the asset object itself (containing the SHA-1 hash and the file's size in bytes).
+     * The map is a read-only view of this index, ordered by resource path; asset objects are created as they're accessed.
      * @return
      */
     public Map<String,AssetObject> getObjects() {
-        return this.objects;
+        return new ObjectsView();
     }
     
     /**
@@ -47,7 +100,7 @@ public class AssetIndex {
      * to "objects" (stored by their SHA1 hash in the file system in the assets/objects/ folder).
      * Minecraft 1.7.2 and below uses a simpler system where the resources are stored in the file system under their resource paths;
      * for these versions, virtual will be set to true (indicating the asset should be downloaded to its resource path rather than the objects/ directory).
-     * The "virtual" flag seems to be a misnomer, seeing as how it means the opposite of what you'd expect. 
+     * The "virtual" flag seems to be a misnomer, seeing as how it means the opposite of what you'd expect.
      * @return true if the version does NOT use the virtual file system. False otherwise.
      */
     public boolean isVirtual() {
@@ -55,9 +108,239 @@ public class AssetIndex {
     }
     
     public void validate() {
-        if( this.objects == null )
+        if( this.names == null )
             throw new RuntimeException( "objects is null." );
-        for( AssetObject value : this.objects.values() )
-            value.validate();
+    }
+    
+    private AssetObject getObject( final int i ) {
+        return new AssetObject( this.getHash( i ), this.sizes[i] );
+    }
+    
+    /**
+     * Returns the hash of the i-th asset object as a lowercase hexadecimal string.
+     * @param i
+     * @return
+     */
+    private String getHash( final int i ) {
+        char[] hex = new char[ 2 * HASH_LENGTH ];
+        for( int j = 0, offset = i * HASH_LENGTH; j < HASH_LENGTH; ++j ) {
+            int b = this.hashes[ offset + j ] & 0xFF;
+            hex[ 2*j     ] = HEX_DIGITS[ b >>> 4  ];
+            hex[ 2*j + 1 ] = HEX_DIGITS[ b & 0x0F ];
+        }
+        return new String( hex );
+    }
+    
+    /**
+     * Read-only Map view of an asset index (see {@link AssetIndex#getObjects()}).
+     */
+    private class ObjectsView extends AbstractMap< String, AssetObject > {
+        @Override
+        public int size() {
+            return names.length;
+        }
+        
+        @Override
+        public boolean containsKey( final Object key ) {
+            return key instanceof String && Arrays.binarySearch( names, key ) >= 0;
+        }
+        
+        @Override
+        public AssetObject get( final Object key ) {
+            return key instanceof String ? AssetIndex.this.get( (String)key ) : null;
+        }
+        
+        @Override
+        public Set< Entry< String, AssetObject > > entrySet() {
+            return new AbstractSet< Entry< String, AssetObject > >() {
+                @Override
+                public int size() {
+                    return names.length;
+                }
+                
+                @Override
+                public Iterator< Entry< String, AssetObject > > iterator() {
+                    return new Iterator< Entry< String, AssetObject > >() {
+                        private int i = 0;
+                        
+                        @Override
+                        public boolean hasNext() {
+                            return this.i < names.length;
+                        }
+                        
+                        @Override
+                        public Entry< String, AssetObject > next() {
+                            if( this.i >= names.length )
+                                throw new NoSuchElementException();
+                            Entry< String, AssetObject > entry = new SimpleImmutableEntry< String, AssetObject >( names[ this.i ], getObject( this.i ) );
+                            ++this.i;
+                            return entry;
+                        }
+                    };
+                }
+            };
+        }
+    }
+    
+    /**
+     * Streaming type adapter for AssetIndex.
+     * Reads the "objects" map straight into the compact representation, without creating an AssetObject per entry.
+     */
+    public static class Adapter extends TypeAdapter< AssetIndex > {
+        @Override
+        public void write( final JsonWriter out, final AssetIndex value ) throws IOException {
+            if( value == null ) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            if( value.names != null ) {
+                out.name( "objects" ).beginObject();
+                for( int i = 0; i < value.names.length; ++i ) {
+                    out.name( value.names[i] ).beginObject();
+                    out.name( "hash" ).value( value.getHash( i ) );
+                    out.name( "size" ).value( value.sizes[i] );
+                    out.endObject();
+                }
+                out.endObject();
+            }
+            out.name( "virtual" ).value( value.virtual );
+            out.endObject();
+        }
+        
+        @Override
+        public AssetIndex read( final JsonReader in ) throws IOException {
+            if( JsonIO.skipNull( in ) )
+                return null;
+            
+            AssetIndex value = new AssetIndex();
+            in.beginObject();
+            while( in.hasNext() ) {
+                String name = in.nextName();
+                if( JsonIO.skipNull( in ) )
+                    continue;
+                switch( name ) {
+                case "objects":
+                    readObjects( in, value );
+                    break;
+                case "virtual":
+                    value.virtual = in.nextBoolean();
+                    break;
+                default:
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return value;
+        }
+        
+        /**
+         * Reads the "objects" map into the given index's names, hashes and sizes arrays, sorting them by name if they aren't already.
+         * @param in
+         * @param index
+         * @throws IOException
+         */
+        private static void readObjects( final JsonReader in, final AssetIndex index ) throws IOException {
+            List< String > names  = new ArrayList< String >();
+            byte[]         hashes = new byte[ 1024 * HASH_LENGTH ];
+            long[]         sizes  = new long[ 1024 ];
+            boolean        sorted = true;
+            
+            in.beginObject();
+            while( in.hasNext() ) {
+                String name = in.nextName();
+                int    i    = names.size();
+                if( i == sizes.length ) {
+                    hashes = Arrays.copyOf( hashes, 2 * hashes.length );
+                    sizes  = Arrays.copyOf( sizes,  2 * sizes.length  );
+                }
+                if( i > 0 && names.get( i - 1 ).compareTo( name ) >= 0 )
+                    sorted = false;
+                names.add( name );
+                readObject( in, name, hashes, i * HASH_LENGTH, sizes, i );
+            }
+            in.endObject();
+            
+            int count = names.size();
+            index.names = names.toArray( new String[ count ] );
+            if( sorted ) {
+                index.hashes = Arrays.copyOf( hashes, count * HASH_LENGTH );
+                index.sizes  = Arrays.copyOf( sizes,  count );
+                return;
+            }
+            
+            //Sort the objects by name and rearrange the hashes and sizes to match
+            Integer[] order = new Integer[ count ];
+            for( int i = 0; i < count; ++i )
+                order[i] = i;
+            Arrays.sort( order, ( a, b ) -> index.names[a].compareTo( index.names[b] ) );
+            
+            String[] sortedNames = new String[ count ];
+            index.hashes = new byte[ count * HASH_LENGTH ];
+            index.sizes  = new long[ count ];
+            for( int i = 0; i < count; ++i ) {
+                int from = order[i];
+                sortedNames[i] = index.names[ from ];
+                System.arraycopy( hashes, from * HASH_LENGTH, index.hashes, i * HASH_LENGTH, HASH_LENGTH );
+                index.sizes[i] = sizes[ from ];
+                if( i > 0 && sortedNames[ i - 1 ].equals( sortedNames[i] ) )
+                    throw new JsonParseException( "Duplicate asset object \"" + sortedNames[i] + "\"." );
+            }
+            index.names = sortedNames;
+        }
+        
+        /**
+         * Reads a single asset object, storing its hash at hashes[offset] and its size at sizes[i].
+         * @param in
+         * @param name - Resource path of the object, for error messages.
+         * @param hashes
+         * @param offset
+         * @param sizes
+         * @param i
+         * @throws IOException
+         */
+        private static void readObject( final JsonReader in, final String name, final byte[] hashes, final int offset, final long[] sizes, final int i ) throws IOException {
+            boolean hasHash = false;
+            in.beginObject();
+            while( in.hasNext() ) {
+                String field = in.nextName();
+                if( JsonIO.skipNull( in ) )
+                    continue;
+                switch( field ) {
+                case "hash":
+                    parseHash( in.nextString(), name, hashes, offset );
+                    hasHash = true;
+                    break;
+                case "size":
+                    sizes[i] = in.nextLong();
+                    break;
+                default:
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            
+            if( !hasHash )
+                throw new JsonParseException( "Asset object \"" + name + "\" has no hash." );
+        }
+        
+        /**
+         * Parses a hexadecimal SHA-1 hash into hashes[offset] through hashes[offset + HASH_LENGTH - 1].
+         * @param hash
+         * @param name - Resource path of the object, for error messages.
+         * @param hashes
+         * @param offset
+         */
+        private static void parseHash( final String hash, final String name, final byte[] hashes, final int offset ) {
+            if( hash.length() != 2 * HASH_LENGTH )
+                throw new JsonParseException( "Asset object \"" + name + "\" has an invalid hash: \"" + hash + "\"." );
+            for( int j = 0; j < HASH_LENGTH; ++j ) {
+                int hi = Character.digit( hash.charAt( 2*j     ), 16 );
+                int lo = Character.digit( hash.charAt( 2*j + 1 ), 16 );
+                if( hi < 0 || lo < 0 )
+                    throw new JsonParseException( "Asset object \"" + name + "\" has an invalid hash: \"" + hash + "\"." );
+                hashes[ offset + j ] = (byte)( ( hi << 4 ) | lo );
+            }
+        }
     }
 }
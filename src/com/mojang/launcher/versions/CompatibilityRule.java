@@ -1,5 +1,12 @@
 package com.mojang.launcher.versions;
 
+import java.io.IOException;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import net.theJ89.json.JsonIO;
 import net.theJ89.util.OperatingSystem;
 import net.theJ89.util.Target;
 
@@ -47,4 +54,78 @@ public class CompatibilityRule {
                ( this.os.version == null || target.getVersion().matches( this.os.version ) ) &&
                ( this.os.arch    == null || target.getArch()   .matches( this.os.arch    ) );
     }
+    
+    /**
+     * Streaming type adapter for CompatibilityRule.
+     */
+    public static class Adapter extends TypeAdapter< CompatibilityRule > {
+        @Override
+        public void write( final JsonWriter out, final CompatibilityRule value ) throws IOException {
+            if( value == null ) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name( "action" ).value( JsonIO.fromEnum( value.action ) );
+            if( value.os != null ) {
+                out.name( "os" ).beginObject();
+                out.name( "name"    ).value( JsonIO.fromEnum( value.os.name ) );
+                out.name( "version" ).value( value.os.version );
+                out.name( "arch"    ).value( value.os.arch );
+                out.endObject();
+            }
+            out.endObject();
+        }
+        
+        @Override
+        public CompatibilityRule read( final JsonReader in ) throws IOException {
+            if( JsonIO.skipNull( in ) )
+                return null;
+            
+            CompatibilityRule value = new CompatibilityRule();
+            in.beginObject();
+            while( in.hasNext() ) {
+                String name = in.nextName();
+                if( JsonIO.skipNull( in ) )
+                    continue;
+                switch( name ) {
+                case "action":
+                    value.action = JsonIO.nextEnum( in, Action.class );
+                    break;
+                case "os":
+                    value.os = readOS( in, value );
+                    break;
+                default:
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return value;
+        }
+        
+        private static OSRestriction readOS( final JsonReader in, final CompatibilityRule rule ) throws IOException {
+            OSRestriction os = rule.new OSRestriction();
+            in.beginObject();
+            while( in.hasNext() ) {
+                String name = in.nextName();
+                if( JsonIO.skipNull( in ) )
+                    continue;
+                switch( name ) {
+                case "name":
+                    os.name = JsonIO.nextEnum( in, OperatingSystem.class );
+                    break;
+                case "version":
+                    os.version = in.nextString();
+                    break;
+                case "arch":
+                    os.arch = in.nextString();
+                    break;
+                default:
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return os;
+        }
+    }
 }
@@ -1,8 +1,15 @@
 package com.mojang.launcher.versions;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import net.theJ89.json.JsonIO;
+
 public class ExtractRules {
     private List<String> exclude;
     
@@ -22,4 +29,44 @@ public class ExtractRules {
         }
         return true;
     }
+    
+    /**
+     * Streaming type adapter for ExtractRules.
+     */
+    public static class Adapter extends TypeAdapter< ExtractRules > {
+        @Override
+        public void write( final JsonWriter out, final ExtractRules value ) throws IOException {
+            if( value == null ) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name( "exclude" );
+            JsonIO.writeStringList( out, value.exclude );
+            out.endObject();
+        }
+        
+        @Override
+        public ExtractRules read( final JsonReader in ) throws IOException {
+            if( JsonIO.skipNull( in ) )
+                return null;
+            
+            ExtractRules value = new ExtractRules();
+            in.beginObject();
+            while( in.hasNext() ) {
+                String name = in.nextName();
+                if( JsonIO.skipNull( in ) )
+                    continue;
+                switch( name ) {
+                case "exclude":
+                    value.exclude = JsonIO.nextStringList( in );
+                    break;
+                default:
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return value;
+        }
+    }
 }
@@ -1,5 +1,13 @@
 package net.minecraft.launcher.updater;
 
+import java.io.IOException;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import net.theJ89.json.JsonIO;
+
 public class Artifact extends DownloadInfo {
     private static final String DOWNLOAD_BASE_URL = "https://libraries.minecraft.net/";
     private String path;
@@ -19,4 +27,45 @@ public class Artifact extends DownloadInfo {
         if( !this.url.toString().equals( url ) )
             throw new RuntimeException( "url (" + this.url + ") is different from expected url ( " + url + " )" );
     }
+    
+    /**
+     * Streaming type adapter for Artifact.
+     */
+    public static class Adapter extends TypeAdapter< Artifact > {
+        @Override
+        public void write( final JsonWriter out, final Artifact value ) throws IOException {
+            if( value == null ) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name( "path" ).value( value.path );
+            value.writeFields( out );
+            out.endObject();
+        }
+        
+        @Override
+        public Artifact read( final JsonReader in ) throws IOException {
+            if( JsonIO.skipNull( in ) )
+                return null;
+            
+            Artifact value = new Artifact();
+            in.beginObject();
+            while( in.hasNext() ) {
+                String name = in.nextName();
+                if( JsonIO.skipNull( in ) )
+                    continue;
+                switch( name ) {
+                case "path":
+                    value.path = in.nextString();
+                    break;
+                default:
+                    if( !value.readField( name, in ) )
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return value;
+        }
+    }
 }
@@ -1,5 +1,13 @@
 package net.minecraft.launcher.updater;
 
+import java.io.IOException;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import net.theJ89.json.JsonIO;
+
 public class AssetIndexInfo extends DownloadInfo {
     private long totalSize;
     private String id;
@@ -23,4 +31,49 @@ public class AssetIndexInfo extends DownloadInfo {
         if( !this.id.equals( id ) )
             throw new RuntimeException( "ID (" + this.id + ") doesn't match expected ID(" + id + ")." );
     }
+    
+    /**
+     * Streaming type adapter for AssetIndexInfo.
+     */
+    public static class Adapter extends TypeAdapter< AssetIndexInfo > {
+        @Override
+        public void write( final JsonWriter out, final AssetIndexInfo value ) throws IOException {
+            if( value == null ) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name( "totalSize" ).value( value.totalSize );
+            out.name( "id"        ).value( value.id );
+            value.writeFields( out );
+            out.endObject();
+        }
+        
+        @Override
+        public AssetIndexInfo read( final JsonReader in ) throws IOException {
+            if( JsonIO.skipNull( in ) )
+                return null;
+            
+            AssetIndexInfo value = new AssetIndexInfo();
+            in.beginObject();
+            while( in.hasNext() ) {
+                String name = in.nextName();
+                if( JsonIO.skipNull( in ) )
+                    continue;
+                switch( name ) {
+                case "totalSize":
+                    value.totalSize = in.nextLong();
+                    break;
+                case "id":
+                    value.id = in.nextString();
+                    break;
+                default:
+                    if( !value.readField( name, in ) )
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return value;
+        }
+    }
 }
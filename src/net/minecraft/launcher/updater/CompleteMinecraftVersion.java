@@ -1,5 +1,6 @@
 package net.minecraft.launcher.updater;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.EnumMap;
@@ -7,9 +8,20 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.mojang.launcher.updater.DateTypeAdapter;
+
 import net.minecraft.launcher.game.MinecraftReleaseType;
+import net.theJ89.json.JsonIO;
 
 public class CompleteMinecraftVersion {
+    private static final AssetIndexInfo.Adapter ASSET_INDEX_ADAPTER = new AssetIndexInfo.Adapter();
+    private static final Executable.Adapter     EXECUTABLE_ADAPTER  = new Executable.Adapter();
+    private static final Library.Adapter        LIBRARY_ADAPTER     = new Library.Adapter();
+    private static final DateTypeAdapter        DATE_ADAPTER        = new DateTypeAdapter();
+    
     private String                        id;
     private MinecraftReleaseType          type;
     private String                        assets;
@@ -189,4 +201,118 @@ public class CompleteMinecraftVersion {
         if( this.releaseTime == null )
             throw new RuntimeException( "Release time is null." );
     }
+    
+    /**
+     * Streaming type adapter for CompleteMinecraftVersion.
+     * Reads and writes the same JSON as Gson's reflective adapter would (with DateTypeAdapter and LowerCaseEnumTypeAdapterFactory registered),
+     * except that downloads of unknown types are skipped instead of failing.
+     */
+    public static class Adapter extends TypeAdapter< CompleteMinecraftVersion > {
+        @Override
+        public void write( final JsonWriter out, final CompleteMinecraftVersion value ) throws IOException {
+            if( value == null ) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name( "id"         ).value( value.id );
+            out.name( "type"       ).value( JsonIO.fromEnum( value.type ) );
+            out.name( "assets"     ).value( value.assets );
+            out.name( "assetIndex" );
+            ASSET_INDEX_ADAPTER.write( out, value.assetIndex );
+            if( value.downloads != null ) {
+                out.name( "downloads" ).beginObject();
+                for( Entry< DownloadType, Executable > download : value.downloads.entrySet() ) {
+                    out.name( JsonIO.fromEnum( download.getKey() ) );
+                    EXECUTABLE_ADAPTER.write( out, download.getValue() );
+                }
+                out.endObject();
+            }
+            if( value.libraries != null ) {
+                out.name( "libraries" ).beginArray();
+                for( Library library : value.libraries )
+                    LIBRARY_ADAPTER.write( out, library );
+                out.endArray();
+            }
+            out.name( "mainClass"              ).value( value.mainClass );
+            out.name( "minecraftArguments"     ).value( value.minecraftArguments );
+            out.name( "minimumLauncherVersion" ).value( value.minimumLauncherVersion );
+            out.name( "inheritsFrom"           ).value( value.inheritsFrom );
+            out.name( "jar"                    ).value( value.jar );
+            out.name( "time" );
+            DATE_ADAPTER.write( out, value.time );
+            out.name( "releaseTime" );
+            DATE_ADAPTER.write( out, value.releaseTime );
+            out.endObject();
+        }
+        
+        @Override
+        public CompleteMinecraftVersion read( final JsonReader in ) throws IOException {
+            if( JsonIO.skipNull( in ) )
+                return null;
+            
+            CompleteMinecraftVersion value = new CompleteMinecraftVersion();
+            in.beginObject();
+            while( in.hasNext() ) {
+                String name = in.nextName();
+                if( JsonIO.skipNull( in ) )
+                    continue;
+                switch( name ) {
+                case "id":
+                    value.id = in.nextString();
+                    break;
+                case "type":
+                    value.type = JsonIO.nextEnum( in, MinecraftReleaseType.class );
+                    break;
+                case "assets":
+                    value.assets = in.nextString();
+                    break;
+                case "assetIndex":
+                    value.assetIndex = ASSET_INDEX_ADAPTER.read( in );
+                    break;
+                case "downloads":
+                    in.beginObject();
+                    while( in.hasNext() ) {
+                        DownloadType type = JsonIO.toEnum( in.nextName(), DownloadType.class );
+                        if( type != null ) { value.downloads.put( type, EXECUTABLE_ADAPTER.read( in ) ); }
+                        else               { in.skipValue();                                            }
+                    }
+                    in.endObject();
+                    break;
+                case "libraries":
+                    value.libraries = new ArrayList< Library >();
+                    in.beginArray();
+                    while( in.hasNext() )
+                        value.libraries.add( LIBRARY_ADAPTER.read( in ) );
+                    in.endArray();
+                    break;
+                case "mainClass":
+                    value.mainClass = in.nextString();
+                    break;
+                case "minecraftArguments":
+                    value.minecraftArguments = in.nextString();
+                    break;
+                case "minimumLauncherVersion":
+                    value.minimumLauncherVersion = in.nextInt();
+                    break;
+                case "inheritsFrom":
+                    value.inheritsFrom = in.nextString();
+                    break;
+                case "jar":
+                    value.jar = in.nextString();
+                    break;
+                case "time":
+                    value.time = DATE_ADAPTER.read( in );
+                    break;
+                case "releaseTime":
+                    value.releaseTime = DATE_ADAPTER.read( in );
+                    break;
+                default:
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return value;
+        }
+    }
 }
@@ -1,7 +1,13 @@
 package net.minecraft.launcher.updater;
 
+import java.io.IOException;
 import java.net.URL;
 
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import net.theJ89.json.JsonIO;
+
 public class DownloadInfo {
     protected URL    url;
     protected String sha1;
@@ -26,4 +32,39 @@ public class DownloadInfo {
         if( this.sha1 == null )
             throw new RuntimeException( "sha1 is null." );
     }
+    
+    /**
+     * Reads one of the fields shared by every download (url, sha1, size).
+     * The type adapters of subclasses call this for any field they don't handle themselves.
+     * @param name - Name of the field being read.
+     * @param in
+     * @return true if name is one of DownloadInfo's fields, false otherwise (the value is left unread).
+     * @throws IOException
+     */
+    protected boolean readField( final String name, final JsonReader in ) throws IOException {
+        switch( name ) {
+        case "url":
+            this.url = JsonIO.nextURL( in );
+            return true;
+        case "sha1":
+            this.sha1 = in.nextString();
+            return true;
+        case "size":
+            this.size = in.nextInt();
+            return true;
+        default:
+            return false;
+        }
+    }
+    
+    /**
+     * Writes the fields shared by every download (url, sha1, size).
+     * @param out
+     * @throws IOException
+     */
+    protected void writeFields( final JsonWriter out ) throws IOException {
+        out.name( "url"  ).value( this.url != null ? this.url.toString() : null );
+        out.name( "sha1" ).value( this.sha1 );
+        out.name( "size" ).value( this.size );
+    }
 }
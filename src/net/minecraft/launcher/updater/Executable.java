@@ -1,5 +1,13 @@
 package net.minecraft.launcher.updater;
 
+import java.io.IOException;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import net.theJ89.json.JsonIO;
+
 public class Executable extends DownloadInfo {
     private static final String DOWNLOAD_BASE_URL = "https://launcher.mojang.com/mc/game/";
     
@@ -12,4 +20,36 @@ public class Executable extends DownloadInfo {
         if( !this.url.toString().equals( url ) )
             throw new RuntimeException( "url (" + this.url + ") doesn't match expected url (" + url + ")." );
     }
+    
+    /**
+     * Streaming type adapter for Executable.
+     */
+    public static class Adapter extends TypeAdapter< Executable > {
+        @Override
+        public void write( final JsonWriter out, final Executable value ) throws IOException {
+            if( value == null ) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            value.writeFields( out );
+            out.endObject();
+        }
+        
+        @Override
+        public Executable read( final JsonReader in ) throws IOException {
+            if( JsonIO.skipNull( in ) )
+                return null;
+            
+            Executable value = new Executable();
+            in.beginObject();
+            while( in.hasNext() ) {
+                String name = in.nextName();
+                if( !JsonIO.skipNull( in ) && !value.readField( name, in ) )
+                    in.skipValue();
+            }
+            in.endObject();
+            return value;
+        }
+    }
 }
@@ -1,14 +1,22 @@
 package net.minecraft.launcher.updater;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import com.mojang.launcher.versions.CompatibilityRule;
 import com.mojang.launcher.versions.CompatibilityRule.Action;
 import com.mojang.launcher.versions.ExtractRules;
 
+import net.theJ89.json.JsonIO;
 import net.theJ89.util.OperatingSystem;
 import net.theJ89.util.Platform;
 import net.theJ89.util.StrSubstitutor;
@@ -49,8 +57,53 @@ public class Library {
                 throw new RuntimeException( "Library downloads have neither artifact nor classifiers." );
             }
         }
+        
+        private static void write( final JsonWriter out, final LibraryDownloads value ) throws IOException {
+            out.beginObject();
+            out.name( "artifact" );
+            ARTIFACT_ADAPTER.write( out, value.artifact );
+            if( value.classifiers != null ) {
+                out.name( "classifiers" ).beginObject();
+                for( Entry< String, Artifact > entry : value.classifiers.entrySet() ) {
+                    out.name( entry.getKey() );
+                    ARTIFACT_ADAPTER.write( out, entry.getValue() );
+                }
+                out.endObject();
+            }
+            out.endObject();
+        }
+        
+        private static LibraryDownloads read( final JsonReader in ) throws IOException {
+            LibraryDownloads value = new LibraryDownloads();
+            in.beginObject();
+            while( in.hasNext() ) {
+                String name = in.nextName();
+                if( JsonIO.skipNull( in ) )
+                    continue;
+                switch( name ) {
+                case "artifact":
+                    value.artifact = ARTIFACT_ADAPTER.read( in );
+                    break;
+                case "classifiers":
+                    value.classifiers = new LinkedHashMap< String, Artifact >();
+                    in.beginObject();
+                    while( in.hasNext() )
+                        value.classifiers.put( in.nextName(), ARTIFACT_ADAPTER.read( in ) );
+                    in.endObject();
+                    break;
+                default:
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return value;
+        }
     }
     
+    private static final Artifact.Adapter          ARTIFACT_ADAPTER = new Artifact.Adapter();
+    private static final CompatibilityRule.Adapter RULE_ADAPTER     = new CompatibilityRule.Adapter();
+    private static final ExtractRules.Adapter      EXTRACT_ADAPTER  = new ExtractRules.Adapter();
+    
     private String                       name;
     private List<CompatibilityRule>      rules;
     private Map<OperatingSystem, String> natives;
@@ -215,4 +268,86 @@ public class Library {
     public String toString() {
         return this.getName();
     }
+    
+    /**
+     * Streaming type adapter for Library.
+     */
+    public static class Adapter extends TypeAdapter< Library > {
+        @Override
+        public void write( final JsonWriter out, final Library value ) throws IOException {
+            if( value == null ) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name( "name" ).value( value.name );
+            if( value.rules != null ) {
+                out.name( "rules" ).beginArray();
+                for( CompatibilityRule rule : value.rules )
+                    RULE_ADAPTER.write( out, rule );
+                out.endArray();
+            }
+            if( value.natives != null ) {
+                out.name( "natives" ).beginObject();
+                for( Entry< OperatingSystem, String > entry : value.natives.entrySet() )
+                    out.name( JsonIO.fromEnum( entry.getKey() ) ).value( entry.getValue() );
+                out.endObject();
+            }
+            out.name( "extract" );
+            EXTRACT_ADAPTER.write( out, value.extract );
+            if( value.downloads != null ) {
+                out.name( "downloads" );
+                LibraryDownloads.write( out, value.downloads );
+            }
+            out.endObject();
+        }
+        
+        @Override
+        public Library read( final JsonReader in ) throws IOException {
+            if( JsonIO.skipNull( in ) )
+                return null;
+            
+            Library value = new Library();
+            in.beginObject();
+            while( in.hasNext() ) {
+                String name = in.nextName();
+                if( JsonIO.skipNull( in ) )
+                    continue;
+                switch( name ) {
+                case "name":
+                    value.name = in.nextString();
+                    break;
+                case "rules":
+                    value.rules = new ArrayList< CompatibilityRule >();
+                    in.beginArray();
+                    while( in.hasNext() )
+                        value.rules.add( RULE_ADAPTER.read( in ) );
+                    in.endArray();
+                    break;
+                case "natives":
+                    //Natives for operating systems we don't know about are ignored
+                    value.natives = new EnumMap< OperatingSystem, String >( OperatingSystem.class );
+                    in.beginObject();
+                    while( in.hasNext() ) {
+                        OperatingSystem os         = JsonIO.toEnum( in.nextName(), OperatingSystem.class );
+                        String          classifier = JsonIO.skipNull( in ) ? null : in.nextString();
+                        if( os != null && classifier != null )
+                            value.natives.put( os, classifier );
+                    }
+                    in.endObject();
+                    break;
+                case "extract":
+                    value.extract = EXTRACT_ADAPTER.read( in );
+                    break;
+                case "downloads":
+                    value.downloads = LibraryDownloads.read( in );
+                    break;
+                default:
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return value;
+        }
+    }
 }
@@ -0,0 +1,76 @@
+package net.theJ89.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A connection to an SQLite database, leased out by {@link SQLiteDatabase#read(SQLiteDatabase.Query)} and {@link SQLiteDatabase#write(SQLiteDatabase.Update)}.
+ * Each connection keeps its own cache of prepared statements, so a query only needs to be prepared once per connection.
+ * A connection is only ever used by one thread at a time, so statements returned by prepare() don't need to be synchronized,
+ * but they shouldn't be used after the operation they were prepared for has returned.
+ */
+public class SQLiteConnection implements AutoCloseable {
+    private final Connection                       connection;
+    private final Map< String, PreparedStatement > statements;
+    
+    /**
+     * SQLiteConnection constructor.
+     * @param connection - The JDBC connection to wrap.
+     */
+    SQLiteConnection( final Connection connection ) {
+        this.connection = connection;
+        this.statements = new HashMap< String, PreparedStatement >();
+    }
+    
+    /**
+     * Returns a prepared statement for the given query, preparing it if this connection hasn't already.
+     * @param query - The query the statement performs, with ? to represent variables.
+     * @return The prepared statement.
+     * @throws SQLException If the database is closed.
+     */
+    public PreparedStatement prepare( final String query ) throws SQLException {
+        PreparedStatement stmt = this.statements.get( query );
+        if( stmt == null ) {
+            stmt = this.connection.prepareStatement( query );
+            this.statements.put( query, stmt );
+        }
+        return stmt;
+    }
+    
+    /**
+     * Creates a statement. The caller is responsible for closing it.
+     * @return
+     * @throws SQLException If the database is closed.
+     */
+    public Statement createStatement() throws SQLException {
+        return this.connection.createStatement();
+    }
+    
+    /**
+     * Returns the underlying JDBC connection.
+     * @return
+     */
+    public Connection getConnection() {
+        return this.connection;
+    }
+    
+    /**
+     * Closes the prepared statements and the connection.
+     * If a SQLException is encountered it prints a stack trace.
+     */
+    @Override
+    public void close() {
+        for( PreparedStatement stmt : this.statements.values() )
+            try { stmt.close(); }
+            catch( SQLException e ) { e.printStackTrace(); }
+        this.statements.clear();
+        
+        try {
+            this.connection.close();
+        } catch( SQLException e ) { e.printStackTrace(); }
+    }
+}
@@ -6,51 +6,230 @@ import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * An SQLite database, accessed through a small pool of connections: one writer, and up to a fixed number of readers.
+ * Because the database is in WAL mode (see {@link SQLiteProfile}), readers don't block behind the writer, and vice versa.
+ *
+ * Operations lease a connection for as long as they run:
+ * <ul>
+ * <li>{@link #read(Query)} leases one of the readers (opening it if necessary), waiting for one to be returned if they're all in use.</li>
+ * <li>{@link #write(Update)} leases the writer, and runs the operation in a transaction. Only one write happens at a time.</li>
+ * </ul>
+ * Each connection has its own prepared statement cache (see {@link SQLiteConnection#prepare(String)}),
+ * so callers shouldn't hold on to prepared statements between operations.
+ * Reads performed by a thread that is in the middle of a write use the writer, so they see what the write has done so far.
+ *
+ * The older single connection methods (createStatement(), createPreparedStatement(), beginTransaction(), etc.) use the writer
+ * without leasing it, and are only safe to use from one thread at a time.
+ */
 public class SQLiteDatabase implements AutoCloseable {
     private static final String CONNECTOR_CLASS = "org.sqlite.JDBC";
     private static final String JDBC_PREFIX     = "jdbc:sqlite:";
     
-    private Connection connection;
+    //Number of reader connections by default
+    public static final int DEFAULT_READERS = 4;
+    
+    private final String                                    url;
+    private final SQLiteProfile                             readerProfile;
+    private final int                                       maxReaders;
+    
+    private SQLiteConnection                                writer;
+    private final ReentrantLock                             writeLock;
+    private SQLiteProfile                                   profile;
+    
+    //Idle reader connections. Permits on the semaphore are the number of readers that can still be leased.
+    private final ConcurrentLinkedQueue< SQLiteConnection > readers;
+    private final List< SQLiteConnection >                  allReaders;
+    private final Semaphore                                 readerPermits;
     
     @FunctionalInterface
     public static interface Transaction {
         void run() throws SQLException;
     }
     
+    /**
+     * A read performed on a leased connection (see {@link SQLiteDatabase#read(Query)}).
+     */
+    @FunctionalInterface
+    public static interface Query< T > {
+        T run( SQLiteConnection conn ) throws SQLException;
+    }
+    
+    /**
+     * A write performed on the leased writer connection (see {@link SQLiteDatabase#write(Update)}).
+     */
+    @FunctionalInterface
+    public static interface Update {
+        void run( SQLiteConnection conn ) throws SQLException;
+    }
+    
     /**
      * Constructor for an SQLite database.
+     * The connections use the {@link SQLiteProfile#DURABLE} profile.
      * @param databaseFilepath - filename of the database file to open (e.g. sample.db). Creates the file if it doesn't exist.
      * @throws ClassNotFoundException If the SQlite JDBC connector wasn't found.
      * @throws SQLException If there was a problem connecting to the database.
      */
     public SQLiteDatabase( final Path databaseFilepath ) throws ClassNotFoundException, SQLException {
-        this.connection = null;
+        this( databaseFilepath, SQLiteProfile.DURABLE );
+    }
+    
+    /**
+     * Constructor for an SQLite database.
+     * @param databaseFilepath - filename of the database file to open (e.g. sample.db). Creates the file if it doesn't exist.
+     * @param profile - PRAGMAs to apply to the connections.
+     * @throws ClassNotFoundException If the SQlite JDBC connector wasn't found.
+     * @throws SQLException If there was a problem connecting to the database.
+     */
+    public SQLiteDatabase( final Path databaseFilepath, final SQLiteProfile profile ) throws ClassNotFoundException, SQLException {
+        this( databaseFilepath, profile, DEFAULT_READERS );
+    }
+    
+    /**
+     * Constructor for an SQLite database.
+     * @param databaseFilepath - filename of the database file to open (e.g. sample.db). Creates the file if it doesn't exist.
+     * @param profile - PRAGMAs to apply to the connections.
+     * @param readers - Maximum number of reader connections. If this is 0, reads use the writer.
+     * @throws ClassNotFoundException If the SQlite JDBC connector wasn't found.
+     * @throws SQLException If there was a problem connecting to the database.
+     */
+    public SQLiteDatabase( final Path databaseFilepath, final SQLiteProfile profile, final int readers ) throws ClassNotFoundException, SQLException {
+        this.url           = JDBC_PREFIX + databaseFilepath.toString();
+        this.readerProfile = profile;
+        this.maxReaders    = readers;
+        this.writer        = null;
+        this.writeLock     = new ReentrantLock();
+        this.profile       = null;
+        this.readers       = new ConcurrentLinkedQueue< SQLiteConnection >();
+        this.allReaders    = new ArrayList< SQLiteConnection >();
+        this.readerPermits = new Semaphore( readers, true );
         
         //Make sure we have the connector class available
         Class.forName( CONNECTOR_CLASS );
         
         //Try to connect to the database
-        connection = DriverManager.getConnection( JDBC_PREFIX + databaseFilepath.toString() );
+        this.writer = new SQLiteConnection( DriverManager.getConnection( this.url ) );
+        
+        this.setProfile( profile );
+    }
+    
+    /**
+     * Returns the profile currently applied to the writer.
+     * @return
+     */
+    public SQLiteProfile getProfile() {
+        return this.profile;
+    }
+    
+    /**
+     * Applies the given profile's PRAGMAs to the writer.
+     * Readers keep the profile the database was opened with.
+     * This can't be done in the middle of a transaction.
+     * @param profile
+     * @throws SQLException If a transaction is in progress, or the database is closed.
+     */
+    public void setProfile( final SQLiteProfile profile ) throws SQLException {
+        this.writeLock.lock();
+        try {
+            if( !this.writer.getConnection().getAutoCommit() )
+                throw new SQLException( "Can't change the profile of a database during a transaction." );
+            
+            try( Statement stmt = this.writer.createStatement() ) {
+                profile.apply( stmt );
+            }
+            this.profile = profile;
+        } finally {
+            this.writeLock.unlock();
+        }
     }
     
     /**
-     * Creates a statement.
+     * Leases a reader connection, runs the given query with it, and returns the connection to the pool.
+     * If the calling thread is in the middle of a write, the query is run with the writer instead.
+     * @param query - The query to run (you can provide a lambda expression for this parameter).
+     * @return What the query returned.
+     * @throws SQLException
+     */
+    public < T > T read( final Query< T > query ) throws SQLException {
+        if( this.maxReaders == 0 || this.writeLock.isHeldByCurrentThread() )
+            return this.readWithWriter( query );
+        
+        SQLiteConnection conn = this.leaseReader();
+        try {
+            return query.run( conn );
+        } finally {
+            this.readers.add( conn );
+            this.readerPermits.release();
+        }
+    }
+    
+    /**
+     * Leases the writer, and runs the given update in a transaction.
+     * Commits the transaction if the update executes without throwing an exception.
+     * Otherwise, rolls back the transaction and rethrows the exception.
+     * If the calling thread is already in the middle of a write, the update is simply run as part of that write.
+     * @param update - The update to perform (you can provide a lambda expression for this parameter).
+     * @throws SQLException
+     */
+    public void write( final Update update ) throws SQLException {
+        this.writeLock.lock();
+        try {
+            if( !this.writer.getConnection().getAutoCommit() ) {
+                update.run( this.writer );
+                return;
+            }
+            this.performTransaction( () -> update.run( this.writer ) );
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
+    
+    /**
+     * Same as write( update ), but switches the writer to the given profile while the update is performed.
+     * The previous profile is restored afterwards, whether or not the update succeeds.
+     * This is meant for large updates, e.g. write( SQLiteProfile.BULK_REFRESH, ( conn ) -> { ... } ).
+     * @param profile - The profile to use during the update.
+     * @param update - The update to perform.
+     * @throws SQLException
+     */
+    public void write( final SQLiteProfile profile, final Update update ) throws SQLException {
+        this.writeLock.lock();
+        try {
+            final SQLiteProfile previous = this.profile;
+            this.setProfile( profile );
+            try {
+                this.write( update );
+            } finally {
+                this.setProfile( previous );
+            }
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
+    
+    /**
+     * Creates a statement on the writer.
      * @return A statement, means of interacting with the database.
      * @throws SQLException If the database is closed.
      */
     public Statement createStatement() throws SQLException {
-        return this.connection.createStatement();
+        return this.writer.createStatement();
     }
     
     /**
-     * Creates a prepared statement using the given string.
+     * Creates a prepared statement on the writer using the given string.
      * @param query - The query the statement performs, with ? to represent variables.
      * @return The prepared statement.
      * @throws SQLException If the database is closed.
      */
     public PreparedStatement createPreparedStatement( final String query ) throws SQLException {
-        return this.connection.prepareStatement( query );
+        return this.writer.getConnection().prepareStatement( query );
     }
     
     /**
@@ -58,7 +237,7 @@ public class SQLiteDatabase implements AutoCloseable {
      * @throws SQLException
      */
     public void beginTransaction() throws SQLException {
-        this.connection.setAutoCommit( false );
+        this.writer.getConnection().setAutoCommit( false );
     }
     
     /**
@@ -66,8 +245,9 @@ public class SQLiteDatabase implements AutoCloseable {
      * @throws SQLException
      */
     public void commitTransaction() throws SQLException {
-        this.connection.commit();
-        this.connection.setAutoCommit( true );
+        Connection connection = this.writer.getConnection();
+        connection.commit();
+        connection.setAutoCommit( true );
     }
     
     /**
@@ -75,8 +255,9 @@ public class SQLiteDatabase implements AutoCloseable {
      * @throws SQLException
      */
     public void rollbackTransaction() throws SQLException {
-        this.connection.rollback();
-        this.connection.setAutoCommit( true );
+        Connection connection = this.writer.getConnection();
+        connection.rollback();
+        connection.setAutoCommit( true );
     }
     
     /**
@@ -87,30 +268,83 @@ public class SQLiteDatabase implements AutoCloseable {
      * @throws SQLException
      */
     public void performTransaction( final Transaction transaction ) throws SQLException {
-        this.beginTransaction();
+        this.writeLock.lock();
         try {
-            transaction.run();
-            this.commitTransaction();
-        } catch( Throwable t ) {
-            try { this.rollbackTransaction(); }
-            catch( SQLException e ) { t.addSuppressed( e ); }
-            throw t;
+            this.beginTransaction();
+            try {
+                transaction.run();
+                this.commitTransaction();
+            } catch( Throwable t ) {
+                try { this.rollbackTransaction(); }
+                catch( SQLException e ) { t.addSuppressed( e ); }
+                throw t;
+            }
+        } finally {
+            this.writeLock.unlock();
         }
     }
     
     /**
-     * Closes the connection to the database.
+     * Closes the connections to the database.
+     * Connections that are still leased are closed too, so this should only be called once nothing else is using the database.
      * If a SQLException is encountered it prints a stack trace.
      */
     @Override
     public void close() {
-        if( this.connection == null )
+        synchronized( this.allReaders ) {
+            for( SQLiteConnection conn : this.allReaders )
+                conn.close();
+            this.allReaders.clear();
+            this.readers.clear();
+        }
+        
+        if( this.writer == null )
             return;
+        this.writer.close();
+    }
+    
+    /**
+     * Runs the given query with the writer.
+     */
+    private < T > T readWithWriter( final Query< T > query ) throws SQLException {
+        this.writeLock.lock();
+        try {
+            return query.run( this.writer );
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
+    
+    /**
+     * Waits for a reader to become available and returns it, opening a new one if none of the existing ones are idle.
+     * The caller must return the reader to the pool when it's done with it.
+     */
+    private SQLiteConnection leaseReader() throws SQLException {
+        try {
+            this.readerPermits.acquire();
+        } catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new SQLException( "Interrupted while waiting for a database connection.", e );
+        }
+        
+        SQLiteConnection conn = this.readers.poll();
+        if( conn != null )
+            return conn;
         
         try {
-            this.connection.close();
-            
-        //Statement / connection close failed.
-        } catch( SQLException e ) { e.printStackTrace(); }
+            conn = new SQLiteConnection( DriverManager.getConnection( this.url ) );
+            try( Statement stmt = conn.createStatement() ) {
+                this.readerProfile.apply( stmt );
+            }
+        } catch( SQLException | RuntimeException e ) {
+            if( conn != null )
+                conn.close();
+            this.readerPermits.release();
+            throw e;
+        }
+        synchronized( this.allReaders ) {
+            this.allReaders.add( conn );
+        }
+        return conn;
     }
 }
@@ -0,0 +1,113 @@
+package net.theJ89.database;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * A set of PRAGMAs that are applied to an SQLite connection (see {@link SQLiteDatabase#setProfile(SQLiteProfile)}).
+ * Lets you trade durability for speed, e.g. while a large update is being written.
+ *
+ * Presets:
+ * <ul>
+ * <li>{@link #DURABLE} is what databases are opened with by default. Every commit is synced to disk.</li>
+ * <li>{@link #BULK_REFRESH} is meant for large updates that can simply be run again if they're lost (e.g. refreshing the version lists).
+ *     Commits aren't synced until a WAL checkpoint, so a power loss may undo the update, but never corrupts the database.</li>
+ * </ul>
+ * Both presets use WAL journaling, so readers don't block behind a writer and vice versa.
+ */
+public class SQLiteProfile {
+    /**
+     * Journal modes (PRAGMA journal_mode).
+     */
+    public static enum JournalMode { DELETE, TRUNCATE, PERSIST, MEMORY, WAL, OFF }
+    
+    /**
+     * How often SQLite syncs to disk (PRAGMA synchronous).
+     * In WAL mode, NORMAL can lose the most recent commits on power loss, but never corrupts the database.
+     */
+    public static enum Synchronous { OFF, NORMAL, FULL, EXTRA }
+    
+    /**
+     * Where temporary tables and indices are kept (PRAGMA temp_store).
+     */
+    public static enum TempStore { DEFAULT, FILE, MEMORY }
+    
+    public static final SQLiteProfile DURABLE      = new SQLiteProfile( "durable",      JournalMode.WAL, Synchronous.FULL,   -8 * 1024,  64L  * 1024 * 1024, TempStore.DEFAULT, 5000  );
+    public static final SQLiteProfile BULK_REFRESH = new SQLiteProfile( "bulk-refresh", JournalMode.WAL, Synchronous.NORMAL, -64 * 1024, 256L * 1024 * 1024, TempStore.MEMORY,  30000 );
+    
+    private final String      name;
+    private final JournalMode journalMode;
+    private final Synchronous synchronous;
+    private final int         cacheSize;
+    private final long        mmapSize;
+    private final TempStore   tempStore;
+    private final int         busyTimeout;
+    
+    /**
+     * SQLiteProfile constructor.
+     * @param name - Name of the profile, for display purposes.
+     * @param journalMode - Journal mode.
+     * @param synchronous - How often to sync to disk.
+     * @param cacheSize - Size of the page cache; a positive number is a number of pages, a negative number is a number of KiB (same as PRAGMA cache_size).
+     * @param mmapSize - Maximum number of bytes of the database file to memory map, or 0 to not memory map it.
+     * @param tempStore - Where to keep temporary tables and indices.
+     * @param busyTimeout - How long to wait for a lock held by another connection before failing, in milliseconds.
+     */
+    public SQLiteProfile( final String name, final JournalMode journalMode, final Synchronous synchronous, final int cacheSize, final long mmapSize, final TempStore tempStore, final int busyTimeout ) {
+        this.name        = name;
+        this.journalMode = journalMode;
+        this.synchronous = synchronous;
+        this.cacheSize   = cacheSize;
+        this.mmapSize    = mmapSize;
+        this.tempStore   = tempStore;
+        this.busyTimeout = busyTimeout;
+    }
+    
+    public String getName() {
+        return this.name;
+    }
+    
+    public JournalMode getJournalMode() {
+        return this.journalMode;
+    }
+    
+    public Synchronous getSynchronous() {
+        return this.synchronous;
+    }
+    
+    public int getCacheSize() {
+        return this.cacheSize;
+    }
+    
+    public long getMmapSize() {
+        return this.mmapSize;
+    }
+    
+    public TempStore getTempStore() {
+        return this.tempStore;
+    }
+    
+    public int getBusyTimeout() {
+        return this.busyTimeout;
+    }
+    
+    /**
+     * Applies this profile's PRAGMAs using the given statement.
+     * The journal mode can't be changed in the middle of a transaction, so this shouldn't be called during one.
+     * @param stmt
+     * @throws SQLException
+     */
+    void apply( final Statement stmt ) throws SQLException {
+        stmt.execute( "PRAGMA busy_timeout = "  + this.busyTimeout );
+        stmt.execute( "PRAGMA journal_mode = "  + this.journalMode.name() );
+        stmt.execute( "PRAGMA synchronous = "   + this.synchronous.name() );
+        stmt.execute( "PRAGMA cache_size = "    + this.cacheSize );
+        stmt.execute( "PRAGMA mmap_size = "     + this.mmapSize );
+        stmt.execute( "PRAGMA temp_store = "    + this.tempStore.name() );
+    }
+    
+    @Override
+    public String toString() {
+        return this.name;
+    }
+}
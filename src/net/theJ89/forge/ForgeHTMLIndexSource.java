@@ -0,0 +1,47 @@
+package net.theJ89.forge;
+
+/**
+ * Scrapes the Forge Files website for data on Forge versions and downloads (see {@link ForgeIndex}).
+ */
+public class ForgeHTMLIndexSource implements ForgeIndexSource {
+    private String url;
+    private int    threads;
+    private int    recent;
+    private ForgeIndex.ParseMode mode;
+    
+    /**
+     * Constructs a source that scrapes every index page on the Forge Files website.
+     */
+    public ForgeHTMLIndexSource() {
+        this( ForgeIndex.FORGE_INDEX_URL, ForgeIndex.DEFAULT_THREADS, ForgeIndex.ALL_VERSIONS );
+    }
+    
+    /**
+     * ForgeHTMLIndexSource constructor.
+     * @param url - URL of the index.
+     * @param threads - Maximum number of index pages to fetch at once.
+     * @param recent - Only look at the indices of the first (i.e. most recent) this many versions of Minecraft, or ForgeIndex.ALL_VERSIONS to look at all of them.
+     */
+    public ForgeHTMLIndexSource( final String url, final int threads, final int recent ) {
+        this( url, threads, recent, ForgeIndex.DEFAULT_PARSE_MODE );
+    }
+    
+    /**
+     * ForgeHTMLIndexSource constructor.
+     * @param url - URL of the index.
+     * @param threads - Maximum number of index pages to fetch at once.
+     * @param recent - Only look at the indices of the first (i.e. most recent) this many versions of Minecraft, or ForgeIndex.ALL_VERSIONS to look at all of them.
+     * @param mode - How to parse the index pages.
+     */
+    public ForgeHTMLIndexSource( final String url, final int threads, final int recent, final ForgeIndex.ParseMode mode ) {
+        this.url     = url;
+        this.threads = threads;
+        this.recent  = recent;
+        this.mode    = mode;
+    }
+    
+    @Override
+    public void parse( final ForgeIndexContentHandler handler ) throws Exception {
+        ForgeIndex.parse( this.url, handler, this.threads, this.recent, this.mode );
+    }
+}
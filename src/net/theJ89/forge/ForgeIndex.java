@@ -1,11 +1,22 @@
 package net.theJ89.forge;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -16,9 +27,10 @@ import org.jsoup.nodes.Node;
 import org.jsoup.nodes.TextNode;
 import org.jsoup.select.Elements;
 
-import net.theJ89.http.HTTP;
+import net.theJ89.http.HTTPRequest;
 import net.theJ89.http.HTTPResponse;
 import net.theJ89.mmm.SideCompat;
+import net.theJ89.util.IO;
 import net.theJ89.util.Misc;
 
 /**
@@ -28,7 +40,7 @@ import net.theJ89.util.Misc;
  * For example, as ForgeIndex calls handler.forge(), the ForgeVersionsUpdater class creates corresponding database entries.
  */
 public class ForgeIndex {
-    private static final String  FORGE_INDEX_URL             = "http://files.minecraftforge.net/";
+    public static final String   FORGE_INDEX_URL             = "http://files.minecraftforge.net/";
     
     private static final String  SEL_MC_VERSIONS             = "div.versions > ul.links > li.li-version-list > div > ul > li";
     private static final String  SEL_LATEST                  = "div.downloads > div.download > div.title:has(i.promo-LATEST) > small";
@@ -40,6 +52,32 @@ public class ForgeIndex {
     
     private static final Pattern RE_MC_FORGE_VERSIONS        = Pattern.compile( "(.+?) - (.+?)" );
     
+    //Number of index pages fetched at once by default
+    public static final int      DEFAULT_THREADS             = 6;
+    
+    //Pass to parse() to look at the indices of every version of Minecraft
+    public static final int      ALL_VERSIONS                = 0;
+    
+    private static final int     HTTP_NOT_MODIFIED           = 304;
+    
+    /**
+     * How index pages (other than the first one, which we always need a DOM for) are parsed.
+     */
+    public static enum ParseMode {
+        /**
+         * Build a Jsoup DOM for each page and pick the data out of it with CSS selectors.
+         */
+        DOM,
+        /**
+         * Scan each page's HTML in a single pass, without building a DOM (see {@link ForgeIndexScanner}).
+         * This reports the same versions and downloads as DOM parsing on the saved index pages in bench/fixtures/forge/ (see ForgeIndexParseBenchmark),
+         * in about half the time and with less heap, so it's the default.
+         */
+        STREAMING
+    }
+    
+    public static final ParseMode DEFAULT_PARSE_MODE         = ParseMode.STREAMING;
+    
     //Example date-time format used by Forge index: "05/16/2016 04:28:01 PM"
     private static final DateTimeFormatter DATETIME_FORMATTER    = DateTimeFormatter.ofPattern( "MM/dd/yyyy hh:mm:ss a" );
     private static final ZoneId            ZONEID_CANADA_EASTERN = ZoneId.of( "Canada/Eastern" );
@@ -60,37 +98,165 @@ public class ForgeIndex {
      * @throws Exception
      */
     public static void parse( final String url, final ForgeIndexContentHandler handler ) throws Exception {
-        //Grab an index for an unknown version of Minecraft
-        Document doc = Jsoup.connect( url ).get();
-        
-        //Iterate over available indices, each corresponding to a version of Minecraft
-        Elements versions = doc.select( SEL_MC_VERSIONS );
-        for( Element version : versions ) {
-            String   name;
-            Document index;
+        parse( url, handler, DEFAULT_THREADS );
+    }
+    
+    /**
+     * Parse the Forge Files index using the given URL and handler, fetching at most the given number of index pages at once.
+     * @param url
+     * @param handler
+     * @param threads - Maximum number of index pages to fetch at once.
+     * @throws Exception
+     */
+    public static void parse( final String url, final ForgeIndexContentHandler handler, final int threads ) throws Exception {
+        parse( url, handler, threads, ALL_VERSIONS );
+    }
+    
+    /**
+     * Parse the Forge Files index using the given URL and handler.
+     *
+     * Index pages are fetched and parsed in parallel, by at most the given number of threads.
+     * The handler is still called from the calling thread only, with one Minecraft version's index at a time,
+     * in the same order the versions are listed in the index; it doesn't need to be thread-safe.
+     *
+     * Index pages that haven't changed since they were last parsed are skipped (see {@link ForgeIndexContentHandler#getPage(String)}):
+     * the handler isn't called at all for the corresponding versions of Minecraft.
+     * Pages the handler has a record of are requested conditionally, so the server only sends them if they've changed.
+     * Pages the server sends anyway are compared to the handler's record by their hash before they're parsed.
+     *
+     * @param url
+     * @param handler
+     * @param threads - Maximum number of index pages to fetch at once.
+     * @param recent - Only look at the indices of the first (i.e. most recent) this many versions of Minecraft listed in the index,
+     *                 or {@link #ALL_VERSIONS} to look at all of them.
+     * @throws Exception
+     */
+    public static void parse( final String url, final ForgeIndexContentHandler handler, final int threads, final int recent ) throws Exception {
+        parse( url, handler, threads, recent, DEFAULT_PARSE_MODE );
+    }
+    
+    /**
+     * Parse the Forge Files index using the given URL and handler, as described above, parsing index pages the given way.
+     * @param url
+     * @param handler
+     * @param threads - Maximum number of index pages to fetch at once.
+     * @param recent - Only look at the indices of the first (i.e. most recent) this many versions of Minecraft listed in the index,
+     *                 or {@link #ALL_VERSIONS} to look at all of them.
+     * @param mode - How to parse the index pages.
+     * @throws Exception
+     */
+    public static void parse( final String url, final ForgeIndexContentHandler handler, final int threads, final int recent, final ParseMode mode ) throws Exception {
+        //Grab an index for an unknown version of Minecraft.
+        //We always need this page (it links to the others), so it isn't requested conditionally.
+        IndexPage root = fetchPage( url, handler.getPage( url ), false, mode );
+        Document  doc  = root.getDocument();
+        
+        //Iterate over available indices, each corresponding to a version of Minecraft,
+        //and start fetching the indices that are on other pages.
+        ExecutorService  executor = Executors.newFixedThreadPool( threads, Misc.newDaemonThreadFactory( "ForgeIndex-" ) );
+        ForgeSizeProber  prober   = new ForgeSizeProber();
+        try {
+            Elements versions = doc.select( SEL_MC_VERSIONS );
+            List< String >              names   = new ArrayList< String >( versions.size() );
+            List< Future< IndexPage > > indices = new ArrayList< Future< IndexPage > >( versions.size() );
+            for( Element version : versions ) {
+                if( recent != ALL_VERSIONS && names.size() >= recent )
+                    break;
+                
+                //Current page is the index for this version
+                if( version.hasClass( "li-version-list-current" ) ) {
+                    names.add( version.text().trim() );
+                    indices.add( CompletableFuture.completedFuture( root ) );
+                //Index for this version is on another page.
+                } else {
+                    Element link = version.getElementsByTag( "a" ).first();
+                    names.add( link.text().trim() );
+                    
+                    //Note use of .absUrl() here and in other locations in this file.
+                    //The HTML standard permits the use of relative URLs to describe a resource located relative to the location of the document containing the relative URL.
+                    //Unfortunately, an absolute URL is required to make an HTTP request, and as it turns out some links provided by the Forge Files index use relative URLs.
+                    //Therefore we must ensure the URL is absolute with Jsoup's .absUrl() method:
+                    String indexURL = link.absUrl( "href" );
+                    ForgeIndexPage previous = handler.getPage( indexURL );
+                    indices.add( executor.submit( () -> fetchPage( indexURL, previous, true, mode ) ) );
+                }
+            }
             
-            //Current page is the index for this version
-            if( version.hasClass( "li-version-list-current" ) ) {
-                name  = version.text().trim();
-                index = doc;
-            //Index for this version is on another page.
-            } else {
-                Element link = version.getElementsByTag( "a" ).first();
-                name = link.text().trim();
+            //Parse each index as it becomes available, in order
+            for( int i = 0; i < indices.size(); ++i ) {
+                IndexPage index;
+                try {
+                    index = indices.get( i ).get();
+                } catch( ExecutionException e ) {
+                    Throwable cause = e.getCause();
+                    if( cause instanceof Exception ) { throw (Exception)cause;         }
+                    else                             { throw new RuntimeException( e ); }
+                }
                 
-                //Note use of .absUrl() here and in other locations in this file.
-                //The HTML standard permits the use of relative URLs to describe a resource located relative to the location of the document containing the relative URL.
-                //Unfortunately, an absolute URL is required to make an HTTP request, and as it turns out some links provided by the Forge Files index use relative URLs.
-                //Therefore we must ensure the URL is absolute with Jsoup's .absUrl() method:
-                index = Jsoup.connect( link.absUrl( "href" ) ).get();
+                //Start parsing the index for this Minecraft version, unless it hasn't changed since last time
+                if( !index.isChanged() ) {
+                    System.out.println( String.format( "Forge versions for Minecraft %s are unchanged.", names.get( i ) ) );
+                } else if( index.getDocument() != null ) {
+                    parseIndex( names.get( i ), index.getDocument(), handler, prober );
+                } else {
+                    scanIndex( names.get( i ), index.getHTML(), index.getPage().getURL(), handler, prober );
+                }
+                
+                //Let the handler know what the page looks like now
+                if( index.isFetched() )
+                    handler.updatePage( index.getPage() );
+                
+                //We don't need the page anymore; let it be garbage collected
+                indices.set( i, null );
             }
+        } finally {
+            executor.shutdownNow();
+            prober.close();
+        }
+    }
+    
+    /**
+     * Fetches the index page at the given URL.
+     * @param url - URL of the page.
+     * @param previous - What we knew about the page the last time it was parsed, or null if it's never been parsed.
+     * @param conditional - If this is true, the server is asked to send the page only if it's changed since the last time it was parsed.
+     *                      Otherwise, we need the page's links to the other pages, so the page is always parsed into a DOM.
+     * @param mode - How the page will be parsed.
+     */
+    private static IndexPage fetchPage( final String url, final ForgeIndexPage previous, final boolean conditional, final ParseMode mode ) throws IOException {
+        HTTPRequest request = new HTTPRequest( new URL( url ) );
+        if( conditional && previous != null ) {
+            if( previous.getETag() != null )
+                request.setHeader( "If-None-Match", previous.getETag() );
+            if( previous.getLastModified() != null )
+                request.setHeader( "If-Modified-Since", previous.getLastModified() );
+        }
+        
+        try( HTTPResponse resp = request.get() ) {
+            //Not modified; the server didn't send us the page
+            if( resp.getStatus() == HTTP_NOT_MODIFIED && conditional && previous != null )
+                return new IndexPage( previous, null, null, false, false );
+            if( !resp.ok() )
+                throw new IOException( String.format( "HTTP %d for URL \"%s\".", resp.getStatus(), url ) );
             
-            //Start parsing the index for this Minecraft version
-            parseIndex( name, index, handler );
+            byte[] content = resp.getResponse();
+            MessageDigest digest = Misc.newSHA1();
+            digest.update( content );
+            ForgeIndexPage page = new ForgeIndexPage( url, resp.getHeader( "ETag" ), resp.getHeader( "Last-Modified" ), IO.toHex( digest ) );
+            
+            //The server may send us the page even if it's the same as it was last time; there's no need to parse it in that case
+            //(unless we need its links to the other pages)
+            boolean changed = previous == null || !Objects.equals( previous.getSHA1(), page.getSHA1() );
+            if( !conditional || ( changed && mode == ParseMode.DOM ) )
+                return new IndexPage( page, Jsoup.parse( new ByteArrayInputStream( content ), null, url ), null, changed, true );
+            
+            //The Forge Files website serves its pages as UTF-8
+            String html = changed ? new String( content, StandardCharsets.UTF_8 ) : null;
+            return new IndexPage( page, null, html, changed, true );
         }
     }
     
-    private static void parseIndex( final String mcversion, final Document doc, final ForgeIndexContentHandler handler ) throws Exception {
+    private static void parseIndex( final String mcversion, final Document doc, final ForgeIndexContentHandler handler, final ForgeSizeProber prober ) throws Exception {
         //Determine latest and recommended Forge versions for this version of Minecraft (if any)
         String latest      = parsePromotedVersion( doc, SEL_LATEST );
         String recommended = parsePromotedVersion( doc, SEL_RECOMMENDED );
@@ -99,27 +265,67 @@ public class ForgeIndex {
         MinecraftVersion mv = new MinecraftVersion( mcversion, latest, recommended );
         handler.startMinecraft( mv );
         
+        List< CompletableFuture< ForgeDownload > > downloads = new ArrayList< CompletableFuture< ForgeDownload > >();
         for( Element version : doc.select( SEL_FORGE_VERSIONS ) ) {
             String name = version.select( SEL_FORGE_VERSION_NAME ).first().textNodes().get(0).text().trim();
             
-            String strtime = version.select( SEL_FORGE_VERSION_TIME ).first().text();
-            ZonedDateTime time =
-                LocalDateTime.parse( strtime, DATETIME_FORMATTER )  //Parse the scraped date/time string to a local date/time. The provided date/time doesn't specify an offset.
-                .atZone( ZONEID_CANADA_EASTERN );                   //I'm assuming the times are relative to Eastern Canada based on the location of the Forge Files server.
+            ZonedDateTime time = parseTime( version.select( SEL_FORGE_VERSION_TIME ).first().text() );
             
             //Signal to handler we've parsed basic details for a version of Forge
             handler.forge( new ForgeVersion( name, time ) );
             
             //Parse downloads
-            for( Element download : version.select( SEL_FORGE_VERSION_DOWNLOADS ) )
-                parseDownload( download, handler );
+            for( Element download : version.select( SEL_FORGE_VERSION_DOWNLOADS ) ) {
+                CompletableFuture< ForgeDownload > fd = parseDownload( download, handler, prober );
+                if( fd != null )
+                    downloads.add( fd );
+            }
         }
         
+        //Wait for the sizes of this index's downloads, then hand them all to the handler at once
+        handler.endDownloads( ForgeSizeProber.join( downloads ) );
+        
         //Signal to handler we're finished with the index for this version of Minecraft
         handler.endMinecraft( mv );
     }
     
-    private static void parseDownload( final Element download, final ForgeIndexContentHandler handler ) throws Exception {
+    /**
+     * Scans the given index page for the given version of Minecraft (see {@link ParseMode#STREAMING}), calling the handler the same way parseIndex() does.
+     */
+    private static void scanIndex( final String mcversion, final String html, final String url, final ForgeIndexContentHandler handler, final ForgeSizeProber prober ) throws Exception {
+        List< CompletableFuture< ForgeDownload > > downloads = new ArrayList< CompletableFuture< ForgeDownload > >();
+        MinecraftVersion[] mv = new MinecraftVersion[1];
+        new ForgeIndexScanner( html, url, new ForgeIndexScanner.Listener() {
+            @Override
+            public void start( final String latest, final String recommended ) throws Exception {
+                mv[0] = new MinecraftVersion( mcversion, latest, recommended );
+                handler.startMinecraft( mv[0] );
+            }
+            
+            @Override
+            public void forge( final ForgeVersion fv ) throws Exception {
+                handler.forge( fv );
+            }
+            
+            @Override
+            public void download( final ForgeDownload fd ) throws Exception {
+                downloads.add( prober.start( fd, handler ) );
+            }
+        } ).scan();
+        
+        //Wait for the sizes of this index's downloads, then hand them all to the handler at once
+        handler.endDownloads( ForgeSizeProber.join( downloads ) );
+        
+        //Signal to handler we're finished with the index for this version of Minecraft
+        handler.endMinecraft( mv[0] );
+    }
+    
+    /**
+     * Parses the given download.
+     * Returns a future that completes once we have everything we're going to learn about the download (including its size),
+     * or null if the download isn't one we're interested in.
+     */
+    private static CompletableFuture< ForgeDownload > parseDownload( final Element download, final ForgeIndexContentHandler handler, final ForgeSizeProber prober ) throws Exception {
         ForgeDownload fd = new ForgeDownload();
         
         //Primary information about the download.
@@ -129,20 +335,10 @@ public class ForgeIndex {
         //Determine download type.
         //We're only interested in the universal, client, and server downloads.
         //Ignore all other downloads.
-        String strType = primary.text().trim().toLowerCase();
-        switch( strType ) {
-        case "universal":
-            fd.setType( SideCompat.UNIVERSAL );
-            break;
-        case "client":
-            fd.setType( SideCompat.CLIENT );
-            break;
-        case "server":
-            fd.setType( SideCompat.SERVER );
-            break;
-        default:
-            return;
-        }
+        SideCompat type = parseType( primary.text() );
+        if( type == null )
+            return null;
+        fd.setType( type );
         
         //Get the URL for the download.
         fd.setURL( primary.absUrl( "href" ) );
@@ -173,16 +369,59 @@ public class ForgeIndex {
         
         //The Forge Files website doesn't provide file sizes on the index itself.
         //We'll need to perform a HEAD request on the download to get this information (without actually downloading the file).
-        //Making several HEAD requests is spammy and can potentially take a long time, so the content handler has an opportunity to skip this step
-        //in the case the file size isn't desired or is already known.
-        if( handler.startDownload( fd ) ) {
-            HTTPResponse resp = HTTP.head( new URL( fd.getURL() ) );
-            if( resp.ok() ) { fd.setSize( resp.getContentLength() ); }
-            else            { System.err.println( String.format( "Warning: HTTP %d for URL \"%s\".", resp.getStatus(), fd.getURL() ) ); }
+        //Sizes are found in the background (several at once) while we continue parsing the index.
+        return prober.start( fd, handler );
+    }
+    
+    /**
+     * The result of fetching an index page.
+     */
+    private static class IndexPage {
+        private final ForgeIndexPage page;
+        private final Document       doc;
+        private final String         html;
+        private final boolean        changed;
+        private final boolean        fetched;
+        
+        public IndexPage( final ForgeIndexPage page, final Document doc, final String html, final boolean changed, final boolean fetched ) {
+            this.page    = page;
+            this.doc     = doc;
+            this.html    = html;
+            this.changed = changed;
+            this.fetched = fetched;
+        }
+        
+        public ForgeIndexPage getPage() {
+            return this.page;
+        }
+        
+        /**
+         * Returns the parsed page, or null if the page hasn't changed or is to be scanned rather than parsed (see {@link #getHTML()}).
+         */
+        public Document getDocument() {
+            return this.doc;
+        }
+        
+        /**
+         * Returns the page's HTML if the page is to be scanned (see {@link ParseMode#STREAMING}), null otherwise.
+         */
+        public String getHTML() {
+            return this.html;
+        }
+        
+        /**
+         * Returns true if the server sent us the page (whether or not it's changed).
+         */
+        public boolean isFetched() {
+            return this.fetched;
         }
         
-        //Signal to handler we're finished with this download
-        handler.endDownload( fd );
+        /**
+         * Returns true if the page has changed since it was last parsed (or has never been parsed).
+         */
+        public boolean isChanged() {
+            return this.changed;
+        }
     }
     
     /**
@@ -197,13 +436,51 @@ public class ForgeIndex {
         if( match == null )
             return null;
         
+        return parsePromotedVersion( match.text() );
+    }
+    
+    /**
+     * Returns the latest / recommended version name, given the text of the element containing it.
+     * @param text
+     * @return
+     */
+    static String parsePromotedVersion( final String text ) {
         //Extract the Forge version from the string.
         //This can occur in two forms: "mcver - forgever" or simply "forgever".
         //We use a regular expression here to detect and extract the forge version from the first form.
-        String text = match.text().trim();
-        Matcher m = RE_MC_FORGE_VERSIONS.matcher( text );
+        String trimmed = text.trim();
+        Matcher m = RE_MC_FORGE_VERSIONS.matcher( trimmed );
         if( m.matches() )
             return m.group( 2 );
-        return text;
+        return trimmed;
+    }
+    
+    /**
+     * Parses the time a Forge version was released, as it's given in the index (e.g. "05/16/2016 04:28:01 PM").
+     * @param text
+     * @return
+     */
+    static ZonedDateTime parseTime( final String text ) {
+        return LocalDateTime.parse( text.trim(), DATETIME_FORMATTER ) //Parse the scraped date/time string to a local date/time. The provided date/time doesn't specify an offset.
+               .atZone( ZONEID_CANADA_EASTERN );                      //I'm assuming the times are relative to Eastern Canada based on the location of the Forge Files server.
+    }
+    
+    /**
+     * Returns the type of a download, given the text of its primary link.
+     * We're only interested in the universal, client, and server downloads; returns null for all other downloads.
+     * @param text
+     * @return
+     */
+    static SideCompat parseType( final String text ) {
+        switch( text.trim().toLowerCase() ) {
+        case "universal":
+            return SideCompat.UNIVERSAL;
+        case "client":
+            return SideCompat.CLIENT;
+        case "server":
+            return SideCompat.SERVER;
+        default:
+            return null;
+        }
     }
 }
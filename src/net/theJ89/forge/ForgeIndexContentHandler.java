@@ -1,5 +1,9 @@
 package net.theJ89.forge;
 
+import java.util.List;
+
+import net.theJ89.mmm.SideCompat;
+
 public interface ForgeIndexContentHandler {
     /**
      * Called when we have started parsing an index of forge versions for a particular version of Minecraft.
@@ -20,7 +24,7 @@ public interface ForgeIndexContentHandler {
     /**
      * Called after we have parsed basic information for a version of Forge, but before parsing its downloads.
      * @param name - The name of the Forge version (e.g. "11.15.1.1902")
-     * @param time - The date + time the Forge version was released
+     * @param time - The date + time the Forge version was released, or null if the source doesn't say (see {@link ForgeMavenIndexSource})
      * @throws Exception
      */
     public void forge( ForgeVersion fv ) throws Exception;
@@ -35,11 +39,61 @@ public interface ForgeIndexContentHandler {
     public boolean startDownload( ForgeDownload fd ) throws Exception;
     
     /**
-     * Called after parsing a download for the current forge version and (optionally) sending a HEAD request to find the file size.
+     * Called after parsing a download and (optionally) sending a HEAD request to find the file size.
      * The download can be a client, server, or universal .jar or .zip file.
      * Other types of downloads are ignored.
+     * This is called by the default implementation of {@link #endDownloads(List)}.
      * @param fd - Information about the Forge download.
      * @throws Exception
      */
     public void endDownload( ForgeDownload fd ) throws Exception;
+    
+    /**
+     * Called with every download in the index for the current version of Minecraft, once we've finished parsing the index
+     * and have the sizes of the downloads, just before {@link #endMinecraft(MinecraftVersion)}.
+     * HEAD requests are made in the background while the index is being parsed, so this is called after forge() has been called
+     * for every version of Forge in the index; handlers that need to know which version a download belongs to should note it in startDownload().
+     * The default implementation calls endDownload() for each download, in the order they were parsed.
+     * @param fds - Information about the Forge downloads.
+     * @throws Exception
+     */
+    public default void endDownloads( List< ForgeDownload > fds ) throws Exception {
+        for( ForgeDownload fd : fds )
+            this.endDownload( fd );
+    }
+    
+    /**
+     * Called by sources that have to look up each download separately (see {@link ForgeMavenIndexSource}) before they look one up,
+     * to find out whether the given version of Forge already has a download of the given type.
+     * If it does, the source skips the lookup, and reports the version (with no release time) without the download.
+     * The default implementation returns false, so every download is looked up every time.
+     * @param name - The name of the Forge version (e.g. "11.15.1.1902")
+     * @param type - The type of download.
+     * @return
+     * @throws Exception
+     */
+    public default boolean hasDownload( String name, SideCompat type ) throws Exception {
+        return false;
+    }
+    
+    /**
+     * Called before an index page is fetched, to find out what the page looked like the last time it was parsed.
+     * If this returns a record of the page, the page is only parsed (and the handler called for the corresponding version of Minecraft) if it has changed since.
+     * The default implementation returns null, so every page is parsed every time.
+     * @param url - URL of the index page.
+     * @return What the page looked like the last time it was parsed, or null if it's unknown.
+     * @throws Exception
+     */
+    public default ForgeIndexPage getPage( String url ) throws Exception {
+        return null;
+    }
+    
+    /**
+     * Called after an index page has been fetched (and parsed, if it had changed), with a new record of the page.
+     * Handlers that want unchanged pages to be skipped should store the record and return it from {@link #getPage(String)} next time.
+     * The default implementation does nothing.
+     * @param page - What the page looks like now.
+     * @throws Exception
+     */
+    public default void updatePage( ForgeIndexPage page ) throws Exception {}
 }
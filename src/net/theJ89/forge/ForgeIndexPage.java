@@ -0,0 +1,43 @@
+package net.theJ89.forge;
+
+/**
+ * What we remember about an index page from the last time it was parsed.
+ * This lets ForgeIndex ask the server for the page only if it has changed since (see {@link ForgeIndexContentHandler#getPage(String)}),
+ * and recognize a page whose content hasn't changed even if the server sends it anyway.
+ */
+public class ForgeIndexPage {
+    private String url;
+    private String etag;
+    private String lastModified;
+    private String sha1;
+    
+    /**
+     * ForgeIndexPage constructor.
+     * @param url - URL of the page.
+     * @param etag - Value of the ETag header the page was served with, or null if there wasn't one.
+     * @param lastModified - Value of the Last-Modified header the page was served with, or null if there wasn't one.
+     * @param sha1 - SHA-1 hash of the page's content.
+     */
+    public ForgeIndexPage( final String url, final String etag, final String lastModified, final String sha1 ) {
+        this.url          = url;
+        this.etag         = etag;
+        this.lastModified = lastModified;
+        this.sha1         = sha1;
+    }
+    
+    public String getURL() {
+        return this.url;
+    }
+    
+    public String getETag() {
+        return this.etag;
+    }
+    
+    public String getLastModified() {
+        return this.lastModified;
+    }
+    
+    public String getSHA1() {
+        return this.sha1;
+    }
+}
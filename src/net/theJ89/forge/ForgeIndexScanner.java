@@ -0,0 +1,560 @@
+package net.theJ89.forge;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Objects;
+
+import org.jsoup.internal.StringUtil;
+import org.jsoup.parser.Parser;
+
+import net.theJ89.mmm.SideCompat;
+import net.theJ89.util.Misc;
+
+/**
+ * Extracts Forge versions and downloads from a Forge Files index page in a single pass over its HTML,
+ * without building a DOM for the page (see {@link ForgeIndex.ParseMode#STREAMING}).
+ *
+ * The scanner tokenizes the page itself and keeps track of nothing but the stack of open elements,
+ * which it uses to recognize the same elements ForgeIndex's selectors pick out of the DOM:
+ * <ul>
+ * <li>The promoted versions, in "div.downloads &gt; div.download &gt; div.title &gt; small" (marked with "i.promo-LATEST" / "i.promo-RECOMMENDED").</li>
+ * <li>The rows of "table#downloadsTable"; the name (td 0), time (td 1) and downloads (td 2) of each version of Forge.</li>
+ * </ul>
+ * Versions and downloads are reported to a {@link Listener} as soon as they've been scanned.
+ * The promotions box comes before the downloads table on the Forge Files website, so the promoted versions are reported first;
+ * promotions that come after the downloads table are ignored.
+ *
+ * The tokenizer is lenient in the same ways browsers are for the markup the index uses (unclosed &lt;li&gt;, &lt;td&gt; and &lt;tr&gt; elements,
+ * void elements, comments, scripts), but it isn't a full HTML parser; {@link ForgeIndex.ParseMode#DOM} can still be asked for if the website's markup changes.
+ */
+class ForgeIndexScanner {
+    /**
+     * Receives what the scanner finds, in the order it's found.
+     */
+    interface Listener {
+        /**
+         * Called once, before any versions are reported, with the page's promoted versions.
+         * @param latest - Name of the latest Forge version, or null if there isn't one.
+         * @param recommended - Name of the recommended Forge version, or null if there isn't one.
+         * @throws Exception
+         */
+        void start( String latest, String recommended ) throws Exception;
+        
+        /**
+         * Called for each version of Forge, before its downloads.
+         * @param fv
+         * @throws Exception
+         */
+        void forge( ForgeVersion fv ) throws Exception;
+        
+        /**
+         * Called for each universal, client or server download of the last version of Forge reported.
+         * @param fd
+         * @throws Exception
+         */
+        void download( ForgeDownload fd ) throws Exception;
+    }
+    
+    //Elements we pay attention to
+    private static final int OTHER      = 0;
+    private static final int DOWNLOADS  = 1;    //div.downloads
+    private static final int DOWNLOAD   = 2;    //div.download
+    
+    private static final String[] VOID_ELEMENTS = {
+        "area", "base", "br", "col", "embed", "hr", "img", "input", "link", "meta", "param", "source", "track", "wbr"
+    };
+    
+    private final String   html;
+    private final URL      base;
+    private final Listener listener;
+    
+    //Open elements
+    private String[] names = new String[32];
+    private int[]    kinds = new int[32];
+    private int      depth = 0;
+    
+    //Attributes of the tag being scanned
+    private String attrId;
+    private String attrClass;
+    private String attrHref;
+    
+    //Promoted versions
+    private boolean       started          = false;
+    private String        latest           = null;
+    private String        recommended      = null;
+    private int           titleDepth       = -1;
+    private boolean       titleLatest;
+    private boolean       titleRecommended;
+    private int           smallDepth       = -1;
+    private StringBuilder smallText;
+    
+    //Downloads table
+    private int           tableDepth       = -1;
+    private int           rowDepth         = -1;
+    private int           cell;
+    private int           cellDepth        = -1;
+    private boolean       forgeReported;
+    private int           nameLiDepth      = -1;
+    private boolean       nameSeen;
+    private String        rowName;
+    private StringBuilder rowTime          = new StringBuilder();
+    
+    //Download (an li in td 2)
+    private int           downloadDepth    = -1;
+    private int           downloadChild;
+    private int           primaryDepth     = -1;
+    private StringBuilder primaryText      = new StringBuilder();
+    private String        primaryHref;
+    private int           extendedDepth    = -1;
+    private int           strongDepth      = -1;
+    private StringBuilder strongText       = new StringBuilder();
+    private String        header;
+    private String        md5;
+    private String        sha1;
+    private String        extendedHref;
+    
+    /**
+     * ForgeIndexScanner constructor.
+     * @param html - The index page.
+     * @param baseURL - URL of the index page, used to resolve relative links.
+     * @param listener - Receives what the scanner finds.
+     * @throws MalformedURLException
+     */
+    public ForgeIndexScanner( final String html, final String baseURL, final Listener listener ) throws MalformedURLException {
+        this.html     = html;
+        this.base     = new URL( baseURL );
+        this.listener = listener;
+    }
+    
+    /**
+     * Scans the page.
+     * @throws Exception
+     */
+    public void scan() throws Exception {
+        final String s = this.html;
+        final int    n = s.length();
+        int i = 0;
+        while( i < n ) {
+            int lt = s.indexOf( '<', i );
+            if( lt < 0 ) {
+                this.text( i, n );
+                break;
+            }
+            if( lt > i )
+                this.text( i, lt );
+            
+            //Comments, doctypes, and processing instructions
+            if( s.startsWith( "<!--", lt ) ) {
+                int end = s.indexOf( "-->", lt + 4 );
+                i = end < 0 ? n : end + 3;
+                continue;
+            }
+            if( lt + 1 < n && ( s.charAt( lt + 1 ) == '!' || s.charAt( lt + 1 ) == '?' ) ) {
+                int end = s.indexOf( '>', lt );
+                i = end < 0 ? n : end + 1;
+                continue;
+            }
+            
+            //Tag name
+            boolean closing = lt + 1 < n && s.charAt( lt + 1 ) == '/';
+            int nameStart = closing ? lt + 2 : lt + 1;
+            int j = nameStart;
+            while( j < n && isNameChar( s.charAt( j ) ) )
+                ++j;
+            
+            //Not a tag; just a stray <
+            if( j == nameStart ) {
+                this.text( lt, lt + 1 );
+                i = lt + 1;
+                continue;
+            }
+            String name = s.substring( nameStart, j ).toLowerCase();
+            
+            //Attributes
+            int end = this.scanAttributes( j );
+            boolean selfClosing = s.charAt( end - 1 ) == '/';
+            i = end < n ? end + 1 : n;
+            
+            if( closing ) {
+                this.endTag( name );
+                continue;
+            }
+            this.startTag( name );
+            if( selfClosing || Arrays.binarySearch( VOID_ELEMENTS, name ) >= 0 ) {
+                this.pop();
+            //The contents of scripts and stylesheets aren't markup
+            } else if( name.equals( "script" ) || name.equals( "style" ) ) {
+                int close = indexOfIgnoreCase( s, "</" + name, i );
+                if( close < 0 ) { i = n;     }
+                else            { i = close; }
+            }
+        }
+        
+        //Close anything left open
+        while( this.depth > 0 )
+            this.pop();
+        this.start();
+    }
+    
+    /**
+     * Scans the attributes of a tag, starting at the given index (just after the tag's name), and remembers the ones we're interested in.
+     * Returns the index of the tag's closing &gt; (or the end of the page, if it doesn't have one).
+     */
+    private int scanAttributes( int i ) {
+        final String s = this.html;
+        final int    n = s.length();
+        this.attrId    = null;
+        this.attrClass = null;
+        this.attrHref  = null;
+        
+        while( i < n ) {
+            char c = s.charAt( i );
+            if( c == '>' )
+                return i;
+            if( Character.isWhitespace( c ) || c == '/' ) {
+                ++i;
+                continue;
+            }
+            
+            //Attribute name
+            int nameStart = i;
+            while( i < n && ( c = s.charAt( i ) ) != '=' && c != '>' && c != '/' && !Character.isWhitespace( c ) )
+                ++i;
+            String name = s.substring( nameStart, i );
+            while( i < n && Character.isWhitespace( s.charAt( i ) ) )
+                ++i;
+            if( i >= n || s.charAt( i ) != '=' )
+                continue;
+            
+            //Attribute value (quoted or unquoted)
+            ++i;
+            while( i < n && Character.isWhitespace( s.charAt( i ) ) )
+                ++i;
+            if( i >= n )
+                break;
+            int valueStart, valueEnd;
+            c = s.charAt( i );
+            if( c == '"' || c == '\'' ) {
+                valueStart = i + 1;
+                valueEnd   = s.indexOf( c, valueStart );
+                if( valueEnd < 0 )
+                    valueEnd = n;
+                i = valueEnd + 1;
+            } else {
+                valueStart = i;
+                while( i < n && ( c = s.charAt( i ) ) != '>' && !Character.isWhitespace( c ) )
+                    ++i;
+                valueEnd = i;
+            }
+            
+            if( name.equalsIgnoreCase( "id" ) ) {
+                this.attrId = s.substring( valueStart, valueEnd );
+            } else if( name.equalsIgnoreCase( "class" ) ) {
+                this.attrClass = s.substring( valueStart, valueEnd );
+            } else if( name.equalsIgnoreCase( "href" ) ) {
+                this.attrHref = Parser.unescapeEntities( s.substring( valueStart, valueEnd ), true );
+            }
+        }
+        return n;
+    }
+    
+    private void startTag( final String name ) throws Exception {
+        //Elements whose end tags are optional are closed by their next sibling
+        if( this.depth > 0 ) {
+            String top = this.names[ this.depth - 1 ];
+            if( ( name.equals( "li" ) && top.equals( "li" ) ) ||
+                ( ( name.equals( "td" ) || name.equals( "th" ) ) && ( top.equals( "td" ) || top.equals( "th" ) ) ) )
+                this.pop();
+            else if( name.equals( "tr" ) )
+                this.endTag( "tr" );
+        }
+        
+        //Any tag between a <strong> and its next sibling means there's no text for it
+        this.header = null;
+        
+        int d    = this.depth;
+        int kind = OTHER;
+        if( this.tableDepth >= 0 ) {
+            this.startTableTag( name, d );
+        } else if( name.equals( "div" ) ) {
+            if( this.hasClass( "downloads" ) ) {
+                kind = DOWNLOADS;
+            } else if( this.hasClass( "download" ) && d > 0 && this.kinds[ d - 1 ] == DOWNLOADS ) {
+                kind = DOWNLOAD;
+            } else if( this.hasClass( "title" ) && d > 0 && this.kinds[ d - 1 ] == DOWNLOAD && this.titleDepth < 0 ) {
+                this.titleDepth       = d;
+                this.titleLatest      = false;
+                this.titleRecommended = false;
+                this.smallText        = null;
+            }
+        } else if( this.titleDepth >= 0 ) {
+            if( name.equals( "i" ) ) {
+                this.titleLatest      |= this.hasClass( "promo-LATEST" );
+                this.titleRecommended |= this.hasClass( "promo-RECOMMENDED" );
+            } else if( name.equals( "small" ) && d == this.titleDepth + 1 && this.smallText == null ) {
+                this.smallDepth = d;
+                this.smallText  = new StringBuilder();
+            }
+        } else if( name.equals( "table" ) && this.tableDepth < 0 && Objects.equals( this.attrId, "downloadsTable" ) ) {
+            this.tableDepth = d;
+            this.start();
+        }
+        
+        this.push( name, kind );
+    }
+    
+    private void startTableTag( final String name, final int d ) throws Exception {
+        if( name.equals( "tr" ) && this.rowDepth < 0 ) {
+            this.rowDepth      = d;
+            this.cell          = -1;
+            this.forgeReported = false;
+            this.nameSeen      = false;
+            this.rowName       = null;
+            this.rowTime.setLength( 0 );
+        } else if( this.rowDepth < 0 ) {
+            return;
+        } else if( name.equals( "td" ) && d == this.rowDepth + 1 ) {
+            ++this.cell;
+            this.cellDepth = d;
+            
+            //The version's name and time have been scanned; its downloads are next
+            if( this.cell == 2 )
+                this.reportForge();
+        } else if( this.cellDepth < 0 ) {
+            return;
+        } else if( name.equals( "li" ) && d == this.cellDepth + 2 && this.names[ d - 1 ].equals( "ul" ) ) {
+            //td:eq(0) > ul > li
+            if( this.cell == 0 && !this.nameSeen ) {
+                this.nameLiDepth = d;
+                this.nameSeen    = true;
+            //td:eq(2) > ul > li
+            } else if( this.cell == 2 && this.downloadDepth < 0 ) {
+                this.downloadDepth = d;
+                this.downloadChild = -1;
+                this.primaryHref   = null;
+                this.primaryText.setLength( 0 );
+                this.md5           = null;
+                this.sha1          = null;
+                this.extendedHref  = null;
+            }
+        } else if( this.downloadDepth >= 0 ) {
+            //Children of the download: the first is the primary link, the third is the extended info
+            if( d == this.downloadDepth + 1 ) {
+                ++this.downloadChild;
+                if( this.downloadChild == 0 ) {
+                    this.primaryDepth = d;
+                    if( name.equals( "a" ) )
+                        this.primaryHref = this.attrHref;
+                } else if( this.downloadChild == 2 ) {
+                    this.extendedDepth = d;
+                }
+            }
+            if( this.extendedDepth >= 0 ) {
+                if( name.equals( "strong" ) && this.strongDepth < 0 ) {
+                    this.strongDepth = d;
+                    this.strongText.setLength( 0 );
+                } else if( name.equals( "a" ) && this.extendedHref == null ) {
+                    this.extendedHref = this.attrHref != null ? this.attrHref : "";
+                }
+            }
+        }
+    }
+    
+    private void endTag( final String name ) throws Exception {
+        this.header = null;
+        
+        //Close everything up to and including the nearest open element with the given name.
+        //End tags that don't match any open element are ignored.
+        //Rows and cells don't close their table.
+        for( int i = this.depth - 1; i >= 0; --i ) {
+            String open = this.names[i];
+            if( open.equals( name ) ) {
+                while( this.depth > i )
+                    this.pop();
+                return;
+            }
+            if( open.equals( "table" ) && !name.equals( "table" ) )
+                return;
+        }
+    }
+    
+    private void push( final String name, final int kind ) {
+        if( this.depth == this.names.length ) {
+            this.names = Arrays.copyOf( this.names, this.depth * 2 );
+            this.kinds = Arrays.copyOf( this.kinds, this.depth * 2 );
+        }
+        this.names[ this.depth ] = name;
+        this.kinds[ this.depth ] = kind;
+        ++this.depth;
+    }
+    
+    /**
+     * Closes the innermost open element.
+     */
+    private void pop() throws Exception {
+        int d = --this.depth;
+        this.names[d] = null;
+        
+        if( d == this.smallDepth ) {
+            this.smallDepth = -1;
+        } else if( d == this.titleDepth ) {
+            if( this.smallText != null ) {
+                String text = ForgeIndex.parsePromotedVersion( normalize( this.smallText ) );
+                if( this.titleLatest && this.latest == null )
+                    this.latest = text;
+                if( this.titleRecommended && this.recommended == null )
+                    this.recommended = text;
+            }
+            this.titleDepth = -1;
+        } else if( d == this.strongDepth ) {
+            this.strongDepth = -1;
+            this.header      = normalize( this.strongText );
+        } else if( d == this.primaryDepth ) {
+            this.primaryDepth = -1;
+        } else if( d == this.extendedDepth ) {
+            this.extendedDepth = -1;
+        } else if( d == this.downloadDepth ) {
+            this.downloadDepth = -1;
+            this.reportDownload();
+        } else if( d == this.nameLiDepth ) {
+            this.nameLiDepth = -1;
+        } else if( d == this.cellDepth ) {
+            this.cellDepth = -1;
+        } else if( d == this.rowDepth ) {
+            this.rowDepth = -1;
+            if( this.cell >= 0 )
+                this.reportForge();
+        } else if( d == this.tableDepth ) {
+            this.tableDepth = -1;
+        }
+    }
+    
+    /**
+     * Handles the text between start and end.
+     */
+    private void text( final int start, final int end ) {
+        int d = this.depth;
+        
+        //Text right after a <strong> in the extended info, e.g. "<strong>MD5:</strong> 0123..."
+        if( this.header != null ) {
+            String content = this.decode( start, end ).trim();
+            if( this.header.equals( "MD5:" ) && Misc.isValidMD5( content ) ) {
+                this.md5 = content;
+            } else if( this.header.equals( "SHA1:" ) && Misc.isValidSHA1( content ) ) {
+                this.sha1 = content;
+            }
+            this.header = null;
+        }
+        
+        if( this.smallDepth >= 0 ) {
+            this.smallText.append( this.decode( start, end ) );
+        } else if( this.strongDepth >= 0 ) {
+            this.strongText.append( this.decode( start, end ) );
+        } else if( this.primaryDepth >= 0 ) {
+            this.primaryText.append( this.decode( start, end ) );
+        } else if( this.nameLiDepth >= 0 && d == this.nameLiDepth + 1 && this.rowName == null ) {
+            //The first text directly inside the li is the name of the version; other text in the li (e.g. in a badge) isn't part of it
+            String text = this.decode( start, end ).trim();
+            if( !text.isEmpty() )
+                this.rowName = text;
+        } else if( this.cell == 1 && this.cellDepth >= 0 ) {
+            this.rowTime.append( this.decode( start, end ) );
+        }
+    }
+    
+    private void start() throws Exception {
+        if( this.started )
+            return;
+        this.started = true;
+        this.listener.start( this.latest, this.recommended );
+    }
+    
+    private void reportForge() throws Exception {
+        if( this.forgeReported )
+            return;
+        this.forgeReported = true;
+        if( this.rowName == null )
+            throw new RuntimeException( "Couldn't find the name of a Forge version in the index." );
+        this.listener.forge( new ForgeVersion( this.rowName, ForgeIndex.parseTime( normalize( this.rowTime ) ) ) );
+    }
+    
+    private void reportDownload() throws Exception {
+        SideCompat type = ForgeIndex.parseType( normalize( this.primaryText ) );
+        if( type == null )
+            return;
+        
+        //Prefer the direct download link in the extended info to the primary link (which may be an adfoc.us link); see ForgeIndex.parseDownload()
+        String href = this.extendedHref != null ? this.extendedHref : this.primaryHref;
+        this.listener.download( new ForgeDownload( type, this.absolute( href ), null, this.md5, this.sha1 ) );
+    }
+    
+    /**
+     * Resolves the given link against the page's URL, the way Jsoup's absUrl() does.
+     * Jsoup's resolver is used rather than new URL( base, href ), which keeps ".." segments that would go above the root (e.g. "/../maven/...").
+     */
+    private String absolute( final String href ) {
+        if( href == null )
+            return "";
+        try {
+            return StringUtil.resolve( this.base, href ).toExternalForm();
+        } catch( MalformedURLException e ) {
+            return "";
+        }
+    }
+    
+    private boolean hasClass( final String name ) {
+        String classes = this.attrClass;
+        if( classes == null )
+            return false;
+        int len = name.length();
+        for( int i = classes.indexOf( name ); i >= 0; i = classes.indexOf( name, i + 1 ) ) {
+            boolean startsWord = i == 0                         || Character.isWhitespace( classes.charAt( i - 1 ) );
+            boolean endsWord   = i + len == classes.length()    || Character.isWhitespace( classes.charAt( i + len ) );
+            if( startsWord && endsWord )
+                return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Returns the text between start and end, with any character references decoded.
+     */
+    private String decode( final int start, final int end ) {
+        String text = this.html.substring( start, end );
+        if( text.indexOf( '&' ) < 0 )
+            return text;
+        return Parser.unescapeEntities( text, false );
+    }
+    
+    /**
+     * Collapses runs of whitespace into single spaces and trims the result, as Jsoup's Element.text() does.
+     */
+    private static String normalize( final CharSequence text ) {
+        StringBuilder sb = new StringBuilder( text.length() );
+        boolean space = false;
+        for( int i = 0; i < text.length(); ++i ) {
+            char c = text.charAt( i );
+            if( Character.isWhitespace( c ) || c == '\u00a0' ) {
+                space = sb.length() > 0;
+            } else {
+                if( space )
+                    sb.append( ' ' );
+                sb.append( c );
+                space = false;
+            }
+        }
+        return sb.toString();
+    }
+    
+    private static boolean isNameChar( final char c ) {
+        return ( c >= 'a' && c <= 'z' ) || ( c >= 'A' && c <= 'Z' ) || ( c >= '0' && c <= '9' ) || c == '-' || c == ':';
+    }
+    
+    private static int indexOfIgnoreCase( final String s, final String target, final int from ) {
+        for( int i = from; i <= s.length() - target.length(); ++i )
+            if( s.regionMatches( true, i, target, 0, target.length() ) )
+                return i;
+        return -1;
+    }
+}
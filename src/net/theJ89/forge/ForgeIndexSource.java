@@ -0,0 +1,44 @@
+package net.theJ89.forge;
+
+import java.io.IOException;
+
+/**
+ * A source of data on Forge versions and downloads.
+ * As parse() works through the source, it calls methods in a user provided ForgeIndexContentHandler, the same way regardless of the source.
+ *
+ * Sources:
+ * <ul>
+ * <li>{@link ForgeMavenIndexSource} reads Forge's machine-readable metadata (maven-metadata.xml and the promotions JSON).</li>
+ * <li>{@link ForgeHTMLIndexSource} scrapes the Forge Files website (see {@link ForgeIndex}).</li>
+ * </ul>
+ */
+@FunctionalInterface
+public interface ForgeIndexSource {
+    /**
+     * Parses this source, calling the given handler as it goes.
+     * @param handler
+     * @throws Exception
+     */
+    public void parse( ForgeIndexContentHandler handler ) throws Exception;
+    
+    /**
+     * Returns a source that parses the given primary source, or the given fallback source if the primary source can't be read.
+     * The fallback is only used if the primary source fails with an IOException (e.g. it couldn't be downloaded, or is malformed);
+     * exceptions thrown by the handler are passed on as they are.
+     * Sources that are used as a primary source should read everything they need before they start calling the handler,
+     * so the handler doesn't see the same versions twice.
+     * @param primary
+     * @param fallback
+     * @return
+     */
+    public static ForgeIndexSource withFallback( final ForgeIndexSource primary, final ForgeIndexSource fallback ) {
+        return ( handler ) -> {
+            try {
+                primary.parse( handler );
+            } catch( IOException e ) {
+                System.err.println( "Warning: couldn't read Forge index (" + e + "); falling back." );
+                fallback.parse( handler );
+            }
+        };
+    }
+}
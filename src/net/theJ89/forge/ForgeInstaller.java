@@ -1,18 +1,24 @@
 package net.theJ89.forge;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
-import java.io.RandomAccessFile;
 import java.io.Reader;
 import java.io.Writer;
 import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.sql.SQLException;
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.jar.JarEntry;
@@ -27,57 +33,136 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
 import net.minecraft.launcher.updater.Library;
+import net.theJ89.http.Download;
+import net.theJ89.http.Downloader;
 import net.theJ89.http.HTTP;
 import net.theJ89.http.HTTPResponse;
+import net.theJ89.install.InstallPlan;
+import net.theJ89.install.InstallTask;
+import net.theJ89.install.InstallTask.Kind;
+import net.theJ89.json.BinaryJson;
 import net.theJ89.json.ISO8601_OffsetDateTime_TypeAdapter;
 import net.theJ89.minecraft.MinecraftConstants;
+import net.theJ89.mmm.LibraryManager;
 import net.theJ89.mmm.MMM;
 import net.theJ89.mmm.Side;
 import net.theJ89.util.IO;
-import net.theJ89.util.Misc;
 
 public class ForgeInstaller {
     private static final String MINECRAFT_LIBRARIES_URL = "https://libraries.minecraft.net/";
     private static final String PACK_NAME               = ".pack.xz";
     private static final String VERSION_INFO_FILENAME   = "version.json";
     private static final String CHECKSUMS_FILENAME      = "checksums.sha1";
+    private static final String LIBRARY_OWNER           = "forge";
+    
+    //Guards the Forge binary's download path (see download()). The lock file is locked against other processes; the object, against other threads.
+    private static final String DOWNLOAD_LOCK_FILENAME  = "forge-download.lock";
+    private static final Object DOWNLOAD_LOCK           = new Object();
+    
+    private static final ForgeLibraryVerifier verifier = new ForgeLibraryVerifier();
     
     private static Gson gson;
     static {
         GsonBuilder gb = new GsonBuilder();
-        gb.registerTypeAdapter( OffsetDateTime.class, new ISO8601_OffsetDateTime_TypeAdapter() );
+        gb.registerTypeAdapter( OffsetDateTime.class,   new ISO8601_OffsetDateTime_TypeAdapter() );
+        gb.registerTypeAdapter( ForgeVersionInfo.class, new ForgeVersionInfo.Adapter()           );
         gb.setPrettyPrinting();
         gb.enableComplexMapKeySerialization();
         
         gson = gb.create();
     }
     
-    private Path     directory;
-    private String   mc_name;
-    private String   forge_name;
-    private Side     side;
+    private Path       directory;
+    private String     mc_name;
+    private String     forge_name;
+    private Side       side;
+    private Downloader downloader;
     
     public ForgeInstaller( final Path directory, final String mc_name, final String forge_name, final Side side ) {
         this.directory  = directory;
         this.mc_name    = mc_name;
         this.forge_name = forge_name;
         this.side       = side;
+        this.downloader = null;
+    }
+    
+    /**
+     * Sets the downloader used to download Forge's libraries.
+     * If this isn't set (or is set to null), install() creates a downloader with default settings for the duration of the install.
+     * @param downloader - The downloader to use.
+     */
+    public void setDownloader( final Downloader downloader ) {
+        this.downloader = downloader;
+    }
+    
+    public Downloader getDownloader() {
+        return this.downloader;
     }
     
     public void install() throws IOException {
+        System.out.println( "Installing Minecraft Forge " + this.forge_name + "..." );
+        
+        Downloader downloader = this.downloader;
+        if( downloader != null ) {
+            this.plan().execute( downloader );
+            return;
+        }
+        
+        try( Downloader defaultDownloader = new Downloader() ) {
+            this.plan().execute( defaultDownloader );
+        }
+    }
+    
+    /**
+     * Works out everything that needs to be done to install this version of Forge.
+     * The returned plan can be summarized (e.g. for a dry run) or executed; see {@link InstallPlan}.
+     *
+     * Unlike a Minecraft install, a Forge install can't be planned from metadata alone:
+     * the Forge binary contains the version.json file that lists the libraries Forge needs,
+     * so planning downloads the Forge binary to MMM's temporary directory (if it isn't there already).
+     * Executing the plan moves the binary into place; if the plan is never executed (e.g. a dry run), the binary is deleted when the JVM exits.
+     * @return
+     * @throws IOException
+     */
+    public InstallPlan plan() throws IOException {
+        InstallPlan plan = new InstallPlan();
+        this.plan( plan );
+        return plan;
+    }
+    
+    /**
+     * Adds the tasks needed to install this version of Forge to the given plan.
+     * See {@link #plan()}.
+     * @param plan
+     * @throws IOException
+     */
+    public void plan( final InstallPlan plan ) throws IOException {
+        //We need the Forge binary ahead of time.
+        //It contains a version.json file with information needed by the Forge installation.
+        Path tempForgeBinary;
+        try {
+            tempForgeBinary = download();
+        } catch( SQLException e ) {
+            throw new RuntimeException( e );
+        }
+        this.plan( plan, tempForgeBinary );
+    }
+    
+    /**
+     * Adds the tasks needed to install this version of Forge to the given plan, using a Forge binary that has already been downloaded.
+     * See {@link #plan()}.
+     * @param plan
+     * @param tempForgeBinary - The Forge binary, as returned by {@link #download()}. Executing the plan moves it into place.
+     * @throws IOException
+     */
+    public void plan( final InstallPlan plan, final Path tempForgeBinary ) throws IOException {
         Path   directory  = this.directory;
         String mc_name    = this.mc_name;
-        String forge_name = this.forge_name;
         Side   side       = this.side;
         
-        Path tempForgeBinary = null;
         try {
-            System.out.println( "Installing Minecraft Forge " + forge_name + "..." );
-            
-            //We need the Forge binary ahead of time.
-            //It contains a version.json file with information needed by the Forge installation.
-            tempForgeBinary = download();
-            //tempForgeBinary = MMM.getTempDirectory().resolve( forge_name + ".jar" );
+            //If the plan is never executed, or fails before the binary is moved into place, don't leave the binary behind
+            tempForgeBinary.toFile().deleteOnExit();
             
             //Get the version info for this version of Forge.
             ForgeVersionInfo fvi = getVersionInfo( tempForgeBinary );
@@ -95,31 +180,49 @@ public class ForgeInstaller {
             if( side == Side.CLIENT ) {
                 Path versionDir = directory.resolve( MinecraftConstants.VERSIONS_DIRECTORY ).resolve( officialName );
                 Path fviPath = versionDir.resolve( officialName + ".json" );
-                if( !Files.exists( fviPath ) ) {
-                    //TEMP
-                    //The Simple Forge installer makes a copy of the Minecraft client .jar and renames it.
-                    //A version file can specify a jar to use a different version's jar, however.
-                    //This eliminates the need to copy the file (in newer Forge installations).
-                    //For the moment I'm opting to use the jar approach, but this will change as needed.
-                    fvi.setJar( mc_name );
-                    
-                    if( !Files.exists( versionDir ) ) {
-                        Files.createDirectory( versionDir );
-                    }
+                
+                //TEMP
+                //The Simple Forge installer makes a copy of the Minecraft client .jar and renames it.
+                //A version file can specify a jar to use a different version's jar, however.
+                //This eliminates the need to copy the file (in newer Forge installations).
+                //For the moment I'm opting to use the jar approach, but this will change as needed.
+                fvi.setJar( mc_name );
+                
+                //Since the version info file refers to the Minecraft client .jar, if the same plan installs that .jar,
+                //we wait for it to be downloaded before writing the file.
+                Path mcJarPath = directory.resolve( MinecraftConstants.VERSIONS_DIRECTORY ).resolve( mc_name ).resolve( mc_name + ".jar" );
+                plan.add( InstallTask.create( Kind.WRITE, "Forge version info file", fviPath, () -> {
+                    if( Files.exists( fviPath ) )
+                        return;
                     System.out.println( "Creating version info file at \"" + fviPath + "\"..." );
+                    Files.createDirectories( versionDir );
                     try( Writer writer = Files.newBufferedWriter( fviPath ) ) {
                         gson.toJson( fvi, writer );
                     }
-                }
+                    BinaryJson.deleteSnapshot( fviPath );
+                } ) ).dependsOn( plan.get( Kind.FETCH, mcJarPath ) );
             }
             
+            //Unless we're running in portable mode, libraries are installed to a repository shared by every instance,
+            //and then linked into this instance (see LibraryManager).
+            boolean sharedLibraries = !MMM.isPortable();
+            Path    librariesDir    = directory.resolve( MinecraftConstants.LIBRARIES_DIRECTORY );
+            Path    installDir      = sharedLibraries ? LibraryManager.getDirectory() : librariesDir;
+            
             //Get the installation path for the Forge binary and move our forge binary out of its temporary location
-            Path librariesDir = directory.resolve( MinecraftConstants.LIBRARIES_DIRECTORY );
-            Path forgeBinary = getForgeBinaryPath( fvi, librariesDir );
-            if( !Files.exists( forgeBinary ) ) {
+            Path        forgeBinary = getForgeBinaryPath( fvi, installDir );
+            InstallTask binary      = plan.add( InstallTask.create( Kind.WRITE, "Forge binary", forgeBinary, () -> {
+                if( Files.exists( forgeBinary ) ) {
+                    Files.deleteIfExists( tempForgeBinary );
+                    return;
+                }
                 System.out.println( "Installing Minecraft Forge binary to \"" + forgeBinary + "\"..." );
                 Files.createDirectories( forgeBinary.getParent() );
                 Files.move( tempForgeBinary, forgeBinary );
+            } ) );
+            if( sharedLibraries && side == Side.CLIENT ) {
+                String forgeLibraryPath = Library.getPathFromName( fvi.getForgeLibraryName() );
+                plan.add( InstallTask.create( Kind.WRITE, forgeLibraryPath, librariesDir.resolve( forgeLibraryPath ), () -> linkLibrary( directory, forgeLibraryPath ) ) ).dependsOn( binary );
             }
             
             //Select a random mirror
@@ -136,11 +239,8 @@ public class ForgeInstaller {
             for( ForgeLibrary fl : side_libs ) {
                 //Determine install path for this library
                 String libraryPath = Library.getPathFromName( fl.getName() );
-                Path installPath = librariesDir.resolve( libraryPath );
-                
-                //Do we already have it?
-                if( Files.exists( installPath ) )
-                    continue;
+                Path   installPath = installDir.resolve( libraryPath );
+                Path   packedPath  = installPath.resolveSibling( installPath.getFileName() + PACK_NAME );
                 
                 //Select an appropriate source to download the library from
                 String libMirror = fl.getURL();
@@ -151,29 +251,36 @@ public class ForgeInstaller {
                     baseURL = libMirror;
                 else                         //Library specified a URL, but we have mirrors. Prefer downloading from the mirror.
                     baseURL = mirrorURL;
+                URL url = new URL( baseURL + libraryPath );
                 
-                System.out.println( "Installing library \"" + fl.getName() + "\"..." );
-                
-                //Download the library to the install path.
-                //We'll try downloading a packed version of the library first.
-                //Failing that, we'll try for an uncompressed version of the library.
-                String url = baseURL + libraryPath;
-                if( !downloadPackedLibrary( new URL( url + PACK_NAME ), installPath ) &&
-                    !downloadLibrary(       new URL( url ),             installPath )
-                ) {
-                    throw new RuntimeException( "Failed to download library." );
-                }
+                //Download the library.
+                //The download is network-bound, while unpacking a packed library is CPU-bound, so they're separate tasks;
+                //this way libraries can be unpacked while other libraries are still downloading.
+                InstallTask fetch  = plan.add( InstallTask.fetch( url, installPath, -1, () -> fetchLibrary( fl, url, installPath, packedPath ) ) );
+                InstallTask unpack = plan.add( InstallTask.create( Kind.UNPACK, libraryPath, installPath, () -> unpackLibrary( packedPath, installPath ) ) ).dependsOn( fetch );
+                InstallTask verify = plan.add( InstallTask.create( Kind.VERIFY, libraryPath, installPath, () -> verifyLibrary( fl, installPath ) ) ).dependsOn( unpack );
+                if( sharedLibraries )
+                    plan.add( InstallTask.create( Kind.WRITE, libraryPath, librariesDir.resolve( libraryPath ), () -> linkLibrary( directory, libraryPath ) ) ).dependsOn( verify );
             }
         } catch( SQLException e ) {
             throw new RuntimeException( e );
-        } finally {
-            if( tempForgeBinary != null )
-                Files.deleteIfExists( tempForgeBinary );
         }
     }
     
-    public void uninstall() {
-        //TODO
+    /**
+     * Uninstalls Forge from this instance.
+     * For now this only releases the instance's references to Forge's libraries in the shared repository (see {@link LibraryManager#release(Path, String)}),
+     * which removes any of them that no other instance is using. The files in the instance itself are left in place.
+     * @throws IOException
+     */
+    public void uninstall() throws IOException {
+        if( MMM.isPortable() )
+            return;
+        try {
+            LibraryManager.release( this.directory, LIBRARY_OWNER );
+        } catch( SQLException e ) {
+            throw new RuntimeException( e );
+        }
     }
     
     public Path download() throws IOException, SQLException {
@@ -186,27 +293,36 @@ public class ForgeInstaller {
             throw new RuntimeException( "Can't find download for given version of Forge." );
         
         //Determine where we will (temporarily) download the file to.
-        URL url = new URL( fd.getURL() );
-        String[] filename = Misc.splitFilename( url.getPath() );
-        
-        Path path = Files.createTempFile( MMM.getTempDirectory(), filename[0] + "_", "." + filename[1] );
-        
-        //Download the file if it doesn't already exist.
-        System.out.println( "Downloading Forge binary from \"" + url + "\" to temporary location \"" + path + "\"..." );
-        try(
-            HTTPResponse res = HTTP.get( url );
-            OutputStream out = IO.newBufferedFileOutputStream( path )
-        ) {
-            if( !res.ok() )
-                throw new RuntimeException( "Error downloading Forge binary." );
+        //The file is named after the download (rather than given a random name) so an interrupted download can be resumed on the next attempt.
+        URL    url          = new URL( fd.getURL() );
+        Path   tempDir      = MMM.getTempDirectory();
+        String filename     = Paths.get( url.getPath() ).getFileName().toString();
+        Path   downloadPath = tempDir.resolve( filename );
         
-            IO.copy_MD5_SHA1( res.getInputStream(), out, fd.getMD5(), fd.getSHA1() );
-        //Ensure temporary file is deleted in the case of an exception
-        } catch( Throwable t ) {
-            Files.deleteIfExists( path );
-            throw t;
+        //Only one install at a time may use that name, whether it's running in this process or another one.
+        //Once the download is complete, it's moved to a name of its own, so that the next install doesn't pick up a file this one is still using.
+        Files.createDirectories( tempDir );
+        Path path;
+        synchronized( DOWNLOAD_LOCK ) {
+            try(
+                FileChannel channel = FileChannel.open( tempDir.resolve( DOWNLOAD_LOCK_FILENAME ), StandardOpenOption.CREATE, StandardOpenOption.WRITE );
+                FileLock    lock    = channel.lock()
+            ) {
+                //Download the file if it doesn't already exist.
+                //If we were given a downloader, the download goes through it, so it counts against the same per-host limits as our other downloads.
+                System.out.println( "Downloading Forge binary from \"" + url + "\" to temporary location \"" + downloadPath + "\"..." );
+                Download   download   = new Download( url, downloadPath, fd.getMD5(), fd.getSHA1() );
+                Downloader downloader = this.downloader;
+                if( downloader != null ) {
+                    downloader.download( Collections.singletonList( download ) );
+                } else {
+                    download.run();
+                }
+                
+                path = Files.createTempFile( tempDir, filename + ".", "" );
+                Files.move( downloadPath, path, StandardCopyOption.REPLACE_EXISTING );
+            }
         }
-        
         return path;
     }
     
@@ -280,31 +396,85 @@ public class ForgeInstaller {
     }
     
     /**
-     * Attempts to download and unpack the packed and compressed (.pack.xz) library at the given URL to the given path.
-     * Returns true if the library was successfully downloaded and unpacked.
-     * Returns false if the URL doesn't exist.
-     * 
-     * @param from
-     * @param to
-     * @return
+     * Downloads the given library to the given path.
+     * We'll try downloading a packed version of the library (to packedPath, to be unpacked later by {@link #unpackLibrary(Path, Path)}) first.
+     * Failing that, we'll try for an uncompressed version of the library.
+     * Does nothing if we already have the library (packed or otherwise).
+     * @param fl
+     * @param url - URL of the uncompressed library.
+     * @param installPath - Path to install the library to.
+     * @param packedPath - Path to download the packed library to.
      * @throws IOException
      */
-    private static boolean downloadPackedLibrary( final URL from, final Path to ) throws IOException {
-        try( HTTPResponse res = HTTP.get( from ) ) {
-            if( !res.ok() )
-                return false;
-            
-            System.out.println( "Downloading packed library from \"" + from + "\" to \"" + to + "\"..." );
-            
-            //Unpack the library to its desired location
-            unpack( res.getInputStream(), to );
-            return true;
+    private static void fetchLibrary( final ForgeLibrary fl, final URL url, final Path installPath, final Path packedPath ) throws IOException {
+        if( Files.exists( installPath ) || Files.exists( packedPath ) )
+            return;
+        
+        System.out.println( "Installing library \"" + fl.getName() + "\"..." );
+        if( !downloadFile( new URL( url + PACK_NAME ), packedPath ) &&
+            !downloadFile( url,                        installPath )
+        ) {
+            throw new RuntimeException( "Failed to download library." );
+        }
+    }
+    
+    /**
+     * Unpacks the packed library at packedPath (if there is one) to installPath, then deletes the packed library.
+     * @param packedPath
+     * @param installPath
+     * @throws IOException
+     */
+    private static void unpackLibrary( final Path packedPath, final Path installPath ) throws IOException {
+        if( !Files.exists( packedPath ) )
+            return;
+        
+        System.out.println( "Unpacking library \"" + packedPath + "\" to \"" + installPath + "\"..." );
+        
+        //Unpack to a .part file, then move it to its desired location once it's complete.
+        //This keeps a partially unpacked library from being mistaken for a complete one.
+        Path part = installPath.resolveSibling( installPath.getFileName() + ".part" );
+        try( InputStream in = IO.newBufferedFileInputStream( packedPath ) ) {
+            unpack( in, part );
         }
+        Files.move( part, installPath, StandardCopyOption.REPLACE_EXISTING );
+        Files.delete( packedPath );
     }
     
     /**
-     * Attempts to download the library at the given URL to the given path.
-     * Returns true if the library was successfully downloaded.
+     * Checks the given library against its checksums (see {@link ForgeLibraryVerifier}).
+     * If it fails, the library is deleted so the next install downloads it again.
+     * @param fl
+     * @param installPath
+     * @throws IOException
+     */
+    private static void verifyLibrary( final ForgeLibrary fl, final Path installPath ) throws IOException {
+        List< String > problems = verifier.verify( installPath, fl.getChecksums() );
+        if( problems.isEmpty() )
+            return;
+        
+        for( String problem : problems )
+            System.err.println( "* " + problem );
+        Files.deleteIfExists( installPath );
+        throw new RuntimeException( "Library \"" + fl.getName() + "\" failed verification." );
+    }
+    
+    /**
+     * Links the given library from the shared library repository into the instance at the given directory.
+     * @param directory
+     * @param libraryPath
+     * @throws IOException
+     */
+    private static void linkLibrary( final Path directory, final String libraryPath ) throws IOException {
+        try {
+            LibraryManager.link( directory, LIBRARY_OWNER, libraryPath, null );
+        } catch( SQLException e ) {
+            throw new RuntimeException( e );
+        }
+    }
+    
+    /**
+     * Attempts to download the file at the given URL to the given path.
+     * Returns true if the file was successfully downloaded.
      * Returns false if the URL doesn't exist.
      * 
      * @param from
@@ -312,16 +482,19 @@ public class ForgeInstaller {
      * @return
      * @throws IOException
      */
-    private static boolean downloadLibrary( final URL from, final Path to ) throws IOException {
+    private static boolean downloadFile( final URL from, final Path to ) throws IOException {
         try( HTTPResponse res = HTTP.get( from ) ) {
             if( !res.ok() )
                 return false;
             
-            System.out.println( "Downloading library from \"" + from + "\" to \"" + to + "\"..." );
+            System.out.println( "Downloading \"" + from + "\" to \"" + to + "\"..." );
             
-            //Copy the library to its desired location
+            //Copy the file to a .part file, then move it to its desired location once we have all of it.
+            //This keeps a partially downloaded file from being mistaken for a complete one.
             Files.createDirectories( to.getParent() );
-            Files.copy( res.getInputStream(), to );
+            Path part = to.resolveSibling( to.getFileName() + ".part" );
+            Files.copy( res.getInputStream(), part, StandardCopyOption.REPLACE_EXISTING );
+            Files.move( part, to, StandardCopyOption.REPLACE_EXISTING );
             return true;
         }
     }
@@ -330,81 +503,85 @@ public class ForgeInstaller {
      * Unpack the .jar.pack.xz libraries we downloaded from the Forge mirror to a .jar at the given location.
      * Libraries hosted by Minecraft Forge are first packed with Pack200, then appended with metadata, then XZ compressed.
      * This function reverses this process, outputting the original library (with an additional checksum file).
+     *
+     * The library is decompressed into memory rather than to a temporary file.
+     * We can't hand the decompressed data to Pack200 as it arrives, because the metadata at the end isn't part of the packed library,
+     * and we won't know how long the metadata is until we've read the very last bytes.
+     * Forge's libraries are at most a few megabytes, however, so the whole thing fits comfortably in memory.
      * @param in - Input stream to get the compressed library from
      * @param to - Path to output the decompressed library to.
      * @throws IOException
      */
     private static void unpack( final InputStream in, final Path to ) throws IOException {
-        String[] filename = Misc.splitFilename( to );
-        Path temp = Files.createTempFile( MMM.getTempDirectory(), filename[0] + "_", "." + filename[1] + ".pack" );
-        try {
-            //Decompress the data to a temporary file
-            try(
-                InputStream in2 = new XZInputStream( in );
-                OutputStream out = IO.newBufferedFileOutputStream( temp )
-            ) {
-                IO.copy( in2, out );
-            }
-            
-            //Read and then truncate the metadata from temporary file
-            byte[] buf;
-            try( RandomAccessFile raf = new RandomAccessFile( temp.toString(), "rw" ) ) {
-                //Libraries hosted on Forge mirrors append some metadata to the end of the packed file before compressing it.
-                //The metadata consists of:
-                // * A checksums file. This is a list of newline delimited SHA-1 checksums (one for each file in the .jar).
-                // * The length of the checksums file (as an unsigned 4-byte little-endian integer)
-                // * The magic string "SIGN"
-                long length = raf.length();
-                if( length < 8 )
-                    throw new RuntimeException( "Filesize is too small." );
-                
-                //Read the checksum lengths + magic string into a buffer
-                long checksumsEnd = length - 8;
-                buf = IO.read( raf, checksumsEnd, 8 );
-                
-                //Ensure the magic string is present
-                String end = new String( buf, 4, 4, StandardCharsets.US_ASCII );
-                if( !Objects.equals( end, "SIGN" ) )
-                    throw new RuntimeException( "No signature." );
-                
-                //Decode the checksums length.
-                //The (byte & 0xFF) is necessary to cast from signed bytes [-128,127] to unsigned bytes [0,255]. 
-                int checksumsLength = (
-                    ( buf[ 0 ] & 0xFF )       |
-                    ( buf[ 1 ] & 0xFF ) << 8  |
-                    ( buf[ 2 ] & 0xFF ) << 16 |
-                    ( buf[ 3 ] & 0xFF ) << 24
-                );
-                
-                if( checksumsLength > checksumsEnd )
-                    throw new RuntimeException( "Invalid checksum file size." );
-                
-                //Read the checksums file to buf
-                long checksumsBegin = checksumsEnd - checksumsLength;
-                buf = IO.read( raf, checksumsBegin, checksumsLength );
-                
-                //Truncate the additional data
-                raf.setLength( checksumsBegin );
-            }
+        //Decompress the data into memory
+        UnpackBuffer data = new UnpackBuffer();
+        try( InputStream in2 = new XZInputStream( in ) ) {
+            IO.copy( in2, data );
+        }
+        byte[] buf    = data.array();
+        int    length = data.size();
+        
+        //Libraries hosted on Forge mirrors append some metadata to the end of the packed file before compressing it.
+        //The metadata consists of:
+        // * A checksums file. This is a list of newline delimited SHA-1 checksums (one for each file in the .jar).
+        // * The length of the checksums file (as an unsigned 4-byte little-endian integer)
+        // * The magic string "SIGN"
+        if( length < 8 )
+            throw new RuntimeException( "Filesize is too small." );
+        
+        //Ensure the magic string is present
+        int checksumsEnd = length - 8;
+        String end = new String( buf, checksumsEnd + 4, 4, StandardCharsets.US_ASCII );
+        if( !Objects.equals( end, "SIGN" ) )
+            throw new RuntimeException( "No signature." );
+        
+        //Decode the checksums length.
+        //The (byte & 0xFF) is necessary to cast from signed bytes [-128,127] to unsigned bytes [0,255]. 
+        long checksumsLength = (
+            ( buf[ checksumsEnd     ] & 0xFFL )       |
+            ( buf[ checksumsEnd + 1 ] & 0xFFL ) << 8  |
+            ( buf[ checksumsEnd + 2 ] & 0xFFL ) << 16 |
+            ( buf[ checksumsEnd + 3 ] & 0xFFL ) << 24
+        );
+        
+        if( checksumsLength > checksumsEnd )
+            throw new RuntimeException( "Invalid checksum file size." );
+        int checksumsBegin = checksumsEnd - (int)checksumsLength;
+        
+        //Unpack the library using Pack200 and attach the checksums to it
+        Files.createDirectories( to.getParent() );
+        try(
+            InputStream     in2 = new ByteArrayInputStream( buf, 0, checksumsBegin );
+            JarOutputStream out = IO.newBufferedJarFileOutputStream( to )
+        ) {
+            //Unpack the jar to the file at the given path
+            Pack200.newUnpacker().unpack( in2, out );
             
-            //Unpack the library using Pack200 and attach the checksums to it
-            Files.createDirectories( to.getParent() );
-            try(
-                InputStream     in2 = IO.newBufferedFileInputStream( temp );
-                JarOutputStream out = IO.newBufferedJarFileOutputStream( to )
-            ) {
-                //Unpack the jar to the file at the given path
-                Pack200.newUnpacker().unpack( in2, out );
-                
-                //Add the checksums file to the .jar as "checksums.sha1"
-                JarEntry checksumsFile = new JarEntry( CHECKSUMS_FILENAME );
-                checksumsFile.setTime( 0 );
-                out.putNextEntry( checksumsFile );
-                out.write( buf );
-                out.closeEntry();
-            }
-        } finally {
-            Files.deleteIfExists( temp );
+            //Add the checksums file to the .jar as "checksums.sha1"
+            JarEntry checksumsFile = new JarEntry( CHECKSUMS_FILENAME );
+            checksumsFile.setTime( 0 );
+            out.putNextEntry( checksumsFile );
+            out.write( buf, checksumsBegin, (int)checksumsLength );
+            out.closeEntry();
+        }
+    }
+    
+    /**
+     * A ByteArrayOutputStream that gives us direct access to its buffer, so we don't have to copy the decompressed library to read it.
+     */
+    private static class UnpackBuffer extends ByteArrayOutputStream {
+        private static final int INITIAL_CAPACITY = 1 << 20;
+        
+        public UnpackBuffer() {
+            super( INITIAL_CAPACITY );
+        }
+        
+        /**
+         * Returns the buffer. Only the first size() bytes are valid.
+         * @return
+         */
+        public byte[] array() {
+            return this.buf;
         }
     }
 }
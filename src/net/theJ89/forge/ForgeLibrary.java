@@ -1,7 +1,14 @@
 package net.theJ89.forge;
 
+import java.io.IOException;
 import java.util.List;
 
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import net.theJ89.json.JsonIO;
+
 public class ForgeLibrary {
     private String comment;
     private String name;
@@ -62,4 +69,64 @@ public class ForgeLibrary {
     public String toString() {
         return this.getName();
     }
+    
+    /**
+     * Streaming type adapter for ForgeLibrary.
+     */
+    public static class Adapter extends TypeAdapter< ForgeLibrary > {
+        @Override
+        public void write( final JsonWriter out, final ForgeLibrary value ) throws IOException {
+            if( value == null ) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name( "comment" ).value( value.comment );
+            out.name( "name"    ).value( value.name );
+            out.name( "url"     ).value( value.url );
+            out.name( "checksums" );
+            JsonIO.writeStringList( out, value.checksums );
+            out.name( "serverreq" ).value( value.serverreq );
+            out.name( "clientreq" ).value( value.clientreq );
+            out.endObject();
+        }
+        
+        @Override
+        public ForgeLibrary read( final JsonReader in ) throws IOException {
+            if( JsonIO.skipNull( in ) )
+                return null;
+            
+            ForgeLibrary value = new ForgeLibrary();
+            in.beginObject();
+            while( in.hasNext() ) {
+                String name = in.nextName();
+                if( JsonIO.skipNull( in ) )
+                    continue;
+                switch( name ) {
+                case "comment":
+                    value.comment = in.nextString();
+                    break;
+                case "name":
+                    value.name = in.nextString();
+                    break;
+                case "url":
+                    value.url = in.nextString();
+                    break;
+                case "checksums":
+                    value.checksums = JsonIO.nextStringList( in );
+                    break;
+                case "serverreq":
+                    value.serverreq = in.nextBoolean();
+                    break;
+                case "clientreq":
+                    value.clientreq = in.nextBoolean();
+                    break;
+                default:
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return value;
+        }
+    }
 }
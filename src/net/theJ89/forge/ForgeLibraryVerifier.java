@@ -0,0 +1,224 @@
+package net.theJ89.forge;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import net.theJ89.util.IO;
+import net.theJ89.util.Misc;
+
+/**
+ * Checks Forge libraries against the checksums Forge publishes for them.
+ *
+ * There are two sources of checksums:
+ * <ul>
+ * <li>Libraries unpacked from a Forge mirror contain a "checksums.sha1" file listing the SHA-1 hash of every entry in the .jar.</li>
+ * <li>Forge's version.json lists SHA-1 hashes for the library (see {@link ForgeLibrary#getChecksums()}).
+ *     These include the hash of the .jar as a whole and, for packed libraries, the hash of the "checksums.sha1" file.</li>
+ * </ul>
+ * A library is checked against both: its entries against its checksums file (if it has one),
+ * and then either its checksums file or the .jar as a whole against version.json.
+ * Unpacking doesn't reproduce the original .jar byte for byte, so without the second check, an unpacked library
+ * is only as trustworthy as the checksums file that came with it.
+ *
+ * Hashing every entry of a library is CPU-bound, so entries are hashed in parallel on a fork-join pool.
+ */
+public class ForgeLibraryVerifier {
+    private static final String CHECKSUMS_FILENAME = "checksums.sha1";
+    
+    //Below this many entries, a task hashes its entries itself rather than splitting them between two subtasks.
+    private static final int    THRESHOLD          = 16;
+    
+    private final ForkJoinPool pool;
+    
+    /**
+     * Constructs a verifier that runs on the common fork-join pool.
+     */
+    public ForgeLibraryVerifier() {
+        this( ForkJoinPool.commonPool() );
+    }
+    
+    /**
+     * ForgeLibraryVerifier constructor.
+     * @param pool - Pool to hash entries on.
+     */
+    public ForgeLibraryVerifier( final ForkJoinPool pool ) {
+        this.pool = pool;
+    }
+    
+    /**
+     * Checks the library at the given path.
+     * If the library contains a checksums file, every entry listed in it is checked against it.
+     * If any checksums are given, either the library's checksums file or the library as a whole must match one of them.
+     *
+     * @param jar - Path of the library.
+     * @param checksums - SHA-1 hashes the library as a whole may have (see {@link ForgeLibrary#getChecksums()}), or null if there are none.
+     * @return A description of each problem found. If this is empty, the library is valid.
+     * @throws IOException
+     */
+    public List< String > verify( final Path jar, final List< String > checksums ) throws IOException {
+        boolean        checkJar = checksums != null && !checksums.isEmpty();
+        List< String > problems = new ArrayList< String >();
+        try( ZipFile zf = IO.getZipFile( jar ) ) {
+            ZipEntry checksumsEntry = zf.getEntry( CHECKSUMS_FILENAME );
+            if( checksumsEntry != null ) {
+                byte[] data;
+                try( InputStream in = zf.getInputStream( checksumsEntry ) ) {
+                    data = IO.toByteArray( in );
+                }
+                problems.addAll( this.verifyEntries( zf, readChecksums( data ) ) );
+                
+                //A checksums file that version.json vouches for means every entry it vouched for is genuine
+                if( checkJar ) {
+                    MessageDigest digest = Misc.newSHA1();
+                    digest.update( data );
+                    checkJar = !checksums.contains( IO.toHex( digest ) );
+                }
+            }
+        }
+        
+        if( !checkJar )
+            return problems;
+        
+        MessageDigest digest = Misc.newSHA1();
+        IO.update( jar, digest );
+        String hash = IO.toHex( digest );
+        if( !checksums.contains( hash ) )
+            problems.add( "Neither the SHA-1 hash (" + hash + ") nor the \"" + CHECKSUMS_FILENAME + "\" file's hash matches any expected hash " + checksums + "." );
+        return problems;
+    }
+    
+    /**
+     * Checks every library in the given directory (and its subdirectories) that contains a checksums file.
+     * Libraries without a checksums file have nothing to be checked against here, and are skipped.
+     *
+     * @param librariesDir - A libraries directory, such as the shared library repository (see {@link net.theJ89.mmm.LibraryManager#getDirectory()}).
+     * @return Maps the path of each library that failed to the problems found with it. If this is empty, every library is valid.
+     * @throws IOException
+     */
+    public Map< Path, List< String > > verifyAll( final Path librariesDir ) throws IOException {
+        List< Path > jars;
+        try( Stream< Path > stream = Files.walk( librariesDir ) ) {
+            jars = stream.filter( ( p ) -> p.getFileName().toString().endsWith( ".jar" ) && Files.isRegularFile( p ) ).collect( Collectors.toList() );
+        }
+        
+        Map< Path, List< String > > failed = new LinkedHashMap< Path, List< String > >();
+        for( Path jar : jars ) {
+            List< String > problems = this.verify( jar, null );
+            if( !problems.isEmpty() )
+                failed.put( jar, problems );
+        }
+        
+        System.out.println( String.format( "Verified %d libraries in \"%s\"; %d failed.", jars.size(), librariesDir, failed.size() ) );
+        return failed;
+    }
+    
+    /**
+     * Hashes each of the given entries of the given .jar in parallel and compares them to the given hashes.
+     */
+    private List< String > verifyEntries( final ZipFile zf, final Map< String, String > hashes ) throws IOException {
+        try {
+            return this.pool.invoke( new VerifyTask( zf, new ArrayList< Entry< String, String > >( hashes.entrySet() ), 0, hashes.size() ) );
+        } catch( UncheckedIOException e ) {
+            throw e.getCause();
+        }
+    }
+    
+    /**
+     * Parses the contents of a checksums file.
+     * Each line of the file consists of an entry's SHA-1 hash, followed by a space, followed by the entry's name.
+     * Returns a map of entry names to hashes.
+     */
+    private static Map< String, String > readChecksums( final byte[] data ) throws IOException {
+        Map< String, String > hashes = new LinkedHashMap< String, String >();
+        try( BufferedReader reader = IO.newBufferedU8ISReader( new ByteArrayInputStream( data ) ) ) {
+            String line;
+            while( ( line = reader.readLine() ) != null ) {
+                line = line.trim();
+                if( line.isEmpty() )
+                    continue;
+                
+                int space = line.indexOf( ' ' );
+                if( space < 0 )
+                    throw new RuntimeException( "Malformed line in \"" + CHECKSUMS_FILENAME + "\": \"" + line + "\"." );
+                hashes.put( line.substring( space + 1 ), line.substring( 0, space ).toLowerCase() );
+            }
+        }
+        return hashes;
+    }
+    
+    /**
+     * Hashes a range of entries, splitting the range in half between two subtasks if it's large enough.
+     */
+    private static class VerifyTask extends RecursiveTask< List< String > > {
+        private static final long serialVersionUID = 1L;
+        
+        private final ZipFile                         zf;
+        private final List< Entry< String, String > > entries;
+        private final int                             begin;
+        private final int                             end;
+        
+        public VerifyTask( final ZipFile zf, final List< Entry< String, String > > entries, final int begin, final int end ) {
+            this.zf      = zf;
+            this.entries = entries;
+            this.begin   = begin;
+            this.end     = end;
+        }
+        
+        @Override
+        protected List< String > compute() {
+            if( this.end - this.begin > THRESHOLD ) {
+                int middle = ( this.begin + this.end ) >>> 1;
+                VerifyTask left  = new VerifyTask( this.zf, this.entries, this.begin, middle );
+                VerifyTask right = new VerifyTask( this.zf, this.entries, middle,     this.end );
+                left.fork();
+                List< String > problems = new ArrayList< String >( right.compute() );
+                problems.addAll( left.join() );
+                return problems;
+            }
+            
+            List< String > problems = new ArrayList< String >();
+            byte[] buf = new byte[8192];
+            for( int i = this.begin; i < this.end; ++i ) {
+                String name = this.entries.get( i ).getKey();
+                String hash = this.entries.get( i ).getValue();
+                
+                ZipEntry entry = this.zf.getEntry( name );
+                if( entry == null ) {
+                    problems.add( "Missing entry \"" + name + "\"." );
+                    continue;
+                }
+                
+                MessageDigest digest = Misc.newSHA1();
+                try( InputStream in = this.zf.getInputStream( entry ) ) {
+                    int c;
+                    while( ( c = in.read( buf ) ) != -1 )
+                        digest.update( buf, 0, c );
+                } catch( IOException e ) {
+                    throw new UncheckedIOException( e );
+                }
+                
+                String computedHash = IO.toHex( digest );
+                if( !computedHash.equals( hash ) )
+                    problems.add( "Entry \"" + name + "\" has SHA-1 hash (" + computedHash + "), expected (" + hash + ")." );
+            }
+            return problems;
+        }
+    }
+}
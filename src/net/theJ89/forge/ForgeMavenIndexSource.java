@@ -0,0 +1,419 @@
+package net.theJ89.forge;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import net.theJ89.http.HTTP;
+import net.theJ89.http.HTTPResponse;
+import net.theJ89.mmm.SideCompat;
+import net.theJ89.util.IO;
+import net.theJ89.util.Misc;
+
+/**
+ * Reads data on Forge versions from Forge's machine-readable metadata, rather than scraping the Forge Files website:
+ * <ul>
+ * <li>Forge's maven-metadata.xml lists every version of Forge that has been published, as "mcversion-forgeversion" (e.g. "1.8.9-11.15.1.1902").</li>
+ * <li>Forge's promotions JSON lists the latest and recommended version of Forge for each version of Minecraft.</li>
+ * </ul>
+ * Both are read with streaming parsers, which is far cheaper than building and querying a DOM for each index page.
+ *
+ * The metadata doesn't list downloads, so each version's universal .jar is looked up in Forge's Maven repository:
+ * a HEAD request gives its size and (from Last-Modified) the version's release time, and the ".md5" and ".sha1" files next to it give its hashes.
+ * Versions the handler already has a universal .jar for (see {@link ForgeIndexContentHandler#hasDownload(String, SideCompat)}) aren't looked up again;
+ * they're reported with no release time and no downloads.
+ * Versions without a universal .jar (e.g. Minecraft 1.17 and up, or very old versions that only had a .zip) can't be installed,
+ * so they're left out altogether.
+ *
+ * This is the primary source of {@link ForgeVersions#update(int)}, with the Forge Files website as its fallback.
+ * Everything is read before the handler is called, so this can be used with {@link ForgeIndexSource#withFallback(ForgeIndexSource, ForgeIndexSource)}.
+ * The metadata can also be read from local files (see {@link #fromDirectory(Path)}), e.g. for testing.
+ */
+public class ForgeMavenIndexSource implements ForgeIndexSource {
+    public static final URL    METADATA_URL   = HTTP.stringToURL( "https://maven.minecraftforge.net/net/minecraftforge/forge/maven-metadata.xml" );
+    public static final URL    PROMOTIONS_URL = HTTP.stringToURL( "https://files.minecraftforge.net/net/minecraftforge/forge/promotions_slim.json" );
+    public static final String MAVEN_URL      = "https://maven.minecraftforge.net/";
+    
+    private static final String METADATA_FILENAME   = "maven-metadata.xml";
+    private static final String PROMOTIONS_FILENAME = "promotions_slim.json";
+    private static final String FORGE_PATH          = "net/minecraftforge/forge/";
+    
+    //Everything we know about a version's universal .jar, or null if it doesn't have one
+    private static class Universal {
+        public final ForgeDownload download;
+        public final ZonedDateTime time;
+        
+        public Universal( final ForgeDownload download, final ZonedDateTime time ) {
+            this.download = download;
+            this.time     = time;
+        }
+    }
+    
+    private URL    metadataURL;
+    private URL    promotionsURL;
+    private String mavenURL;
+    private int    recent;
+    
+    /**
+     * Constructs a source that reads Forge's published metadata.
+     */
+    public ForgeMavenIndexSource() {
+        this( METADATA_URL, PROMOTIONS_URL, MAVEN_URL, ForgeIndex.ALL_VERSIONS );
+    }
+    
+    /**
+     * ForgeMavenIndexSource constructor.
+     * @param metadataURL - URL of Forge's maven-metadata.xml. This can be a file: URL.
+     * @param promotionsURL - URL of Forge's promotions JSON. This can be a file: URL.
+     * @param mavenURL - URL of the Maven repository the downloads are in (ending in a slash).
+     * @param recent - Only look at the most recent this many versions of Minecraft, or ForgeIndex.ALL_VERSIONS to look at all of them.
+     */
+    public ForgeMavenIndexSource( final URL metadataURL, final URL promotionsURL, final String mavenURL, final int recent ) {
+        this.metadataURL   = metadataURL;
+        this.promotionsURL = promotionsURL;
+        this.mavenURL      = mavenURL;
+        this.recent        = recent;
+    }
+    
+    /**
+     * Returns a source that reads a copy of Forge's metadata from the given directory.
+     * The directory should contain "maven-metadata.xml" and "promotions_slim.json", and the downloads (with their ".md5" and ".sha1" files)
+     * should be under "net/minecraftforge/forge/", as in the Maven repository.
+     * @param directory
+     * @return
+     * @throws IOException
+     */
+    public static ForgeMavenIndexSource fromDirectory( final Path directory ) throws IOException {
+        return new ForgeMavenIndexSource(
+            directory.resolve( METADATA_FILENAME ).toUri().toURL(),
+            directory.resolve( PROMOTIONS_FILENAME ).toUri().toURL(),
+            directory.toUri().toString(),
+            ForgeIndex.ALL_VERSIONS
+        );
+    }
+    
+    @Override
+    public void parse( final ForgeIndexContentHandler handler ) throws Exception {
+        //Read both files up front. If either of them can't be read, we don't call the handler at all.
+        byte[] metadata   = read( this.metadataURL );
+        byte[] promotions = read( this.promotionsURL );
+        
+        //Nothing to do if neither file has changed since the last time we parsed them
+        ForgeIndexPage metadataPage   = toPage( this.metadataURL,   metadata   );
+        ForgeIndexPage promotionsPage = toPage( this.promotionsURL, promotions );
+        if( !isChanged( handler, metadataPage ) && !isChanged( handler, promotionsPage ) ) {
+            System.out.println( "Forge versions are unchanged." );
+            return;
+        }
+        
+        Map< String, List< String > > versions = parseMetadata( metadata );
+        Map< String, String >         promos   = parsePromotions( promotions );
+        
+        //Versions of Minecraft are listed oldest first; only keep the most recent ones if we've been asked to
+        if( this.recent != ForgeIndex.ALL_VERSIONS ) {
+            Iterator< String > it = versions.keySet().iterator();
+            for( int skip = versions.size() - this.recent; skip > 0; --skip ) {
+                it.next();
+                it.remove();
+            }
+        }
+        
+        //Look up the universal .jar of every version the handler doesn't already have one for, before we call the handler
+        Set< String > known = new HashSet< String >();
+        for( Entry< String, List< String > > entry : versions.entrySet() )
+            for( String version : entry.getValue() )
+                if( handler.hasDownload( getForgeVersion( entry.getKey(), version ), SideCompat.UNIVERSAL ) )
+                    known.add( version );
+        Map< String, Universal > universals = this.probe( versions, known );
+        
+        for( Entry< String, List< String > > entry : versions.entrySet() ) {
+            String mcversion = entry.getKey();
+            
+            //Versions of Forge we can't install are left out
+            List< String > versionsWithJar = new ArrayList< String >( entry.getValue().size() );
+            List< String > names           = new ArrayList< String >( entry.getValue().size() );
+            for( String version : entry.getValue() ) {
+                if( !known.contains( version ) && universals.get( version ) == null )
+                    continue;
+                versionsWithJar.add( version );
+                names.add( getForgeVersion( mcversion, version ) );
+            }
+            if( names.isEmpty() )
+                continue;
+            
+            //The promotions are occasionally ahead of (or behind) the Maven metadata; ignore promotions of versions we don't list
+            String latest      = promos.get( mcversion + "-latest" );
+            String recommended = promos.get( mcversion + "-recommended" );
+            MinecraftVersion mv = new MinecraftVersion(
+                mcversion,
+                names.contains( latest )      ? latest      : null,
+                names.contains( recommended ) ? recommended : null
+            );
+            handler.startMinecraft( mv );
+            
+            List< ForgeDownload > downloads = new ArrayList< ForgeDownload >( names.size() );
+            for( int i = 0; i < names.size(); ++i ) {
+                String version = versionsWithJar.get( i );
+                if( known.contains( version ) ) {
+                    handler.forge( new ForgeVersion( names.get( i ), null ) );
+                    continue;
+                }
+                Universal universal = universals.get( version );
+                handler.forge( new ForgeVersion( names.get( i ), universal.time ) );
+                handler.startDownload( universal.download );
+                downloads.add( universal.download );
+            }
+            handler.endDownloads( downloads );
+            
+            handler.endMinecraft( mv );
+        }
+        
+        handler.updatePage( metadataPage   );
+        handler.updatePage( promotionsPage );
+    }
+    
+    /**
+     * Looks up the universal .jar of every given version of Forge except the known ones, several at a time.
+     * Returns a map of full Maven versions to what we found, or to null for versions that don't have a universal .jar.
+     * @throws IOException If any of the lookups failed for a reason other than the .jar not existing.
+     */
+    private Map< String, Universal > probe( final Map< String, List< String > > versions, final Set< String > known ) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool( ForgeSizeProber.DEFAULT_THREADS, Misc.newDaemonThreadFactory( "ForgeMaven-" ) );
+        try {
+            Map< String, CompletableFuture< Universal > > futures = new LinkedHashMap< String, CompletableFuture< Universal > >();
+            for( List< String > list : versions.values() ) {
+                for( String version : list ) {
+                    if( known.contains( version ) )
+                        continue;
+                    String url = this.mavenURL + FORGE_PATH + version + "/forge-" + version + "-universal.jar";
+                    futures.put( version, CompletableFuture.supplyAsync( () -> {
+                        try                    { return probe( url ); }
+                        catch( IOException e ) { throw new UncheckedIOException( e ); }
+                    }, executor ) );
+                }
+            }
+            
+            Map< String, Universal > universals = new HashMap< String, Universal >();
+            for( Entry< String, CompletableFuture< Universal > > entry : futures.entrySet() ) {
+                try {
+                    universals.put( entry.getKey(), entry.getValue().join() );
+                } catch( CompletionException e ) {
+                    if( e.getCause() instanceof UncheckedIOException )
+                        throw ( (UncheckedIOException)e.getCause() ).getCause();
+                    throw e;
+                }
+            }
+            return universals;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    /**
+     * Looks up the universal .jar at the given URL, along with its ".md5" and ".sha1" files.
+     * Returns null if the .jar doesn't exist.
+     */
+    private static Universal probe( final String url ) throws IOException {
+        URL           jarURL = new URL( url );
+        Long          length;
+        ZonedDateTime time;
+        String        protocol = jarURL.getProtocol();
+        if( protocol.equals( "http" ) || protocol.equals( "https" ) ) {
+            try( HTTPResponse resp = HTTP.head( jarURL ) ) {
+                int status = resp.getStatus();
+                if( status == HttpURLConnection.HTTP_NOT_FOUND || status == HttpURLConnection.HTTP_GONE )
+                    return null;
+                if( !resp.ok() )
+                    throw new IOException( String.format( "HTTP %d for URL \"%s\".", status, url ) );
+                length = resp.getContentLength();
+                time   = parseHTTPTime( resp.getHeader( "Last-Modified" ), url );
+            }
+        } else {
+            URLConnection conn = jarURL.openConnection();
+            try( InputStream in = conn.getInputStream() ) {
+                length = conn.getContentLengthLong() >= 0 ? conn.getContentLengthLong() : null;
+                time   = ZonedDateTime.ofInstant( Instant.ofEpochMilli( conn.getLastModified() ), ZoneOffset.UTC );
+            } catch( FileNotFoundException e ) {
+                return null;
+            }
+        }
+        
+        String md5  = readHash( url + ".md5" );
+        String sha1 = readHash( url + ".sha1" );
+        ForgeDownload fd = new ForgeDownload(
+            SideCompat.UNIVERSAL,
+            url,
+            length,
+            md5  != null && Misc.isValidMD5( md5 )   ? md5  : null,
+            sha1 != null && Misc.isValidSHA1( sha1 ) ? sha1 : null
+        );
+        return new Universal( fd, time );
+    }
+    
+    /**
+     * Parses the value of a Last-Modified header (e.g. "Wed, 21 Oct 2015 07:28:00 GMT"), which we use as a version's release time.
+     */
+    private static ZonedDateTime parseHTTPTime( final String value, final String url ) throws IOException {
+        if( value == null )
+            throw new IOException( "No Last-Modified time for URL \"" + url + "\"." );
+        try {
+            return ZonedDateTime.parse( value, DateTimeFormatter.RFC_1123_DATE_TIME );
+        } catch( DateTimeParseException e ) {
+            throw new IOException( "Malformed Last-Modified time for URL \"" + url + "\": \"" + value + "\".", e );
+        }
+    }
+    
+    /**
+     * Reads a Maven checksum file (e.g. "forge-...-universal.jar.sha1"), which contains the hash, optionally followed by the file's name.
+     * Returns null if the file doesn't exist.
+     */
+    private static String readHash( final String url ) throws IOException {
+        byte[] content;
+        try {
+            content = read( new URL( url ) );
+        } catch( FileNotFoundException e ) {
+            return null;
+        }
+        String text = new String( content, StandardCharsets.US_ASCII ).trim();
+        int space = text.indexOf( ' ' );
+        return ( space >= 0 ? text.substring( 0, space ) : text ).toLowerCase();
+    }
+    
+    /**
+     * Parses maven-metadata.xml.
+     * Returns a map of Minecraft versions to the full Maven versions of Forge for that version of Minecraft, in the order they're listed.
+     */
+    private static Map< String, List< String > > parseMetadata( final byte[] metadata ) throws IOException {
+        Map< String, List< String > > versions = new LinkedHashMap< String, List< String > >();
+        try {
+            XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader( new ByteArrayInputStream( metadata ) );
+            try {
+                while( reader.hasNext() ) {
+                    if( reader.next() != XMLStreamConstants.START_ELEMENT || !reader.getLocalName().equals( "version" ) )
+                        continue;
+                    
+                    //e.g. "1.8.9-11.15.1.1902"
+                    String version = reader.getElementText().trim();
+                    int dash = version.indexOf( '-' );
+                    if( dash < 0 )
+                        continue;
+                    versions.computeIfAbsent( version.substring( 0, dash ), ( k ) -> new ArrayList< String >() ).add( version );
+                }
+            } finally {
+                reader.close();
+            }
+        } catch( XMLStreamException e ) {
+            throw new IOException( "Malformed " + METADATA_FILENAME + ".", e );
+        }
+        return versions;
+    }
+    
+    /**
+     * Parses the promotions JSON, which looks like this:
+     * { "homepage": "...", "promos": { "1.8.9-latest": "11.15.1.1902", "1.8.9-recommended": "11.15.1.1722", ... } }
+     * Returns the "promos" object as a map.
+     */
+    private static Map< String, String > parsePromotions( final byte[] promotions ) throws IOException {
+        Map< String, String > promos = new HashMap< String, String >();
+        try( JsonReader reader = new JsonReader( IO.newBufferedU8ISReader( new ByteArrayInputStream( promotions ) ) ) ) {
+            reader.beginObject();
+            while( reader.hasNext() ) {
+                if( !reader.nextName().equals( "promos" ) ) {
+                    reader.skipValue();
+                    continue;
+                }
+                
+                reader.beginObject();
+                while( reader.hasNext() ) {
+                    String name = reader.nextName();
+                    if( reader.peek() == JsonToken.STRING ) { promos.put( name, reader.nextString() ); }
+                    else                                    { reader.skipValue();                      }
+                }
+                reader.endObject();
+            }
+            reader.endObject();
+        } catch( IllegalStateException e ) {
+            throw new IOException( "Malformed " + PROMOTIONS_FILENAME + ".", e );
+        }
+        return promos;
+    }
+    
+    /**
+     * Returns the name of the given version of Forge as it's listed on the Forge Files website.
+     * Maven versions are prefixed with the version of Minecraft, and some older versions are suffixed with it as well
+     * (e.g. "1.7.10-10.13.4.1614-1.7.10" is "10.13.4.1614").
+     */
+    private static String getForgeVersion( final String mcversion, final String version ) {
+        String name = version.substring( mcversion.length() + 1 );
+        String suffix = "-" + mcversion;
+        if( name.endsWith( suffix ) )
+            name = name.substring( 0, name.length() - suffix.length() );
+        return name;
+    }
+    
+    private static boolean isChanged( final ForgeIndexContentHandler handler, final ForgeIndexPage page ) throws Exception {
+        ForgeIndexPage previous = handler.getPage( page.getURL() );
+        return previous == null || !Objects.equals( previous.getSHA1(), page.getSHA1() );
+    }
+    
+    private static ForgeIndexPage toPage( final URL url, final byte[] content ) {
+        MessageDigest digest = Misc.newSHA1();
+        digest.update( content );
+        return new ForgeIndexPage( url.toString(), null, null, IO.toHex( digest ) );
+    }
+    
+    /**
+     * Reads the file at the given URL.
+     */
+    private static byte[] read( final URL url ) throws IOException {
+        String protocol = url.getProtocol();
+        if( !protocol.equals( "http" ) && !protocol.equals( "https" ) ) {
+            try( InputStream in = url.openStream() ) {
+                return IO.toByteArray( in );
+            }
+        }
+        
+        try( HTTPResponse resp = HTTP.get( url ) ) {
+            if( resp.getStatus() == HttpURLConnection.HTTP_NOT_FOUND )
+                throw new FileNotFoundException( url.toString() );
+            if( !resp.ok() )
+                throw new IOException( String.format( "HTTP %d for URL \"%s\".", resp.getStatus(), url ) );
+            return resp.getResponse();
+        }
+    }
+}
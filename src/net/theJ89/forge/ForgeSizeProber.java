@@ -0,0 +1,115 @@
+package net.theJ89.forge;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.theJ89.http.HTTP;
+import net.theJ89.http.HTTPResponse;
+import net.theJ89.util.Misc;
+
+/**
+ * Makes HEAD requests to find the sizes of downloads, a limited number at a time.
+ * Requests that fail (with an exception, or with a 5xx / 429 response) are retried a few times with exponential backoff.
+ * A download whose size we couldn't determine is left without one, as before; it doesn't fail the whole parse.
+ *
+ * Used by {@link ForgeIndex} while scraping the Forge Files website.
+ */
+class ForgeSizeProber implements AutoCloseable {
+    //Number of HEAD requests made at once by default
+    public static final int   DEFAULT_THREADS = 8;
+    
+    //How many times a HEAD request is attempted before giving up, and how long we wait before the first retry (doubled for each retry after that)
+    private static final int  ATTEMPTS        = 3;
+    private static final long BACKOFF_MILLIS  = 500;
+    
+    private final ExecutorService executor;
+    
+    public ForgeSizeProber() {
+        this( DEFAULT_THREADS );
+    }
+    
+    public ForgeSizeProber( final int threads ) {
+        this.executor = Executors.newFixedThreadPool( threads, Misc.newDaemonThreadFactory( "ForgeIndex-HEAD-" ) );
+    }
+    
+    /**
+     * Gives the handler the chance to skip the given download (see {@link ForgeIndexContentHandler#startDownload(ForgeDownload)}),
+     * and if it doesn't, starts finding the download's size.
+     * Only downloads served over HTTP(S) are probed; other downloads (e.g. local files) are left as they are.
+     * Returns a future that completes with the download once we're done with it.
+     * @param fd
+     * @param handler
+     * @return
+     * @throws Exception
+     */
+    public CompletableFuture< ForgeDownload > start( final ForgeDownload fd, final ForgeIndexContentHandler handler ) throws Exception {
+        //Making several HEAD requests is spammy and can potentially take a long time, so the content handler has an opportunity to skip this step
+        //in the case the file size isn't desired or is already known.
+        if( handler.startDownload( fd ) && fd.getURL().startsWith( "http" ) )
+            return this.probe( fd );
+        return CompletableFuture.completedFuture( fd );
+    }
+    
+    /**
+     * Starts finding the size of the given download.
+     * Returns a future that completes with the download (with its size set, if we could find it).
+     * @param fd
+     * @return
+     */
+    public CompletableFuture< ForgeDownload > probe( final ForgeDownload fd ) {
+        return CompletableFuture.supplyAsync( () -> {
+            long backoff = BACKOFF_MILLIS;
+            for( int attempt = 1; ; ++attempt ) {
+                String problem;
+                try( HTTPResponse resp = HTTP.head( new URL( fd.getURL() ) ) ) {
+                    int status = resp.getStatus();
+                    if( resp.ok() ) {
+                        fd.setSize( resp.getContentLength() );
+                        return fd;
+                    }
+                    
+                    //Client errors (e.g. 404) won't go away if we ask again
+                    problem = String.format( "HTTP %d", status );
+                    if( status < 500 && status != 429 )
+                        attempt = ATTEMPTS;
+                } catch( IOException e ) {
+                    problem = e.toString();
+                }
+                
+                if( attempt >= ATTEMPTS ) {
+                    System.err.println( String.format( "Warning: %s for URL \"%s\".", problem, fd.getURL() ) );
+                    return fd;
+                }
+                try {
+                    Thread.sleep( backoff );
+                } catch( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                    return fd;
+                }
+                backoff *= 2;
+            }
+        }, this.executor );
+    }
+    
+    /**
+     * Waits for each of the given futures (returned by start() or probe()), and returns their downloads in the same order.
+     * @param downloads
+     * @return
+     */
+    public static List< ForgeDownload > join( final List< CompletableFuture< ForgeDownload > > downloads ) {
+        List< ForgeDownload > fds = new ArrayList< ForgeDownload >( downloads.size() );
+        for( CompletableFuture< ForgeDownload > fd : downloads )
+            fds.add( fd.join() );
+        return fds;
+    }
+    
+    @Override
+    public void close() {
+        this.executor.shutdownNow();
+    }
+}
@@ -1,9 +1,21 @@
 package net.theJ89.forge;
 
+import java.io.IOException;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import net.theJ89.json.ISO8601_OffsetDateTime_TypeAdapter;
+import net.theJ89.json.JsonIO;
+
 public class ForgeVersionInfo {
+    private static final ISO8601_OffsetDateTime_TypeAdapter DATE_ADAPTER    = new ISO8601_OffsetDateTime_TypeAdapter();
+    private static final ForgeLibrary.Adapter               LIBRARY_ADAPTER = new ForgeLibrary.Adapter();
+    
     private String               id;
     private OffsetDateTime       time;
     private OffsetDateTime       releaseTime;
@@ -108,4 +120,94 @@ public class ForgeVersionInfo {
         }
         return null;
     }
+    
+    /**
+     * Streaming type adapter for ForgeVersionInfo.
+     */
+    public static class Adapter extends TypeAdapter< ForgeVersionInfo > {
+        @Override
+        public void write( final JsonWriter out, final ForgeVersionInfo value ) throws IOException {
+            if( value == null ) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name( "id" ).value( value.id );
+            if( value.time != null ) {
+                out.name( "time" );
+                DATE_ADAPTER.write( out, value.time );
+            }
+            if( value.releaseTime != null ) {
+                out.name( "releaseTime" );
+                DATE_ADAPTER.write( out, value.releaseTime );
+            }
+            out.name( "type"                   ).value( value.type );
+            out.name( "minecraftArguments"     ).value( value.minecraftArguments );
+            out.name( "mainClass"              ).value( value.mainClass );
+            out.name( "minimumLauncherVersion" ).value( value.minimumLauncherVersion );
+            out.name( "inheritsFrom"           ).value( value.inheritsFrom );
+            out.name( "jar"                    ).value( value.jar );
+            if( value.libraries != null ) {
+                out.name( "libraries" ).beginArray();
+                for( ForgeLibrary library : value.libraries )
+                    LIBRARY_ADAPTER.write( out, library );
+                out.endArray();
+            }
+            out.endObject();
+        }
+        
+        @Override
+        public ForgeVersionInfo read( final JsonReader in ) throws IOException {
+            if( JsonIO.skipNull( in ) )
+                return null;
+            
+            ForgeVersionInfo value = new ForgeVersionInfo();
+            in.beginObject();
+            while( in.hasNext() ) {
+                String name = in.nextName();
+                if( JsonIO.skipNull( in ) )
+                    continue;
+                switch( name ) {
+                case "id":
+                    value.id = in.nextString();
+                    break;
+                case "time":
+                    value.time = DATE_ADAPTER.read( in );
+                    break;
+                case "releaseTime":
+                    value.releaseTime = DATE_ADAPTER.read( in );
+                    break;
+                case "type":
+                    value.type = in.nextString();
+                    break;
+                case "minecraftArguments":
+                    value.minecraftArguments = in.nextString();
+                    break;
+                case "mainClass":
+                    value.mainClass = in.nextString();
+                    break;
+                case "minimumLauncherVersion":
+                    value.minimumLauncherVersion = (float)in.nextDouble();
+                    break;
+                case "inheritsFrom":
+                    value.inheritsFrom = in.nextString();
+                    break;
+                case "jar":
+                    value.jar = in.nextString();
+                    break;
+                case "libraries":
+                    value.libraries = new ArrayList< ForgeLibrary >();
+                    in.beginArray();
+                    while( in.hasNext() )
+                        value.libraries.add( LIBRARY_ADAPTER.read( in ) );
+                    in.endArray();
+                    break;
+                default:
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return value;
+        }
+    }
 }
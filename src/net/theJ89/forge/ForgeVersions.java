@@ -7,17 +7,18 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Random;
 import java.util.Set;
 
-import net.theJ89.database.Nullable;
+import net.theJ89.database.SQLiteConnection;
 import net.theJ89.database.SQLiteDatabase;
+import net.theJ89.database.SQLiteProfile;
 import net.theJ89.http.HTTP;
 import net.theJ89.mmm.MMM;
 import net.theJ89.mmm.Side;
@@ -31,29 +32,32 @@ public class ForgeVersions {
     //Local SQLite database containing information on forge versions
     private static SQLiteDatabase db;
     
-    private static PreparedStatement stmt_getMinecraftVersion;
-    private static PreparedStatement stmt_addMinecraftVersion;
-    private static PreparedStatement stmt_getForgeVersion;
-    private static PreparedStatement stmt_getForgeVersionId;
-    private static PreparedStatement stmt_addForgeVersion;
-    private static PreparedStatement stmt_extForgeDownload;
-    private static PreparedStatement stmt_getForgeDownload;
-    private static PreparedStatement stmt_addForgeDownload;
+    //In-memory copy of the downloads and mirrors in db, replaced after each update
+    private static volatile ForgeVersionsSnapshot snapshot;
     
-    private static PreparedStatement stmt_getLatestVersion;
-    private static PreparedStatement stmt_addLatestVersion;
-    private static PreparedStatement stmt_updLatestVersion;
-    private static PreparedStatement stmt_delLatestVersion;
+    //Queries used with the connections leased from db (see SQLiteConnection.prepare())
+    private static final String SQL_GET_MINECRAFT_VERSIONS  = "SELECT \"id\", \"name\" FROM \"MinecraftVersion\"";
+    private static final String SQL_ADD_MINECRAFT_VERSION   = "INSERT INTO \"MinecraftVersion\" VALUES( ?, ? )";
+    private static final String SQL_GET_FORGE_VERSION_IDS   = "SELECT \"id\", \"name\" FROM \"ForgeVersion\"";
+    private static final String SQL_ADD_FORGE_VERSION       = "INSERT INTO \"ForgeVersion\" VALUES( ?, ?, ?, ? )";
+    private static final String SQL_GET_FORGE_DOWNLOAD_KEYS = "SELECT \"forge_id\", \"type\" FROM \"ForgeDownload\"";
+    private static final String SQL_ADD_FORGE_DOWNLOAD      = "INSERT INTO \"ForgeDownload\" VALUES( ?, ?, ?, ?, ?, ? )";
     
-    private static PreparedStatement stmt_getRecommendedVersion;
-    private static PreparedStatement stmt_addRecommendedVersion;
-    private static PreparedStatement stmt_updRecommendedVersion;
-    private static PreparedStatement stmt_delRecommendedVersion;
+    private static final String SQL_ADD_LATEST_VERSION      = "INSERT INTO \"LatestVersion\" VALUES( ?, ? )";
+    private static final String SQL_UPD_LATEST_VERSION      = "UPDATE \"LatestVersion\" SET \"forge_id\" = ? WHERE \"mc_id\" = ?";
+    private static final String SQL_DEL_LATEST_VERSION      = "DELETE FROM \"LatestVersion\" WHERE \"mc_id\" = ?";
     
-    private static PreparedStatement stmt_getMirrors;
-    private static PreparedStatement stmt_addMirror;
-    private static PreparedStatement stmt_updMirror;
-    private static PreparedStatement stmt_delMirror;
+    private static final String SQL_ADD_RECOMMENDED_VERSION = "INSERT INTO \"RecommendedVersion\" VALUES( ?, ? )";
+    private static final String SQL_UPD_RECOMMENDED_VERSION = "UPDATE \"RecommendedVersion\" SET \"forge_id\" = ? WHERE \"mc_id\" = ?";
+    private static final String SQL_DEL_RECOMMENDED_VERSION = "DELETE FROM \"RecommendedVersion\" WHERE \"mc_id\" = ?";
+    
+    private static final String SQL_GET_MIRRORS             = "SELECT * FROM \"Mirror\"";
+    private static final String SQL_ADD_MIRROR              = "INSERT INTO \"Mirror\" VALUES( ?, ?, ?, ? )";
+    private static final String SQL_UPD_MIRROR              = "UPDATE \"Mirror\" SET \"imageURL\" = ?, \"clickURL\" = ?, \"url\" = ? WHERE \"name\" = ?";
+    private static final String SQL_DEL_MIRROR              = "DELETE FROM \"Mirror\" WHERE \"name\" = ?";
+    
+    private static final String SQL_GET_INDEX_PAGE          = "SELECT \"etag\", \"lastModified\", \"sha1\" FROM \"IndexPage\" WHERE \"url\" = ?";
+    private static final String SQL_SET_INDEX_PAGE          = "INSERT OR REPLACE INTO \"IndexPage\" VALUES( ?, ?, ?, ? )";
     
     private ForgeVersions() {
         throw new Error();
@@ -63,12 +67,12 @@ public class ForgeVersions {
         db = new SQLiteDatabase( MMM.getDirectory().resolve( DATABASE_FILENAME ) );
         
         createDatabaseTables();
-        createPreparedStatements();
+        snapshot = db.read( ForgeVersionsSnapshot::load );
     }
     
     private static void createDatabaseTables() throws SQLException {
-        db.performTransaction( () -> {
-            try( Statement stmt = db.createStatement() ) {
+        db.write( ( conn ) -> {
+            try( Statement stmt = conn.createStatement() ) {
                 //Drop existing tables
                 /*
                 stmt.executeUpdate( "DROP TABLE IF EXISTS \"MinecraftVersion\""    );
@@ -125,6 +129,14 @@ public class ForgeVersions {
                     "    \"url\" TEXT NOT NULL "              +
                     ") WITHOUT ROWID"
                 );
+                stmt.executeUpdate(
+                    "CREATE TABLE IF NOT EXISTS \"IndexPage\"( " +
+                    "    \"url\" TEXT PRIMARY KEY, "             +
+                    "    \"etag\" TEXT, "                        +
+                    "    \"lastModified\" TEXT, "                +
+                    "    \"sha1\" TEXT NOT NULL "                +
+                    ") WITHOUT ROWID"
+                );
                 stmt.executeUpdate(
                     "CREATE VIEW IF NOT EXISTS \"ForgeDownloadVersion\" AS "                                                         +
                     "    SELECT \"fv\".\"name\", \"fd\".\"type\", \"fd\".\"url\", \"fd\".\"size\", \"fd\".\"md5\", \"fd\".\"sha1\" " +
@@ -136,86 +148,66 @@ public class ForgeVersions {
         });
     }
     
-    private static void createPreparedStatements() throws SQLException {
-        stmt_getMinecraftVersion   = db.createPreparedStatement( "SELECT \"id\" FROM \"MinecraftVersion\" WHERE \"name\" = ?" );
-        stmt_addMinecraftVersion   = db.createPreparedStatement( "INSERT INTO \"MinecraftVersion\" VALUES( NULL, ? )" );
-        stmt_getForgeVersion       = db.createPreparedStatement( "SELECT * FROM \"ForgeVersion\" WHERE \"name\" = ?" );
-        stmt_getForgeVersionId     = db.createPreparedStatement( "SELECT \"id\" FROM \"ForgeVersion\" WHERE \"name\" = ?" );
-        stmt_addForgeVersion       = db.createPreparedStatement( "INSERT INTO \"ForgeVersion\" VALUES( NULL, ?, ?, ? )" );
-        stmt_extForgeDownload      = db.createPreparedStatement( "SELECT EXISTS( SELECT \"type\" FROM \"ForgeDownload\" WHERE \"forge_id\" = ? AND \"type\" = ? LIMIT 1 ) AS x" );
-        stmt_getForgeDownload      = db.createPreparedStatement( "SELECT \"type\", \"url\", \"size\", \"md5\", \"sha1\" FROM ForgeDownloadVersion WHERE \"name\" = ? AND \"type\" IN ( ?, " + SideCompat.UNIVERSAL.getID() + " )" );
-        stmt_addForgeDownload      = db.createPreparedStatement( "INSERT INTO \"ForgeDownload\" VALUES( ?, ?, ?, ?, ?, ? )" );
-        
-        stmt_getRecommendedVersion = db.createPreparedStatement( "SELECT \"fv\".* FROM \"ForgeVersion\" AS \"fv\" JOIN \"LatestVersion\" AS \"lv\" ON \"fv\".\"id\" = \"lv\".\"forge_id\" WHERE \"lv\".\"mc_id\" = ?" );
-        stmt_addLatestVersion      = db.createPreparedStatement( "INSERT INTO \"LatestVersion\" VALUES( ?, ? )" );
-        stmt_updLatestVersion      = db.createPreparedStatement( "UPDATE \"LatestVersion\" SET \"forge_id\" = ? WHERE \"mc_id\" = ?" );
-        stmt_delLatestVersion      = db.createPreparedStatement( "DELETE FROM \"LatestVersion\" WHERE \"mc_id\" = ?" );
-        
-        stmt_getRecommendedVersion = db.createPreparedStatement( "SELECT \"fv\".* FROM \"ForgeVersion\" AS \"fv\" JOIN \"RecommendedVersion\" AS \"rv\" ON \"fv\".\"id\" = \"rv\".\"forge_id\" WHERE \"rv\".\"mc_id\" = ?" );
-        stmt_addRecommendedVersion = db.createPreparedStatement( "INSERT INTO \"RecommendedVersion\" VALUES( ?, ? )" );
-        stmt_updRecommendedVersion = db.createPreparedStatement( "UPDATE \"RecommendedVersion\" SET \"forge_id\" = ? WHERE \"mc_id\" = ?" );
-        stmt_delRecommendedVersion = db.createPreparedStatement( "DELETE FROM \"RecommendedVersion\" WHERE \"mc_id\" = ?" );
-        
-        stmt_getMirrors            = db.createPreparedStatement( "SELECT * FROM \"Mirror\"" );
-        stmt_addMirror             = db.createPreparedStatement( "INSERT INTO \"Mirror\" VALUES( ?, ?, ?, ? )" );
-        stmt_updMirror             = db.createPreparedStatement( "UPDATE \"Mirror\" SET \"imageURL\" = ?, \"clickURL\" = ?, \"url\" = ? WHERE \"name\" = ?" );
-        stmt_delMirror             = db.createPreparedStatement( "DELETE FROM \"Mirror\" WHERE \"name\" = ?" );
-    }
-    
     public static void close() {
-        //Close prepared statements
-        IO.closeQuietly( stmt_addMinecraftVersion   );
-        IO.closeQuietly( stmt_getMinecraftVersion   );
-        IO.closeQuietly( stmt_addForgeVersion       );
-        IO.closeQuietly( stmt_getForgeVersion       );
-        IO.closeQuietly( stmt_getForgeVersionId     );
-        IO.closeQuietly( stmt_extForgeDownload      );
-        IO.closeQuietly( stmt_getForgeDownload      );
-        IO.closeQuietly( stmt_addForgeDownload      );
-        
-        IO.closeQuietly( stmt_getLatestVersion      );
-        IO.closeQuietly( stmt_addLatestVersion      );
-        IO.closeQuietly( stmt_updLatestVersion      );
-        IO.closeQuietly( stmt_delLatestVersion      );
-        
-        IO.closeQuietly( stmt_getRecommendedVersion );
-        IO.closeQuietly( stmt_addRecommendedVersion );
-        IO.closeQuietly( stmt_updRecommendedVersion );
-        IO.closeQuietly( stmt_delRecommendedVersion );
-        
-        IO.closeQuietly( stmt_getMirrors );
-        IO.closeQuietly( stmt_addMirror );
-        IO.closeQuietly( stmt_updMirror );
-        IO.closeQuietly( stmt_delMirror );
-        
         IO.closeQuietly( db );
     }
     
     /**
-     * Updates the local Forge Versions database by scraping the Forge Files website.
+     * Updates the local Forge Versions database from Forge's Maven metadata, or the Forge Files website if that can't be read (see {@link #update(int)}).
+     * Metadata and index pages that haven't changed since the last update are skipped.
      * @throws SQLException
      */
     public static void update() throws SQLException {
-        db.performTransaction( () -> {
+        update( ForgeIndex.ALL_VERSIONS );
+    }
+    
+    /**
+     * Updates the local Forge Versions database, only looking at the Forge versions for the given number of most recent versions of Minecraft.
+     * Older versions of Minecraft rarely get new versions of Forge, so this is sufficient for frequent updates.
+     *
+     * Forge's Maven metadata is read first (see {@link ForgeMavenIndexSource}); it's much cheaper to read than the Forge Files website,
+     * and only versions of Forge we don't already have a universal .jar for are looked up in the Maven repository.
+     * If the metadata can't be read, the Forge Files website is scraped instead.
+     * @param recent - Number of versions of Minecraft to look at, or ForgeIndex.ALL_VERSIONS to look at all of them.
+     * @throws SQLException
+     */
+    public static void update( final int recent ) throws SQLException {
+        update( ForgeIndexSource.withFallback(
+            new ForgeMavenIndexSource( ForgeMavenIndexSource.METADATA_URL, ForgeMavenIndexSource.PROMOTIONS_URL, ForgeMavenIndexSource.MAVEN_URL, recent ),
+            new ForgeHTMLIndexSource( ForgeIndex.FORGE_INDEX_URL, ForgeIndex.DEFAULT_THREADS, recent )
+        ) );
+    }
+    
+    /**
+     * Updates the local Forge Versions database from the given source.
+     * @param source
+     * @throws SQLException
+     */
+    public static void update( final ForgeIndexSource source ) throws SQLException {
+        db.write( SQLiteProfile.BULK_REFRESH, ( conn ) -> {
             try                     {
-                ForgeIndex.parse( new ForgeVersionsUpdater() );
+                source.parse( new ForgeVersionsUpdater( conn ) );
                 
-                updateMirrors();
+                updateMirrors( conn );
             }
             catch( SQLException e ) { throw e; }
             catch( Exception e )    { throw new RuntimeException( e ); }
         } );
+        
+        //Now that the update has been committed, swap in a snapshot of the new state
+        snapshot = db.read( ForgeVersionsSnapshot::load );
     }
     
     /**
      * Updates the local database with mirrors
+     * @param conn - The writer connection.
      * @throws IOException
      * @throws SQLException 
      */
-    private static void updateMirrors() throws IOException, SQLException {
+    private static void updateMirrors( final SQLiteConnection conn ) throws IOException, SQLException {
         //Get local map of mirrors from local database.
         Map< String, ForgeMirror > local_mirrors = new HashMap< String, ForgeMirror >();
-        for( ForgeMirror mirror : getMirrors() ) {
+        for( ForgeMirror mirror : getMirrors( conn ) ) {
             local_mirrors.put( mirror.getName(), mirror );
         }
         
@@ -236,6 +228,9 @@ public class ForgeVersions {
         }
         
         //Compare differences between local and remote
+        PreparedStatement stmt_addMirror = conn.prepare( SQL_ADD_MIRROR );
+        PreparedStatement stmt_updMirror = conn.prepare( SQL_UPD_MIRROR );
+        PreparedStatement stmt_delMirror = conn.prepare( SQL_DEL_MIRROR );
         Set< String > all_mirrors = new HashSet< String >( local_mirrors.keySet() );
         all_mirrors.addAll( remote_mirrors.keySet() );
         for( String name : all_mirrors ) {
@@ -268,13 +263,17 @@ public class ForgeVersions {
     }
     
     /**
-     * Returns a list of Forge mirrors loaded from the local database
+     * Returns an unmodifiable list of Forge mirrors.
      * @return
      * @throws SQLException
      */
     public static List< ForgeMirror > getMirrors() throws SQLException {
+        return snapshot.getMirrors();
+    }
+    
+    private static List< ForgeMirror > getMirrors( final SQLiteConnection conn ) throws SQLException {
         List< ForgeMirror > list = new ArrayList< ForgeMirror >();
-        try( ResultSet rs = stmt_getMirrors.executeQuery() ) {
+        try( ResultSet rs = conn.prepare( SQL_GET_MIRRORS ).executeQuery() ) {
             while( rs.next() )
                 list.add( new ForgeMirror(
                     rs.getString( 1 ),
@@ -292,101 +291,216 @@ public class ForgeVersions {
      * @throws SQLException
      */
     public static ForgeMirror getRandomMirror() throws SQLException {
-        List< ForgeMirror > mirrors = ForgeVersions.getMirrors();
-        int count = mirrors.size();
-        return count > 0 ? mirrors.get( new Random().nextInt( count ) ) : null;
+        return snapshot.getRandomMirror();
     }
     
+    /**
+     * Returns the download of the given Forge version for the given side (or its universal download), or null if there isn't one.
+     * @param version
+     * @param side
+     * @return
+     * @throws SQLException
+     */
     public static ForgeDownload getDownload( String version, Side side ) throws SQLException {
-        stmt_getForgeDownload.setString( 1, version );
-        stmt_getForgeDownload.setInt( 2, side.getID() );
-        try( ResultSet rs = stmt_getForgeDownload.executeQuery() ) {
-            if( !rs.next() )
-                return null;
-            
-            return new ForgeDownload(
-                SideCompat.fromID( rs.getInt( 1 ) ),
-                rs.getString( 2 ),
-                Nullable.getLong( rs, 3 ),
-                Nullable.getString( rs, 4 ),
-                Nullable.getString( rs, 5 )
-            );
-        }
+        return snapshot.getDownload( version, side );
     }
     
+    /**
+     * Updates the local database as the Forge index is parsed.
+     *
+     * To keep the number of round trips to the database down, the IDs of every Minecraft and Forge version and the keys of every download
+     * are loaded into memory when the first version of Minecraft is parsed, and all lookups after that are done in memory.
+     * New rows are given their IDs up front (rather than having the database generate them), so they can be inserted in batches.
+     *
+     * The updater must only be used while the writer connection it was given is leased (see {@link SQLiteDatabase#write(SQLiteDatabase.Update)}).
+     */
     public static class ForgeVersionsUpdater implements ForgeIndexContentHandler {
-        private Long    minecraft_id  = null;
-        private Long    forge_id      = null;
-        private boolean skip_download = false;
+        //Maximum number of rows inserted in a single batch
+        private static final int BATCH_SIZE = 500;
+        
+        private Long                        minecraft_id = null;
+        private Long                        forge_id     = null;
+        
+        //Maps downloads we need to add to the ID of the Forge version they belong to.
+        //Downloads are delivered after the rest of the index has been parsed, so we can't rely on forge_id by the time they arrive.
+        private Map< ForgeDownload, Long >  new_downloads = new HashMap< ForgeDownload, Long >();
+        
+        //What's already in the database (see load())
+        private Map< String, Long >         minecraft_ids;
+        private Map< String, Long >         forge_ids;
+        private Set< Long >                 download_keys;
+        private long                        next_minecraft_id;
+        private long                        next_forge_id;
+        
+        //Number of Forge versions waiting to be inserted by stmt_addForgeVersion
+        private int                         pending_forge_versions = 0;
         
-        public ForgeVersionsUpdater() {}
+        private final SQLiteConnection      conn;
+        private final PreparedStatement     stmt_addMinecraftVersion;
+        private final PreparedStatement     stmt_addForgeVersion;
+        private final PreparedStatement     stmt_addForgeDownload;
+        
+        /**
+         * ForgeVersionsUpdater constructor.
+         * @param conn - The writer connection to update the database with.
+         * @throws SQLException
+         */
+        public ForgeVersionsUpdater( final SQLiteConnection conn ) throws SQLException {
+            this.conn                     = conn;
+            this.stmt_addMinecraftVersion = conn.prepare( SQL_ADD_MINECRAFT_VERSION );
+            this.stmt_addForgeVersion     = conn.prepare( SQL_ADD_FORGE_VERSION );
+            this.stmt_addForgeDownload    = conn.prepare( SQL_ADD_FORGE_DOWNLOAD );
+        }
         
         @Override
         public void startMinecraft( final MinecraftVersion mv ) throws Exception {
             String name = mv.getName();
             System.out.println( String.format( "Parsing Forge versions for Minecraft %s...", name ) );
+            this.load();
             
             //Find or insert this Minecraft version and get its ID
-            stmt_getMinecraftVersion.setString( 1, name );
-            try( ResultSet rs = stmt_getMinecraftVersion.executeQuery() ) {
-                if( rs.next() ) {
-                    minecraft_id = rs.getLong( 1 );
-                } else {
-                    stmt_addMinecraftVersion.setString( 1, name );
-                    stmt_addMinecraftVersion.executeUpdate();
-                    try( ResultSet rs2 = stmt_addMinecraftVersion.getGeneratedKeys(); ) {
-                        if( !rs2.next() )
-                            throw new RuntimeException( "Couldn't retrieve auto-generated ID for inserted Minecraft version." );
-                        minecraft_id = rs2.getLong( 1 );
-                    }
-                }
+            minecraft_id = this.minecraft_ids.get( name );
+            if( minecraft_id == null ) {
+                minecraft_id = this.next_minecraft_id++;
+                stmt_addMinecraftVersion.setLong( 1, minecraft_id );
+                stmt_addMinecraftVersion.setString( 2, name );
+                stmt_addMinecraftVersion.executeUpdate();
+                this.minecraft_ids.put( name, minecraft_id );
             }
         }
         
         @Override
         public void endMinecraft( final MinecraftVersion mv ) throws Exception {
+            this.flushForgeVersions();
+            
             //Update latest and recommended versions
-            setPromotedVersion( mv.getLatest(), stmt_addLatestVersion, stmt_updLatestVersion, stmt_delLatestVersion );
-            setPromotedVersion( mv.getRecommended(), stmt_addRecommendedVersion, stmt_updRecommendedVersion, stmt_delRecommendedVersion );
+            setPromotedVersion( mv.getLatest(), SQL_ADD_LATEST_VERSION, SQL_UPD_LATEST_VERSION, SQL_DEL_LATEST_VERSION );
+            setPromotedVersion( mv.getRecommended(), SQL_ADD_RECOMMENDED_VERSION, SQL_UPD_RECOMMENDED_VERSION, SQL_DEL_RECOMMENDED_VERSION );
         }
         
         @Override
         public void forge( final ForgeVersion fv ) throws Exception {
             String name = fv.getName();
-            stmt_getForgeVersionId.setString( 1, name );
-            try( ResultSet rs = stmt_getForgeVersionId.executeQuery() ) {
-                if( rs.next() ) {
-                    forge_id = rs.getLong( 1 );
-                } else {
-                    stmt_addForgeVersion.setLong( 1, minecraft_id );
-                    stmt_addForgeVersion.setString( 2, name );
-                    stmt_addForgeVersion.setLong( 3, fv.getTime().toEpochSecond() );
-                    stmt_addForgeVersion.executeUpdate();
-                    try( ResultSet rs2 = stmt_addForgeVersion.getGeneratedKeys() ) {
-                        if( !rs2.next() )
-                            throw new RuntimeException( "Couldn't retrieve auto-generated ID for inserted Forge version." );
-                        forge_id = rs2.getLong( 1 );
-                    }
-                }
-            }
+            forge_id = this.forge_ids.get( name );
+            if( forge_id != null )
+                return;
+            
+            forge_id = this.next_forge_id++;
+            stmt_addForgeVersion.setLong( 1, forge_id );
+            stmt_addForgeVersion.setLong( 2, minecraft_id );
+            stmt_addForgeVersion.setString( 3, name );
+            ZonedDateTime time = fv.getTime();
+            if( time == null )
+                throw new RuntimeException( "Forge version \"" + name + "\" has no release time." );
+            stmt_addForgeVersion.setLong( 4, time.toEpochSecond() );
+            stmt_addForgeVersion.addBatch();
+            this.forge_ids.put( name, forge_id );
+            
+            if( ++this.pending_forge_versions >= BATCH_SIZE )
+                this.flushForgeVersions();
         }
         
         @Override
         public boolean startDownload( final ForgeDownload fd ) throws Exception {
-            stmt_extForgeDownload.setLong( 1, forge_id );
-            stmt_extForgeDownload.setInt( 2, fd.getType().getID() );
-            try( ResultSet rs = stmt_extForgeDownload.executeQuery() ) {
-                if( !rs.next() )
-                    throw new RuntimeException( "Could not determine if download exists or not." );
-                this.skip_download = rs.getBoolean( 1 );
-                return !this.skip_download;
-            }
+            if( this.download_keys.contains( getDownloadKey( forge_id, fd.getType() ) ) )
+                return false;
+            this.new_downloads.put( fd, forge_id );
+            return true;
+        }
+        
+        @Override
+        public boolean hasDownload( final String name, final SideCompat type ) throws Exception {
+            this.load();
+            Long id = this.forge_ids.get( name );
+            return id != null && this.download_keys.contains( getDownloadKey( id, type ) );
         }
         
         @Override
         public void endDownload( final ForgeDownload fd ) throws Exception {
-            if( this.skip_download )
+            if( this.addDownload( fd ) )
+                stmt_addForgeDownload.executeUpdate();
+        }
+        
+        @Override
+        public void endDownloads( final List< ForgeDownload > fds ) throws Exception {
+            //Insert the downloads in batches.
+            //The Forge versions they belong to have to be inserted first.
+            this.flushForgeVersions();
+            int count = 0;
+            for( ForgeDownload fd : fds ) {
+                if( !this.addDownload( fd ) )
+                    continue;
+                stmt_addForgeDownload.addBatch();
+                if( ++count >= BATCH_SIZE ) {
+                    stmt_addForgeDownload.executeBatch();
+                    count = 0;
+                }
+            }
+            if( count > 0 )
+                stmt_addForgeDownload.executeBatch();
+        }
+        
+        /**
+         * Loads the IDs of the Minecraft and Forge versions and the keys of the downloads that are already in the database, if we haven't already.
+         */
+        private void load() throws SQLException {
+            if( this.minecraft_ids != null )
+                return;
+            
+            this.minecraft_ids     = new HashMap< String, Long >();
+            this.next_minecraft_id = loadIds( this.conn.prepare( SQL_GET_MINECRAFT_VERSIONS ), this.minecraft_ids );
+            this.forge_ids         = new HashMap< String, Long >();
+            this.next_forge_id     = loadIds( this.conn.prepare( SQL_GET_FORGE_VERSION_IDS ), this.forge_ids );
+            
+            this.download_keys = new HashSet< Long >();
+            try( ResultSet rs = this.conn.prepare( SQL_GET_FORGE_DOWNLOAD_KEYS ).executeQuery() ) {
+                while( rs.next() )
+                    this.download_keys.add( getDownloadKey( rs.getLong( 1 ), SideCompat.fromID( rs.getInt( 2 ) ) ) );
+            }
+        }
+        
+        /**
+         * Runs the given query, which returns ( id, name ) pairs, and adds them to the given map.
+         * Returns the ID the next row should be given.
+         */
+        private static long loadIds( final PreparedStatement stmt, final Map< String, Long > ids ) throws SQLException {
+            long max = 0;
+            try( ResultSet rs = stmt.executeQuery() ) {
+                while( rs.next() ) {
+                    long id = rs.getLong( 1 );
+                    ids.put( rs.getString( 2 ), id );
+                    max = Math.max( max, id );
+                }
+            }
+            return max + 1;
+        }
+        
+        /**
+         * Downloads are identified by the ID of their Forge version and their type.
+         */
+        private static long getDownloadKey( final long forge_id, final SideCompat type ) {
+            return ( forge_id << 2 ) | type.getID();
+        }
+        
+        /**
+         * Inserts any Forge versions waiting to be inserted.
+         */
+        private void flushForgeVersions() throws SQLException {
+            if( this.pending_forge_versions == 0 )
                 return;
+            stmt_addForgeVersion.executeBatch();
+            this.pending_forge_versions = 0;
+        }
+        
+        /**
+         * Sets the parameters of stmt_addForgeDownload for the given download.
+         * Returns false if the download doesn't need to be added.
+         */
+        private boolean addDownload( final ForgeDownload fd ) throws SQLException {
+            Long forge_id = this.new_downloads.remove( fd );
+            if( forge_id == null )
+                return false;
+            this.download_keys.add( getDownloadKey( forge_id, fd.getType() ) );
             
             stmt_addForgeDownload.setLong( 1, forge_id );
             stmt_addForgeDownload.setInt( 2, fd.getType().getID() );
@@ -403,38 +517,36 @@ public class ForgeVersions {
             String sha1 = fd.getSHA1();
             if( sha1 == null ) { stmt_addForgeDownload.setNull( 6, Types.VARCHAR ); }
             else               { stmt_addForgeDownload.setString( 6, sha1 );        }
-            
-            stmt_addForgeDownload.executeUpdate();
+            return true;
         }
         
         /**
          * Add, update, or remove a promoted (latest / recommended) version
          * @param versionName - The name of the forge version, or null to remove
-         * @param add - PreparedStatement that adds a row to the desired table
-         * @param upd - PreparedStatement that updates a row in the desired table
-         * @param del - PreparedStatement that removes a row from the desired table
+         * @param addQuery - Query that adds a row to the desired table
+         * @param updQuery - Query that updates a row in the desired table
+         * @param delQuery - Query that removes a row from the desired table
          * 
          * @throws SQLException
          */
-        private void setPromotedVersion( final String versionName, final PreparedStatement add, final PreparedStatement upd, final PreparedStatement del ) throws SQLException {
+        private void setPromotedVersion( final String versionName, final String addQuery, final String updQuery, final String delQuery ) throws SQLException {
             if( versionName == null ) {
+                PreparedStatement del = this.conn.prepare( delQuery );
                 del.setLong( 1, minecraft_id );
                 del.executeUpdate();
             } else {
                 //Find the forge version ID from its name
-                long id;
-                stmt_getForgeVersionId.setString( 1, versionName );
-                try( ResultSet rs = stmt_getForgeVersionId.executeQuery() ) {
-                    if( !rs.next() )
-                        throw new RuntimeException( "No forge version with given name." );
-                    id = rs.getLong( 1 );
-                }
+                Long id = this.forge_ids.get( versionName );
+                if( id == null )
+                    throw new RuntimeException( "No forge version with given name." );
                 
                 //Update or insert the promoted forge version for the current version of Minecraft
+                PreparedStatement upd = this.conn.prepare( updQuery );
                 upd.setLong( 1, id );
                 upd.setLong( 2, minecraft_id );
                 int count = upd.executeUpdate();
                 if( count == 0 ) {
+                    PreparedStatement add = this.conn.prepare( addQuery );
                     add.setLong( 1, minecraft_id );
                     add.setLong( 2, id );
                     count = add.executeUpdate();
@@ -443,5 +555,26 @@ public class ForgeVersions {
                 }
             }
         }
+        
+        @Override
+        public ForgeIndexPage getPage( final String url ) throws Exception {
+            PreparedStatement stmt_getIndexPage = this.conn.prepare( SQL_GET_INDEX_PAGE );
+            stmt_getIndexPage.setString( 1, url );
+            try( ResultSet rs = stmt_getIndexPage.executeQuery() ) {
+                if( !rs.next() )
+                    return null;
+                return new ForgeIndexPage( url, rs.getString( 1 ), rs.getString( 2 ), rs.getString( 3 ) );
+            }
+        }
+        
+        @Override
+        public void updatePage( final ForgeIndexPage page ) throws Exception {
+            PreparedStatement stmt_setIndexPage = this.conn.prepare( SQL_SET_INDEX_PAGE );
+            stmt_setIndexPage.setString( 1, page.getURL()          );
+            stmt_setIndexPage.setString( 2, page.getETag()         );
+            stmt_setIndexPage.setString( 3, page.getLastModified() );
+            stmt_setIndexPage.setString( 4, page.getSHA1()         );
+            stmt_setIndexPage.executeUpdate();
+        }
     }
 }
@@ -0,0 +1,110 @@
+package net.theJ89.forge;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import net.theJ89.database.Nullable;
+import net.theJ89.database.SQLiteConnection;
+import net.theJ89.mmm.Side;
+import net.theJ89.mmm.SideCompat;
+
+/**
+ * An immutable copy of the downloads and mirrors in the local Forge Versions database.
+ * ForgeVersions loads one of these when it's initialized and replaces it after each update, so lookups are just map lookups,
+ * and any number of threads can read from it without locking.
+ * The downloads and mirrors it hands out are shared, and shouldn't be modified.
+ */
+class ForgeVersionsSnapshot {
+    private static final String SQL_GET_FORGE_DOWNLOADS = "SELECT \"name\", \"type\", \"url\", \"size\", \"md5\", \"sha1\" FROM \"ForgeDownloadVersion\"";
+    private static final String SQL_GET_MIRRORS         = "SELECT * FROM \"Mirror\"";
+    
+    //Maps the name of each Forge version to its downloads, indexed by SideCompat ID
+    private final Map< String, ForgeDownload[] > downloads;
+    private final List< ForgeMirror >            mirrors;
+    
+    private ForgeVersionsSnapshot( final Map< String, ForgeDownload[] > downloads, final List< ForgeMirror > mirrors ) {
+        this.downloads = downloads;
+        this.mirrors   = Collections.unmodifiableList( mirrors );
+    }
+    
+    /**
+     * Loads a snapshot of the database using the given connection.
+     * @param conn
+     * @return
+     * @throws SQLException
+     */
+    public static ForgeVersionsSnapshot load( final SQLiteConnection conn ) throws SQLException {
+        Map< String, ForgeDownload[] > downloads = new HashMap< String, ForgeDownload[] >();
+        try( ResultSet rs = conn.prepare( SQL_GET_FORGE_DOWNLOADS ).executeQuery() ) {
+            while( rs.next() ) {
+                String          name = rs.getString( 1 );
+                ForgeDownload[] fds  = downloads.get( name );
+                if( fds == null ) {
+                    fds = new ForgeDownload[ SideCompat.values().length ];
+                    downloads.put( name, fds );
+                }
+                
+                SideCompat type = SideCompat.fromID( rs.getInt( 2 ) );
+                fds[ type.getID() ] = new ForgeDownload(
+                    type,
+                    rs.getString( 3 ),
+                    Nullable.getLong( rs, 4 ),
+                    Nullable.getString( rs, 5 ),
+                    Nullable.getString( rs, 6 )
+                );
+            }
+        }
+        
+        List< ForgeMirror > mirrors = new ArrayList< ForgeMirror >();
+        try( ResultSet rs = conn.prepare( SQL_GET_MIRRORS ).executeQuery() ) {
+            while( rs.next() )
+                mirrors.add( new ForgeMirror(
+                    rs.getString( 1 ),
+                    rs.getString( 2 ),
+                    rs.getString( 3 ),
+                    rs.getString( 4 )
+                ) );
+        }
+        
+        return new ForgeVersionsSnapshot( downloads, mirrors );
+    }
+    
+    /**
+     * Returns the download of the given Forge version for the given side, or its universal download if it doesn't have one specifically for that side.
+     * Returns null if it has neither.
+     * @param version
+     * @param side
+     * @return
+     */
+    public ForgeDownload getDownload( final String version, final Side side ) {
+        ForgeDownload[] fds = this.downloads.get( version );
+        if( fds == null )
+            return null;
+        
+        ForgeDownload fd = fds[ side.getID() ];
+        return fd != null ? fd : fds[ SideCompat.UNIVERSAL.getID() ];
+    }
+    
+    /**
+     * Returns an unmodifiable list of the Forge mirrors.
+     * @return
+     */
+    public List< ForgeMirror > getMirrors() {
+        return this.mirrors;
+    }
+    
+    /**
+     * Returns a random Forge mirror, or null if there aren't any.
+     * @return
+     */
+    public ForgeMirror getRandomMirror() {
+        int count = this.mirrors.size();
+        return count > 0 ? this.mirrors.get( ThreadLocalRandom.current().nextInt( count ) ) : null;
+    }
+}
@@ -0,0 +1,91 @@
+package net.theJ89.http;
+
+/**
+ * ConnectionPool controls how HTTP connections are kept alive and reused between requests.
+ *
+ * Every HTTPRequest is backed by an HttpURLConnection. When a response has been fully read and closed,
+ * the JVM returns the underlying socket (and its TLS session) to a per-host keep-alive cache,
+ * and the next request to that host picks it back up rather than opening a new connection.
+ * This class configures that cache:
+ * <ul>
+ * <li>Keep-alive can be turned on or off.</li>
+ * <li>The number of idle connections kept per host (route) can be capped.</li>
+ * </ul>
+ * Idle connections are evicted by the JVM after 5 seconds (or the server's Keep-Alive timeout, if it sends one); Java 8 has no setting for this.
+ *
+ * The JVM reads these settings once, when the first HTTP connection is made (by us or by a library such as Jsoup).
+ * Any changes must therefore be made before the first request; changes made afterwards are ignored.
+ * MMM.init() applies the defaults below before anything else runs, leaving alone any that have already been set.
+ *
+ * Note: MMMLib has to run on Java 8, so java.net.http.HttpClient (and HTTP/2 along with it) isn't available to us.
+ */
+public final class ConnectionPool {
+    //Should match or exceed the number of downloads we run against a single host at once (see Downloader).
+    //Otherwise connections beyond this count are closed after every request instead of being reused.
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 8;
+    
+    //When a response is closed before it has been fully read, at most this many bytes are read and discarded
+    //so that its connection can be returned to the pool. Larger leftovers are cheaper to abandon.
+    public static final int DEFAULT_MAX_DRAIN                = 65536;
+    
+    private static final String PROP_KEEP_ALIVE      = "http.keepAlive";
+    private static final String PROP_MAX_CONNECTIONS = "http.maxConnections";
+    
+    private static volatile int maxDrain = DEFAULT_MAX_DRAIN;
+    
+    private ConnectionPool() { throw new Error(); }
+    
+    /**
+     * Applies the default pool settings, leaving alone any settings that have already been made
+     * (either through this class, or on the command line with -D).
+     * Must be called before the first HTTP connection is made.
+     */
+    public static void configureDefaults() {
+        setDefault( PROP_KEEP_ALIVE,      "true" );
+        setDefault( PROP_MAX_CONNECTIONS, Integer.toString( DEFAULT_MAX_CONNECTIONS_PER_HOST ) );
+    }
+    
+    /**
+     * Sets whether or not connections are kept alive and reused between requests.
+     * @param keepAlive
+     */
+    public static void setKeepAlive( final boolean keepAlive ) {
+        System.setProperty( PROP_KEEP_ALIVE, Boolean.toString( keepAlive ) );
+    }
+    
+    public static boolean isKeepAlive() {
+        return Boolean.parseBoolean( System.getProperty( PROP_KEEP_ALIVE, "true" ) );
+    }
+    
+    /**
+     * Sets the maximum number of idle connections kept per host.
+     * @param maxConnections
+     */
+    public static void setMaxConnectionsPerHost( final int maxConnections ) {
+        if( maxConnections < 1 )
+            throw new IllegalArgumentException( "maxConnections must be at least 1." );
+        System.setProperty( PROP_MAX_CONNECTIONS, Integer.toString( maxConnections ) );
+    }
+    
+    public static int getMaxConnectionsPerHost() {
+        return Integer.getInteger( PROP_MAX_CONNECTIONS, DEFAULT_MAX_CONNECTIONS_PER_HOST );
+    }
+    
+    /**
+     * Sets the maximum number of unread bytes HTTPResponse.close() will read and discard to return a connection to the pool.
+     * Unlike the other settings, this can be changed at any time.
+     * @param bytes
+     */
+    public static void setMaxDrain( final int bytes ) {
+        maxDrain = bytes;
+    }
+    
+    public static int getMaxDrain() {
+        return maxDrain;
+    }
+    
+    private static void setDefault( final String property, final String value ) {
+        if( System.getProperty( property ) == null )
+            System.setProperty( property, value );
+    }
+}
@@ -0,0 +1,288 @@
+package net.theJ89.http;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import net.theJ89.util.IO;
+import net.theJ89.util.Misc;
+
+/**
+ * A single file to download, along with where to save it and the hashes we expect it to have.
+ * Downloads can be run directly with {@link #run()}, or handed off to a {@link Downloader} to be run alongside many others.
+ *
+ * While a file is downloading, it is written to a ".part" file next to its final path.
+ * Its hashes are computed as the data arrives, and once all of it has, they're checked and the ".part" file is renamed into place.
+ *
+ * Large downloads are resumable. Along with the ".part" file, they write a small ".part.json" journal recording where the data came from.
+ * If the download is interrupted, the next attempt picks up where the last one left off with an HTTP Range request,
+ * and the complete file is rehashed once it has arrived. Small downloads (e.g. asset objects) aren't worth resuming;
+ * they skip the journal, and an interrupted one starts over.
+ */
+public class Download {
+    private static final String  PART_SUFFIX    = ".part";
+    private static final String  JOURNAL_SUFFIX = ".part.json";
+    
+    //Downloads smaller than this (or of unknown size) aren't journaled, and can't be resumed
+    private static final long    RESUMABLE_SIZE = 1024 * 1024;
+    
+    //Matches the start of a Content-Range header, e.g. "bytes 1024-2047/2048"
+    private static final Pattern RE_CONTENT_RANGE = Pattern.compile( "^bytes (\\d+)-" );
+    
+    private static final Gson gson = new Gson();
+    
+    //What fetch() did
+    private static enum Fetch {
+        FRESH,   //Downloaded the entire file
+        RESUMED, //Appended the rest of the file to what we already had
+        REFUSED  //The server refused our Range request (HTTP 416); the .part file has been discarded
+    }
+    
+    /**
+     * Records which file a ".part" file is a piece of, and which version of that file it is.
+     * If any of this changes between attempts, the partial data can't be trusted and the download starts over.
+     */
+    private static class Journal {
+        private String url;
+        private String md5;
+        private String sha1;
+        private String etag;
+        private String lastModified;
+        
+        public boolean matches( final Download download ) {
+            return Objects.equals( this.url,  download.url.toString() ) &&
+                   Objects.equals( this.md5,  download.md5            ) &&
+                   Objects.equals( this.sha1, download.sha1           );
+        }
+    }
+    
+    private URL    url;
+    private Path   path;
+    private String md5;
+    private String sha1;
+    
+    /**
+     * Download constructor.
+     * @param url - URL to download the file from.
+     * @param path - Path to save the file to.
+     * @param sha1 - Expected SHA-1 hash of the file, or null if the hash is unknown.
+     */
+    public Download( final URL url, final Path path, final String sha1 ) {
+        this( url, path, null, sha1 );
+    }
+    
+    /**
+     * Download constructor.
+     * @param url - URL to download the file from.
+     * @param path - Path to save the file to.
+     * @param md5 - Expected MD5 hash of the file, or null if the hash is unknown.
+     * @param sha1 - Expected SHA-1 hash of the file, or null if the hash is unknown.
+     */
+    public Download( final URL url, final Path path, final String md5, final String sha1 ) {
+        this.url  = url;
+        this.path = path;
+        this.md5  = md5;
+        this.sha1 = sha1;
+    }
+    
+    public URL getURL() {
+        return this.url;
+    }
+    
+    public Path getPath() {
+        return this.path;
+    }
+    
+    public String getMD5() {
+        return this.md5;
+    }
+    
+    public String getSha1() {
+        return this.sha1;
+    }
+    
+    /**
+     * Downloads the file to its path, resuming an earlier attempt if one was interrupted.
+     * The file's hashes (if known) are checked before it is moved to its path.
+     * Does nothing if a file already exists at the path.
+     *
+     * If the connection fails midway, the partial file and its journal (if any) are kept so the download can be resumed later.
+     * If the completed file fails its hash check, both are deleted so the next attempt starts from scratch.
+     * @throws IOException
+     */
+    public void run() throws IOException {
+        Path path = this.path;
+        if( Files.exists( path ) )
+            return;
+        
+        Files.createDirectories( path.getParent() );
+        Path partPath    = path.resolveSibling( path.getFileName() + PART_SUFFIX    );
+        Path journalPath = path.resolveSibling( path.getFileName() + JOURNAL_SUFFIX );
+        
+        MessageDigest md5   = this.md5  != null ? Misc.newMD5()  : null;
+        MessageDigest sha1  = this.sha1 != null ? Misc.newSHA1() : null;
+        
+        //If the server refuses our Range request outright, we make one more attempt from the beginning.
+        //If it refuses that as well, there's nothing left to verify; give up.
+        Fetch         fetch = this.fetch( partPath, journalPath, md5, sha1 );
+        if( fetch == Fetch.REFUSED ) {
+            fetch = this.fetch( partPath, journalPath, md5, sha1 );
+            if( fetch == Fetch.REFUSED )
+                throw new IOException( "Server refused to send \"" + this.url + "\" (HTTP 416)." );
+        }
+        
+        //We have the entire file; check its hashes before we put it in place.
+        //A fresh download was hashed as it arrived. A resumed one only hashed the part we just received, so the whole file is rehashed.
+        try {
+            if( fetch == Fetch.RESUMED ) { IO.verify( partPath, this.md5, this.sha1 ); }
+            else                         { IO.verify( md5, this.md5, sha1, this.sha1 ); }
+        } catch( Throwable t ) {
+            Files.deleteIfExists( partPath );
+            Files.deleteIfExists( journalPath );
+            throw t;
+        }
+        
+        move( partPath, path );
+        Files.deleteIfExists( journalPath );
+    }
+    
+    @Override
+    public String toString() {
+        return this.url.toString();
+    }
+    
+    /**
+     * Downloads whatever we're missing of the file to the given .part file, updating the given digests (either may be null) with the data we receive.
+     */
+    private Fetch fetch( final Path partPath, final Path journalPath, final MessageDigest md5, final MessageDigest sha1 ) throws IOException {
+        URL url = this.url;
+        
+        //Figure out how much of the file we already have (if any)
+        Journal journal = readJournal( journalPath );
+        long offset = 0;
+        if( journal != null && journal.matches( this ) && Files.exists( partPath ) ) {
+            offset = Files.size( partPath );
+        } else {
+            journal = null;
+            Files.deleteIfExists( partPath );
+        }
+        
+        HTTPRequest req = new HTTPRequest( url );
+        if( offset > 0 ) {
+            req.setHeader( "Range", "bytes=" + offset + "-" );
+            
+            //If-Range makes the server send us the entire file if it has changed since our last attempt.
+            String validator = journal.etag != null ? journal.etag : journal.lastModified;
+            if( validator != null )
+                req.setHeader( "If-Range", validator );
+        }
+        
+        try( HTTPResponse res = req.get() ) {
+            if( res.getStatus() == 416 ) {
+                Files.deleteIfExists( partPath );
+                Files.deleteIfExists( journalPath );
+                return Fetch.REFUSED;
+            }
+            
+            //Resume where we left off if the server honored our Range request. Otherwise start from the beginning.
+            boolean resume = offset > 0 && res.partial() && getRangeStart( res ) == offset;
+            if( !resume && !res.ok() )
+                throw new RuntimeException( "Error downloading \"" + url + "\"." );
+            
+            if( resume ) {
+                System.out.println( "Resuming download of " + url + " to " + this.path + " at byte " + offset + ":" );
+            } else {
+                System.out.println( "Downloading " + url + " to " + this.path + ":" );
+                
+                //Only large downloads are worth resuming. Without a journal, the next attempt discards whatever we got this time.
+                Long length = res.getContentLength();
+                if( length != null && length >= RESUMABLE_SIZE ) {
+                    journal = new Journal();
+                    journal.url          = url.toString();
+                    journal.md5          = this.md5;
+                    journal.sha1         = this.sha1;
+                    journal.etag         = res.getHeader( "ETag" );
+                    journal.lastModified = res.getHeader( "Last-Modified" );
+                    writeJournal( journalPath, journal );
+                } else {
+                    Files.deleteIfExists( journalPath );
+                }
+            }
+            
+            List< MessageDigest > digests = new ArrayList< MessageDigest >( 2 );
+            if( md5 != null ) {
+                md5.reset();
+                digests.add( md5 );
+            }
+            if( sha1 != null ) {
+                sha1.reset();
+                digests.add( sha1 );
+            }
+            try(
+                OutputStream out = new BufferedOutputStream( resume ? Files.newOutputStream( partPath, StandardOpenOption.APPEND )
+                                                                    : Files.newOutputStream( partPath ) )
+            ) {
+                IO.copy( res.getInputStream(), out, digests.toArray( new MessageDigest[ digests.size() ] ) );
+            }
+            return resume ? Fetch.RESUMED : Fetch.FRESH;
+        }
+    }
+    
+    /**
+     * Returns the first byte position of the given partial response, or -1 if it can't be determined.
+     */
+    private static long getRangeStart( final HTTPResponse res ) {
+        String contentRange = res.getHeader( "Content-Range" );
+        if( contentRange == null )
+            return -1;
+        Matcher m = RE_CONTENT_RANGE.matcher( contentRange );
+        if( !m.find() )
+            return -1;
+        return Long.parseLong( m.group( 1 ) );
+    }
+    
+    private static Journal readJournal( final Path journalPath ) throws IOException {
+        if( !Files.exists( journalPath ) )
+            return null;
+        try( Reader reader = IO.newBufferedU8FileReader( journalPath ) ) {
+            return gson.fromJson( reader, Journal.class );
+        //A damaged journal is treated the same as a missing one
+        } catch( JsonParseException e ) {
+            return null;
+        }
+    }
+    
+    private static void writeJournal( final Path journalPath, final Journal journal ) throws IOException {
+        try( Writer writer = IO.newBufferedU8FileWriter( journalPath ) ) {
+            gson.toJson( journal, writer );
+        }
+    }
+    
+    /**
+     * Moves the file at from to to, atomically if the file system supports it.
+     */
+    private static void move( final Path from, final Path to ) throws IOException {
+        try {
+            Files.move( from, to, StandardCopyOption.ATOMIC_MOVE );
+        } catch( AtomicMoveNotSupportedException e ) {
+            Files.move( from, to, StandardCopyOption.REPLACE_EXISTING );
+        }
+    }
+}
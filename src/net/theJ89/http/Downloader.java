@@ -0,0 +1,249 @@
+package net.theJ89.http;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.theJ89.util.Misc;
+
+/**
+ * Downloader runs several {@link Download}s at once using a fixed number of worker threads.
+ *
+ * Besides the total number of workers, the number of downloads that may run against a single host at once can be capped.
+ * This keeps us from hammering a single server (e.g. resources.download.minecraft.net) with every worker we have
+ * when a batch contains downloads from several different hosts.
+ * Downloads over a host's cap wait in that host's queue rather than on a worker, so a large batch against one host
+ * never holds more than the cap's worth of workers, and the rest stay free for other hosts.
+ */
+public class Downloader implements AutoCloseable {
+    public static final int DEFAULT_THREADS          = 8;
+    public static final int DEFAULT_THREADS_PER_HOST = 6;
+    
+    private static final AtomicInteger poolNumber = new AtomicInteger( 1 );
+    
+    private final ExecutorService                                 executor;
+    private final int                                             threadsPerHost;
+    private final ConcurrentMap< String, Host >                   hosts;
+    private final ConcurrentMap< Path, CompletableFuture< Void > > pending;
+    
+    /**
+     * Downloads waiting for, or running against, a single host.
+     */
+    private static class Host {
+        //Downloads waiting for one of the host's slots. Guarded by the Host, along with running.
+        public final Queue< Runnable > queue   = new ArrayDeque< Runnable >();
+        public int                     running = 0;
+    }
+    
+    /**
+     * A piece of network-bound work that doesn't fit in a {@link Download} (e.g. one that falls back on a second URL if the first fails).
+     */
+    @FunctionalInterface
+    public static interface Job {
+        void run() throws IOException;
+    }
+    
+    /**
+     * Constructs a Downloader with the default number of worker threads and per-host cap.
+     */
+    public Downloader() {
+        this( DEFAULT_THREADS, DEFAULT_THREADS_PER_HOST );
+    }
+    
+    /**
+     * Downloader constructor.
+     * @param threads - Maximum number of downloads to run at once.
+     * @param threadsPerHost - Maximum number of downloads to run at once against a single host.
+     */
+    public Downloader( final int threads, final int threadsPerHost ) {
+        if( threads < 1 || threadsPerHost < 1 )
+            throw new IllegalArgumentException( "Downloader needs at least one thread." );
+        
+        this.executor       = Executors.newFixedThreadPool( threads, Misc.newDaemonThreadFactory( "Downloader-" + poolNumber.getAndIncrement() + "-" ) );
+        this.threadsPerHost = threadsPerHost;
+        this.hosts          = new ConcurrentHashMap< String, Host >();
+        this.pending        = new ConcurrentHashMap< Path, CompletableFuture< Void > >();
+    }
+    
+    /**
+     * Schedules the given download to run on one of this downloader's workers.
+     * If a download to the same path is already pending, the download isn't scheduled a second time;
+     * the pending download's future is returned instead. (Asset indices, for example, frequently list the same object more than once.)
+     * @param download - The download to run.
+     * @return A future that completes when the download has finished (or completes exceptionally if it failed).
+     */
+    public CompletableFuture< Void > submit( final Download download ) {
+        return this.submit( download.getURL(), download.getPath(), download::run, null, null );
+    }
+    
+    /**
+     * Schedules the given job to run on one of this downloader's workers, counting it against the given URL's host.
+     * As with {@link #submit(Download)}, jobs and downloads writing to the same path are only run once.
+     * @param url - URL the job downloads from.
+     * @param path - Path the job writes to.
+     * @param job - The job to run.
+     * @return A future that completes when the job has finished (or completes exceptionally if it failed).
+     */
+    public CompletableFuture< Void > submit( final URL url, final Path path, final Job job ) {
+        return this.submit( url, path, job, null, null );
+    }
+    
+    /**
+     * Downloads every file in the given batch, returning once they've all finished.
+     *
+     * If any download fails, downloads in the batch that haven't started yet are skipped,
+     * and once the downloads that are already running have finished, an IOException is thrown.
+     * The IOException's cause is the first failure we encountered; any others are attached to it as suppressed exceptions.
+     *
+     * A download that is already pending in another batch is waited on rather than run a second time.
+     * If the other batch skips it because one of its own downloads failed, it's submitted again as part of this batch.
+     *
+     * @param downloads - The downloads to perform.
+     * @throws IOException If any of the downloads failed.
+     */
+    public void download( final Collection< Download > downloads ) throws IOException {
+        AtomicBoolean abort = new AtomicBoolean( false );
+        
+        //Duplicate downloads share a future; the map makes sure each is only waited on (and any failure only reported) once.
+        //Futures this batch created are also kept in owned; the rest belong to downloads another batch had already submitted.
+        Map< CompletableFuture< Void >, Download > futures = new LinkedHashMap< CompletableFuture< Void >, Download >();
+        Set< CompletableFuture< Void > >           owned   = new HashSet< CompletableFuture< Void > >();
+        for( Download download : downloads )
+            futures.putIfAbsent( this.submit( download.getURL(), download.getPath(), download::run, abort, owned ), download );
+        
+        //Wait for everything to finish, collecting any failures along the way
+        IOException failure = null;
+        int failed = 0;
+        for( Map.Entry< CompletableFuture< Void >, Download > entry : futures.entrySet() ) {
+            CompletableFuture< Void > future   = entry.getKey();
+            Download                  download = entry.getValue();
+            try {
+                while( true ) {
+                    try {
+                        future.get();
+                        break;
+                    } catch( CancellationException e ) {
+                        //Skipped because an earlier download in this batch failed; that failure has already been recorded.
+                        if( owned.contains( future ) )
+                            break;
+                        
+                        //Skipped by the batch that submitted it. Nobody has downloaded the file, so we have to.
+                        future = this.submit( download.getURL(), download.getPath(), download::run, abort, owned );
+                    }
+                }
+            } catch( ExecutionException e ) {
+                Throwable cause = e.getCause();
+                if( failure == null ) { failure = new IOException( "Download failed.", cause ); }
+                else                  { failure.addSuppressed( cause );                          }
+                ++failed;
+            } catch( InterruptedException e ) {
+                abort.set( true );
+                Thread.currentThread().interrupt();
+                throw new IOException( "Interrupted while waiting for downloads to finish.", e );
+            }
+        }
+        
+        if( failure != null ) {
+            System.err.println( String.format( "%d of %d download(s) failed.", failed, futures.size() ) );
+            throw failure;
+        }
+    }
+    
+    /**
+     * Stops accepting new downloads.
+     * Downloads that were already submitted will still run to completion.
+     */
+    @Override
+    public void close() {
+        this.executor.shutdown();
+    }
+    
+    /**
+     * Schedules the given job, unless a job writing to the same path is already pending.
+     * @param url - URL the job downloads from.
+     * @param path - Path the job writes to.
+     * @param job - The job to run.
+     * @param abort - If non-null, the job is skipped (its future cancelled) if this is set before it starts, and is set if the job fails.
+     * @param owned - If non-null, the future is added to this if the job was scheduled by this call (rather than already pending).
+     * @return
+     */
+    private CompletableFuture< Void > submit( final URL url, final Path path, final Job job, final AtomicBoolean abort, final Set< CompletableFuture< Void > > owned ) {
+        final CompletableFuture< Void > future = new CompletableFuture< Void >();
+        CompletableFuture< Void > existing = this.pending.putIfAbsent( path, future );
+        if( existing != null )
+            return existing;
+        future.whenComplete( ( v, t ) -> this.pending.remove( path, future ) );
+        if( owned != null )
+            owned.add( future );
+        
+        this.schedule( this.getHost( url ), () -> {
+            //Another download in this batch failed; don't bother starting this one.
+            if( abort != null && abort.get() ) {
+                future.cancel( false );
+                return;
+            }
+            
+            try {
+                job.run();
+                future.complete( null );
+            } catch( Throwable t ) {
+                if( abort != null )
+                    abort.set( true );
+                future.completeExceptionally( t );
+            }
+        } );
+        return future;
+    }
+    
+    /**
+     * Runs the given task on a worker if the host has a free slot, or queues it until one of the host's running tasks finishes.
+     * @param host
+     * @param task - The task to run. Must not throw.
+     */
+    private void schedule( final Host host, final Runnable task ) {
+        synchronized( host ) {
+            if( host.running >= this.threadsPerHost ) {
+                host.queue.add( task );
+                return;
+            }
+            ++host.running;
+        }
+        this.executor.execute( () -> this.run( host, task ) );
+    }
+    
+    /**
+     * Runs the given task, then keeps running tasks from the host's queue on this worker until the queue is empty.
+     * @param host
+     * @param task
+     */
+    private void run( final Host host, Runnable task ) {
+        while( task != null ) {
+            task.run();
+            synchronized( host ) {
+                task = host.queue.poll();
+                if( task == null )
+                    --host.running;
+            }
+        }
+    }
+    
+    private Host getHost( final URL url ) {
+        return this.hosts.computeIfAbsent( url.getHost(), ( host ) -> new Host() );
+    }
+}
@@ -25,6 +25,17 @@ public class HTTPRequest {
         this.connection = u;
     }
     
+    /**
+     * Sets the value of the given request header, replacing any value it already had.
+     * @param name - Name of the header (e.g. "Range")
+     * @param value - Value of the header
+     * @return
+     */
+    public HTTPRequest setHeader( String name, String value ) {
+        this.connection.setRequestProperty( name, value );
+        return this;
+    }
+    
     public HTTPRequest setContentType( String contentType ) {
         this.connection.setRequestProperty( "Content-Type", contentType );
         return this;
@@ -78,11 +89,11 @@ public class HTTPRequest {
         try {
             in = this.connection.getInputStream();
             long contentLength = this.connection.getContentLengthLong();
-            return new HTTPResponse( this.connection.getResponseCode(), contentLength != -1 ? contentLength : null, in );
+            return new HTTPResponse( this.connection.getResponseCode(), contentLength != -1 ? contentLength : null, in, this.connection );
         } catch( IOException e ) {
             IO.closeQuietly( in );
             in = this.connection.getErrorStream();
-            return new HTTPResponse( this.connection.getResponseCode(), null, in );
+            return new HTTPResponse( this.connection.getResponseCode(), null, in, this.connection );
         }
     }
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package net.theJ89.http;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.nio.charset.StandardCharsets;
 
 import com.google.gson.JsonSyntaxException;
@@ -9,14 +10,20 @@ import com.google.gson.JsonSyntaxException;
 import net.theJ89.util.IO;
 
 public class HTTPResponse implements AutoCloseable {
-    private int         status;
-    private Long        contentLength;
-    private InputStream inputStream;
+    private int               status;
+    private Long              contentLength;
+    private InputStream       inputStream;
+    private HttpURLConnection connection;
     
     public HTTPResponse( int status, Long contentLength, InputStream inputStream ) {
+        this( status, contentLength, inputStream, null );
+    }
+    
+    HTTPResponse( int status, Long contentLength, InputStream inputStream, HttpURLConnection connection ) {
         this.status        = status;
         this.contentLength = contentLength;
         this.inputStream   = inputStream;
+        this.connection    = connection;
     }
     
     /**
@@ -78,6 +85,26 @@ public class HTTPResponse implements AutoCloseable {
         return this.status == 200;
     }
     
+    /**
+     * Returns true if status code is 206 (Partial Content), i.e. the server honored a Range request. Returns false otherwise.
+     * @return
+     */
+    public boolean partial() {
+        return this.status == 206;
+    }
+    
+    /**
+     * Returns the value of the response header with the given name,
+     * or null if the server didn't send this header.
+     * @param name - Name of the header (e.g. "ETag"). This is not case sensitive.
+     * @return
+     */
+    public String getHeader( final String name ) {
+        if( this.connection == null )
+            return null;
+        return this.connection.getHeaderField( name );
+    }
+    
     /**
      * Returns the value of the Content-Length header.
      * Returns null if the server did not provide a Content-Length.
@@ -87,8 +114,46 @@ public class HTTPResponse implements AutoCloseable {
         return this.contentLength;
     }
 
+    /**
+     * Closes the response.
+     * 
+     * A connection can only be returned to the pool (see {@link ConnectionPool}) once its response has been read to the end.
+     * If the response hasn't been fully read, we read and discard what's left of it, up to {@link ConnectionPool#getMaxDrain()} bytes.
+     * If more than that remains, the connection is closed instead.
+     */
     @Override
     public void close() {
-        IO.closeQuietly( this.inputStream );
+        InputStream in = this.inputStream;
+        if( in == null )
+            return;
+        
+        try {
+            if( !drain( in, ConnectionPool.getMaxDrain() ) )
+                this.disconnect();
+        } catch( IOException e ) {
+            this.disconnect();
+        } finally {
+            IO.closeQuietly( in );
+        }
+    }
+    
+    /**
+     * Reads and discards at most limit bytes from the given input stream.
+     * Returns true if the end of the stream was reached, false otherwise.
+     */
+    private static boolean drain( final InputStream in, long limit ) throws IOException {
+        byte[] buf = new byte[4096];
+        int c;
+        while( ( c = in.read( buf ) ) != -1 ) {
+            limit -= c;
+            if( limit < 0 )
+                return false;
+        }
+        return true;
+    }
+    
+    private void disconnect() {
+        if( this.connection != null )
+            this.connection.disconnect();
     }
 }
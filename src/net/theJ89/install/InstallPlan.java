@@ -0,0 +1,369 @@
+package net.theJ89.install;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.theJ89.http.Downloader;
+import net.theJ89.install.InstallTask.Kind;
+import net.theJ89.util.Misc;
+
+/**
+ * An InstallPlan is the complete set of tasks needed to install something (e.g. a version of Minecraft or Forge),
+ * worked out ahead of time from its metadata, before any of the tasks are performed.
+ *
+ * The tasks form a graph: each task names the tasks that must finish before it can start
+ * (for example, natives can't be extracted from a library until the library has been downloaded).
+ * Tasks that do the same thing to the same file are only added to the plan once, no matter how many times they're requested.
+ *
+ * Because the plan is known in advance, it can be summarized without performing it (see {@link #summarize()}),
+ * and when it is performed, network-bound tasks (downloads) and CPU-bound tasks (unpacking, extracting, writing)
+ * run side by side on separate pools, each starting as soon as the tasks it depends on have finished.
+ */
+public class InstallPlan {
+    private static final AtomicInteger poolNumber = new AtomicInteger( 1 );
+    
+    private final Map< String, InstallTask > tasks;
+    
+    public InstallPlan() {
+        this.tasks = new LinkedHashMap< String, InstallTask >();
+    }
+    
+    /**
+     * Adds the given task to the plan.
+     * If the plan already has a task of the same kind for the same path, the given task is discarded and the existing task is returned instead.
+     * Callers should use the returned task when setting up dependencies.
+     * @param task - The task to add.
+     * @return The task in the plan.
+     */
+    public synchronized InstallTask add( final InstallTask task ) {
+        InstallTask existing = this.tasks.putIfAbsent( getKey( task.getKind(), task.getPath() ), task );
+        return existing != null ? existing : task;
+    }
+    
+    /**
+     * Returns the task of the given kind for the given path, or null if the plan doesn't have one.
+     * @param kind
+     * @param path
+     * @return
+     */
+    public synchronized InstallTask get( final Kind kind, final Path path ) {
+        return this.tasks.get( getKey( kind, path ) );
+    }
+    
+    /**
+     * Returns every task in the plan, in the order they were added.
+     * @return
+     */
+    public synchronized Collection< InstallTask > getTasks() {
+        return Collections.unmodifiableCollection( new ArrayList< InstallTask >( this.tasks.values() ) );
+    }
+    
+    /**
+     * Summarizes what performing the plan would involve, without performing it.
+     * The only I/O this performs is checking which of the files the plan would download already exist.
+     * @return
+     */
+    public synchronized Summary summarize() {
+        Summary summary = new Summary();
+        for( InstallTask task : this.tasks.values() ) {
+            Kind kind = task.getKind();
+            summary.counts.merge( kind, 1, Integer::sum );
+            if( kind != Kind.FETCH )
+                continue;
+            
+            long size = task.getSize();
+            if( Files.exists( task.getPath() ) ) {
+                ++summary.presentFiles;
+                summary.presentBytes += Math.max( size, 0 );
+            } else {
+                ++summary.fetchFiles;
+                if( size >= 0 ) { summary.fetchBytes += size; }
+                else            { ++summary.unknownSizeFiles; }
+            }
+        }
+        return summary;
+    }
+    
+    /**
+     * Performs the plan, running network-bound tasks on the given downloader and all other tasks on a CPU pool
+     * with one thread per available processor. Returns once every task has finished.
+     * @param downloader - Downloader to run FETCH tasks on.
+     * @throws IOException If any of the tasks failed.
+     */
+    public void execute( final Downloader downloader ) throws IOException {
+        ExecutorService cpu = Executors.newFixedThreadPool( Runtime.getRuntime().availableProcessors(), Misc.newDaemonThreadFactory( "InstallPlan-" + poolNumber.getAndIncrement() + "-" ) );
+        try {
+            this.execute( downloader, cpu );
+        } finally {
+            cpu.shutdown();
+        }
+    }
+    
+    /**
+     * Performs the plan, running network-bound tasks on the given downloader and all other tasks on the given executor.
+     * Returns once every task has finished.
+     *
+     * If any task fails, tasks that haven't started yet are skipped (as are tasks that depend on the failed task),
+     * and once the tasks that are already running have finished, an IOException is thrown.
+     * The IOException's cause is the first failure we encountered; any others are attached to it as suppressed exceptions.
+     *
+     * @param downloader - Downloader to run FETCH tasks on.
+     * @param cpu - Executor to run every other kind of task on.
+     * @throws IOException If any of the tasks failed.
+     * @throws RuntimeException If the plan's dependencies form a cycle. No tasks are run in this case.
+     */
+    public void execute( final Downloader downloader, final Executor cpu ) throws IOException {
+        Collection< InstallTask > tasks = this.getTasks();
+        checkForCycles( tasks );
+        
+        Execution execution = new Execution( downloader, cpu );
+        List< CompletableFuture< Void > > futures = new ArrayList< CompletableFuture< Void > >();
+        for( InstallTask task : tasks )
+            futures.add( execution.schedule( task ) );
+        
+        //Wait for everything to finish.
+        //Failures are collected by the tasks themselves, so tasks that were skipped because of a failure aren't reported twice.
+        for( CompletableFuture< Void > future : futures ) {
+            try {
+                future.get();
+            } catch( CancellationException | ExecutionException e ) {
+                continue;
+            } catch( InterruptedException e ) {
+                execution.abort.set( true );
+                Thread.currentThread().interrupt();
+                throw new IOException( "Interrupted while waiting for install tasks to finish.", e );
+            }
+        }
+        
+        IOException failure = null;
+        for( Throwable t : execution.failures ) {
+            if( failure == null ) { failure = new IOException( "Install failed.", t ); }
+            else                  { failure.addSuppressed( t );                        }
+        }
+        if( failure != null ) {
+            System.err.println( String.format( "%d of %d install task(s) failed.", execution.failures.size(), futures.size() ) );
+            throw failure;
+        }
+    }
+    
+    /**
+     * Throws a RuntimeException naming the tasks involved if any of the given tasks (directly or indirectly) depends on itself.
+     * @param tasks
+     */
+    private static void checkForCycles( final Collection< InstallTask > tasks ) {
+        Set< InstallTask > done = new HashSet< InstallTask >();
+        for( InstallTask task : tasks )
+            checkForCycles( task, new LinkedHashSet< InstallTask >(), done );
+    }
+    
+    /**
+     * Depth-first search for a cycle through the given task.
+     * @param task - The task to check.
+     * @param path - The tasks we followed dependencies through to get here, in order.
+     * @param done - Tasks already known not to be part of a cycle.
+     */
+    private static void checkForCycles( final InstallTask task, final Set< InstallTask > path, final Set< InstallTask > done ) {
+        if( done.contains( task ) )
+            return;
+        if( !path.add( task ) ) {
+            StringBuilder sb = new StringBuilder();
+            boolean inCycle = false;
+            for( InstallTask t : path ) {
+                inCycle |= t == task;
+                if( inCycle )
+                    sb.append( t ).append( " -> " );
+            }
+            throw new RuntimeException( "Install plan has a dependency cycle: " + sb.append( task ) + "." );
+        }
+        for( InstallTask dependency : task.getDependencies() )
+            checkForCycles( dependency, path, done );
+        path.remove( task );
+        done.add( task );
+    }
+    
+    /**
+     * Tasks are identified by their kind and the path they operate on.
+     */
+    private static String getKey( final Kind kind, final Path path ) {
+        return kind + ":" + path.toAbsolutePath().normalize();
+    }
+    
+    /**
+     * State for a single call to execute().
+     */
+    private static class Execution {
+        private final Downloader                                    downloader;
+        private final Executor                                      cpu;
+        private final AtomicBoolean                                 abort;
+        private final Queue< Throwable >                            failures;
+        private final Map< InstallTask, CompletableFuture< Void > > futures;
+        
+        public Execution( final Downloader downloader, final Executor cpu ) {
+            this.downloader = downloader;
+            this.cpu        = cpu;
+            this.abort      = new AtomicBoolean( false );
+            this.failures   = new ConcurrentLinkedQueue< Throwable >();
+            this.futures    = new HashMap< InstallTask, CompletableFuture< Void > >();
+        }
+        
+        /**
+         * Schedules the given task to start once all of its dependencies have finished, scheduling those dependencies first if necessary.
+         * Returns a future that completes when the task has finished.
+         */
+        public CompletableFuture< Void > schedule( final InstallTask task ) {
+            CompletableFuture< Void > future = this.futures.get( task );
+            if( future != null )
+                return future;
+            
+            List< InstallTask > dependencies = task.getDependencies();
+            CompletableFuture< ? >[] ready = new CompletableFuture< ? >[ dependencies.size() ];
+            for( int i = 0; i < ready.length; ++i )
+                ready[i] = this.schedule( dependencies.get( i ) );
+            
+            future = CompletableFuture.allOf( ready ).thenCompose( ( v ) -> this.start( task ) );
+            this.futures.put( task, future );
+            return future;
+        }
+        
+        private CompletableFuture< Void > start( final InstallTask task ) {
+            //Another task failed; don't bother starting this one.
+            if( this.abort.get() ) {
+                CompletableFuture< Void > skipped = new CompletableFuture< Void >();
+                skipped.cancel( false );
+                return skipped;
+            }
+            
+            CompletableFuture< Void > future;
+            if( task.getKind() == Kind.FETCH ) {
+                future = this.downloader.submit( task.getURL(), task.getPath(), task::run );
+            } else {
+                future = CompletableFuture.runAsync( () -> {
+                    try                    { task.run();                         }
+                    catch( IOException e ) { throw new UncheckedIOException( e ); }
+                }, this.cpu );
+            }
+            return future.whenComplete( ( v, t ) -> {
+                if( t == null )
+                    return;
+                this.abort.set( true );
+                this.failures.add( unwrap( t ) );
+            } );
+        }
+        
+        private static Throwable unwrap( Throwable t ) {
+            while( ( t instanceof CompletionException || t instanceof UncheckedIOException ) && t.getCause() != null )
+                t = t.getCause();
+            return t;
+        }
+    }
+    
+    /**
+     * A summary of what performing an InstallPlan would involve.
+     */
+    public static class Summary {
+        private final Map< Kind, Integer > counts = new EnumMap< Kind, Integer >( Kind.class );
+        private int  fetchFiles;
+        private long fetchBytes;
+        private int  unknownSizeFiles;
+        private int  presentFiles;
+        private long presentBytes;
+        
+        /**
+         * Returns the number of tasks of the given kind in the plan.
+         * @param kind
+         * @return
+         */
+        public int getCount( final Kind kind ) {
+            return this.counts.getOrDefault( kind, 0 );
+        }
+        
+        /**
+         * Returns the number of files that would be downloaded.
+         * @return
+         */
+        public int getFetchFiles() {
+            return this.fetchFiles;
+        }
+        
+        /**
+         * Returns the number of bytes that would be downloaded, not counting files whose size is unknown.
+         * @return
+         */
+        public long getFetchBytes() {
+            return this.fetchBytes;
+        }
+        
+        /**
+         * Returns the number of files that would be downloaded whose size is unknown.
+         * @return
+         */
+        public int getUnknownSizeFiles() {
+            return this.unknownSizeFiles;
+        }
+        
+        /**
+         * Returns the number of files the plan downloads that are already present, and so wouldn't be downloaded again.
+         * @return
+         */
+        public int getPresentFiles() {
+            return this.presentFiles;
+        }
+        
+        public long getPresentBytes() {
+            return this.presentBytes;
+        }
+        
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            int total = 0;
+            for( Entry< Kind, Integer > entry : this.counts.entrySet() ) {
+                sb.append( total == 0 ? " (" : ", " ).append( entry.getValue() ).append( ' ' ).append( entry.getKey().name().toLowerCase() );
+                total += entry.getValue();
+            }
+            if( total > 0 )
+                sb.append( ')' );
+            sb.insert( 0, total + " task(s)" ).append( '\n' );
+            
+            sb.append( "Download " ).append( this.fetchFiles ).append( " file(s), " ).append( formatBytes( this.fetchBytes ) );
+            if( this.unknownSizeFiles > 0 )
+                sb.append( " + " ).append( this.unknownSizeFiles ).append( " file(s) of unknown size" );
+            sb.append( ".\n" );
+            sb.append( this.presentFiles ).append( " file(s) (" ).append( formatBytes( this.presentBytes ) ).append( ") already present." );
+            return sb.toString();
+        }
+        
+        private static String formatBytes( final long bytes ) {
+            if( bytes < 1024 )
+                return bytes + " B";
+            int    unit  = (int)( Math.log( bytes ) / Math.log( 1024 ) );
+            double value = bytes / Math.pow( 1024, unit );
+            return String.format( "%.1f %ciB", value, "KMGTPE".charAt( unit - 1 ) );
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package net.theJ89.install;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.theJ89.http.Download;
+
+/**
+ * A single step of an {@link InstallPlan}, such as downloading a library or extracting natives from it.
+ *
+ * Each task has a kind, which determines where the plan runs it: FETCH tasks are network-bound and run on the plan's Downloader,
+ * while every other kind is CPU- or disk-bound and runs on the plan's CPU pool.
+ * A task only starts once every task it depends on has finished.
+ */
+public class InstallTask {
+    public static enum Kind {
+        FETCH,   //Downloads a file
+        VERIFY,  //Checks a file we already have
+        UNPACK,  //Decompresses a downloaded file into its final form
+        EXTRACT, //Extracts files from an archive
+        WRITE    //Writes (or links) a file we generate ourselves
+    }
+    
+    /**
+     * The work a task performs.
+     */
+    @FunctionalInterface
+    public static interface Action {
+        void run() throws IOException;
+    }
+    
+    private final Kind                kind;
+    private final String              name;
+    private final Path                path;
+    private final URL                 url;
+    private final long                size;
+    private final Action              action;
+    private final List< InstallTask > dependencies;
+    
+    private InstallTask( final Kind kind, final String name, final Path path, final URL url, final long size, final Action action ) {
+        this.kind         = kind;
+        this.name         = name;
+        this.path         = path;
+        this.url          = url;
+        this.size         = size;
+        this.action       = action;
+        this.dependencies = new ArrayList< InstallTask >();
+    }
+    
+    /**
+     * Creates a task that performs the given download.
+     * @param download - The download to perform.
+     * @param size - Expected size of the file in bytes, or -1 if it's unknown.
+     * @return
+     */
+    public static InstallTask fetch( final Download download, final long size ) {
+        return new InstallTask( Kind.FETCH, download.getURL().toString(), download.getPath(), download.getURL(), size, download::run );
+    }
+    
+    /**
+     * Creates a task that downloads a file from the given URL to the given path with the given action.
+     * Useful when the download can't be expressed as a single {@link Download}.
+     * @param url - URL the file is downloaded from. The task counts against this URL's host.
+     * @param path - Path the file is downloaded to.
+     * @param size - Expected size of the file in bytes, or -1 if it's unknown.
+     * @param action - Performs the download.
+     * @return
+     */
+    public static InstallTask fetch( final URL url, final Path path, final long size, final Action action ) {
+        return new InstallTask( Kind.FETCH, url.toString(), path, url, size, action );
+    }
+    
+    /**
+     * Creates a task of the given (non-FETCH) kind.
+     * @param kind - What kind of task this is.
+     * @param name - Short description of the task, for progress messages.
+     * @param path - The file this task produces (or, for EXTRACT and VERIFY tasks, the file it reads).
+     *               Tasks of the same kind with the same path are considered duplicates of one another.
+     * @param action - The work the task performs.
+     * @return
+     */
+    public static InstallTask create( final Kind kind, final String name, final Path path, final Action action ) {
+        if( kind == Kind.FETCH )
+            throw new IllegalArgumentException( "Use InstallTask.fetch() to create FETCH tasks." );
+        return new InstallTask( kind, name, path, null, -1, action );
+    }
+    
+    /**
+     * Makes this task wait for the given tasks to finish before it starts.
+     * @param tasks
+     * @return this task
+     */
+    public InstallTask dependsOn( final InstallTask... tasks ) {
+        for( InstallTask task : tasks )
+            if( task != null && !this.dependencies.contains( task ) )
+                this.dependencies.add( task );
+        return this;
+    }
+    
+    public Kind getKind() {
+        return this.kind;
+    }
+    
+    public String getName() {
+        return this.name;
+    }
+    
+    public Path getPath() {
+        return this.path;
+    }
+    
+    /**
+     * Returns the URL this task downloads from, or null if this isn't a FETCH task.
+     * @return
+     */
+    public URL getURL() {
+        return this.url;
+    }
+    
+    /**
+     * Returns the number of bytes this task downloads, or -1 if it's unknown (or this isn't a FETCH task).
+     * @return
+     */
+    public long getSize() {
+        return this.size;
+    }
+    
+    public List< InstallTask > getDependencies() {
+        return Collections.unmodifiableList( this.dependencies );
+    }
+    
+    /**
+     * Performs this task.
+     * @throws IOException
+     */
+    public void run() throws IOException {
+        this.action.run();
+    }
+    
+    @Override
+    public String toString() {
+        return this.kind + " " + this.name;
+    }
+}
@@ -0,0 +1,685 @@
+package net.theJ89.json;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import net.theJ89.util.Misc;
+
+/**
+ * A compact binary form of a JSON document, stored next to the JSON file it was compiled from (e.g. 1.12.2.json -> 1.12.2.json.bin).
+ * Loading a JSON file through {@link #load(Path)} uses the binary form if it's still up to date, which saves lexing the JSON text every time.
+ *
+ * A snapshot is up to date if it was compiled from the JSON file's current contents, which its header records the SHA-1 hash of.
+ * The header also records the JSON file's size and last modified time, as a quick check: while those still match, the JSON file isn't read at all.
+ * The file is only hashed if they don't match, or if the snapshot was written so soon after the file was modified
+ * (within MTIME_GRANULARITY) that the file could have been modified again without its last modified time changing.
+ *
+ * Format (big-endian):
+ * <pre>
+ * int      magic ("MMMB")
+ * int      format version
+ * long     size of the JSON file the snapshot was compiled from, in bytes
+ * long     last modified time of that JSON file, in milliseconds since the epoch
+ * byte[20] SHA-1 hash of that JSON file
+ * int      number of strings (N)
+ * int[N]   offset of each string, relative to the start of the string data
+ * ...      string data; each string is an int length followed by that many bytes of UTF-8
+ * int      length of the token stream
+ * ...      token stream; one tag byte per token, followed by a varint string index for names, strings and numbers
+ * </pre>
+ * Every distinct name, string and number appears in the string table once, no matter how many times it's used in the document.
+ * Strings are decoded the first time they're read, rather than up front.
+ *
+ * Snapshots are memory mapped rather than read, and the document is read through a JsonReader (see {@link TokenReader}) that can be handed straight to a streaming TypeAdapter.
+ * A mapping lasts until it's garbage collected, and Windows won't replace or delete a file while it's mapped,
+ * so writing or deleting a snapshot only warns if it fails; the hash in the header keeps an undeleted snapshot from being used once its JSON file changes.
+ */
+public class BinaryJson {
+    private static final int    MAGIC            = 0x4D4D4D42;
+    private static final int    VERSION          = 3;
+    private static final int    SHA1_LENGTH      = 20;
+    private static final int    HEADER_LENGTH    = 8 + 8 + 8 + SHA1_LENGTH;
+    private static final String SNAPSHOT_SUFFIX  = ".bin";
+    
+    //Coarsest last modified time resolution we expect from a file system, in milliseconds (FAT's is 2 seconds)
+    private static final long   MTIME_GRANULARITY = 2000;
+    
+    private static final byte   TAG_BEGIN_OBJECT = 1;
+    private static final byte   TAG_END_OBJECT   = 2;
+    private static final byte   TAG_BEGIN_ARRAY  = 3;
+    private static final byte   TAG_END_ARRAY    = 4;
+    private static final byte   TAG_NAME         = 5;
+    private static final byte   TAG_STRING       = 6;
+    private static final byte   TAG_NUMBER       = 7;
+    private static final byte   TAG_TRUE         = 8;
+    private static final byte   TAG_FALSE        = 9;
+    private static final byte   TAG_NULL         = 10;
+    
+    private BinaryJson() {
+        throw new Error();
+    }
+    
+    /**
+     * Returns the path of the binary snapshot of the JSON file at the given path.
+     * @param path
+     * @return
+     */
+    public static Path getSnapshotPath( final Path path ) {
+        return path.resolveSibling( path.getFileName().toString() + SNAPSHOT_SUFFIX );
+    }
+    
+    /**
+     * Deletes the binary snapshot of the JSON file at the given path, if it has one.
+     * Anything that writes or removes a JSON file loaded through {@link #load(Path)} should call this, so the snapshot doesn't outlive it.
+     * If the snapshot can't be deleted (e.g. because it's still mapped on Windows), this only warns; the snapshot's hash won't match the new file.
+     * @param path - Path of the JSON file.
+     */
+    public static void deleteSnapshot( final Path path ) {
+        Path snapshot = getSnapshotPath( path );
+        try {
+            Files.deleteIfExists( snapshot );
+        } catch( IOException e ) {
+            System.err.println( String.format( "Warning: couldn't delete \"%s\" (%s).", snapshot, e ) );
+        }
+    }
+    
+    /**
+     * Loads the JSON file at the given path.
+     * If the file has a binary snapshot compiled from its current contents, only the snapshot is read (see the class description for how that's decided).
+     * Otherwise the file is compiled and a new snapshot is written next to it (if we can).
+     *
+     * The returned reader only supports the streaming type adapters (e.g. CompleteMinecraftVersion.Adapter);
+     * Gson's map adapters rely on JsonReader internals and can't read from it.
+     * @param path - Path of the JSON file.
+     * @return A reader for the JSON document.
+     * @throws IOException If the JSON file couldn't be read or is malformed.
+     */
+    public static JsonReader load( final Path path ) throws IOException {
+        BasicFileAttributes attrs    = Files.readAttributes( path, BasicFileAttributes.class );
+        long                size     = attrs.size();
+        long                modified = attrs.lastModifiedTime().toMillis();
+        
+        //Use the snapshot if it's up to date
+        Path   snapshot = getSnapshotPath( path );
+        byte[] json     = null;
+        try( FileChannel channel = FileChannel.open( snapshot, StandardOpenOption.READ ) ) {
+            ByteBuffer header = readHeader( channel );
+            if( header != null ) {
+                //Quick check: the file hasn't been modified since the snapshot was compiled from it
+                boolean stamped = header.getLong( 8 ) == size && header.getLong( 16 ) == modified;
+                boolean racy    = Files.getLastModifiedTime( snapshot ).toMillis() - modified < MTIME_GRANULARITY;
+                if( stamped && !racy )
+                    return new TokenReader( map( channel ) );
+                
+                //The file may have changed; it's up to date if it still has the same hash.
+                //If it does, restamp the snapshot so the quick check passes next time.
+                json = Files.readAllBytes( path );
+                byte[] sha1 = new byte[ SHA1_LENGTH ];
+                ( (ByteBuffer)header.position( 24 ) ).get( sha1 );
+                if( Arrays.equals( sha1, Misc.newSHA1().digest( json ) ) ) {
+                    TokenReader reader = new TokenReader( map( channel ) );
+                    restamp( snapshot, size, modified );
+                    return reader;
+                }
+            }
+        } catch( NoSuchFileException e ) {
+            //No snapshot yet
+        } catch( IOException | RuntimeException e ) {
+            System.err.println( String.format( "Warning: couldn't read \"%s\" (%s); recompiling it.", snapshot, e ) );
+        }
+        
+        //Otherwise compile the JSON file and save the result for next time.
+        //If the file changes after we've looked at its attributes, the snapshot's stamp won't match it, and its hash will be checked next time.
+        if( json == null )
+            json = Files.readAllBytes( path );
+        byte[] compiled = compile( json, size, modified );
+        Path temp = snapshot.resolveSibling( snapshot.getFileName().toString() + ".tmp" );
+        try {
+            Files.write( temp, compiled );
+            Files.move( temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        } catch( IOException e ) {
+            System.err.println( String.format( "Warning: couldn't write \"%s\" (%s).", snapshot, e ) );
+            try { Files.deleteIfExists( temp ); }
+            catch( IOException e2 ) {}
+        }
+        return new TokenReader( ByteBuffer.wrap( compiled ) );
+    }
+    
+    /**
+     * Compiles the given JSON document into its binary form.
+     * @param json - UTF-8 encoded JSON.
+     * @param size - Size of the JSON file, recorded in the header.
+     * @param modified - Last modified time of the JSON file, recorded in the header.
+     * @return The binary form, with the SHA-1 hash of json recorded in its header.
+     * @throws IOException If the JSON is malformed.
+     */
+    public static byte[] compile( final byte[] json, final long size, final long modified ) throws IOException {
+        Map< String, Integer > indices = new HashMap< String, Integer >();
+        List< String >         strings = new ArrayList< String >();
+        ByteArrayOutputStream  tokens  = new ByteArrayOutputStream( json.length / 4 );
+        
+        try( JsonReader in = new JsonReader( new InputStreamReader( new ByteArrayInputStream( json ), StandardCharsets.UTF_8 ) ) ) {
+            in.setLenient( true );
+            int depth = 0;
+            do {
+                switch( in.peek() ) {
+                case BEGIN_OBJECT:
+                    in.beginObject();
+                    tokens.write( TAG_BEGIN_OBJECT );
+                    ++depth;
+                    break;
+                case END_OBJECT:
+                    in.endObject();
+                    tokens.write( TAG_END_OBJECT );
+                    --depth;
+                    break;
+                case BEGIN_ARRAY:
+                    in.beginArray();
+                    tokens.write( TAG_BEGIN_ARRAY );
+                    ++depth;
+                    break;
+                case END_ARRAY:
+                    in.endArray();
+                    tokens.write( TAG_END_ARRAY );
+                    --depth;
+                    break;
+                case NAME:
+                    writeString( tokens, TAG_NAME, in.nextName(), indices, strings );
+                    break;
+                case STRING:
+                    writeString( tokens, TAG_STRING, in.nextString(), indices, strings );
+                    break;
+                case NUMBER:
+                    //Numbers are kept as they were written, and parsed when they're read
+                    writeString( tokens, TAG_NUMBER, in.nextString(), indices, strings );
+                    break;
+                case BOOLEAN:
+                    tokens.write( in.nextBoolean() ? TAG_TRUE : TAG_FALSE );
+                    break;
+                case NULL:
+                    in.nextNull();
+                    tokens.write( TAG_NULL );
+                    break;
+                case END_DOCUMENT:
+                default:
+                    throw new IOException( "Unexpected end of JSON document." );
+                }
+            } while( depth > 0 );
+        }
+        
+        //Lay out the string table
+        int      count   = strings.size();
+        byte[][] utf8    = new byte[ count ][];
+        int[]    offsets = new int[ count ];
+        int      offset  = 0;
+        for( int i = 0; i < count; ++i ) {
+            utf8[i]    = strings.get( i ).getBytes( StandardCharsets.UTF_8 );
+            offsets[i] = offset;
+            offset    += 4 + utf8[i].length;
+        }
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream( HEADER_LENGTH + 4 * ( 2 + count ) + offset + tokens.size() );
+        try( DataOutputStream out = new DataOutputStream( bytes ) ) {
+            out.writeInt( MAGIC );
+            out.writeInt( VERSION );
+            out.writeLong( size );
+            out.writeLong( modified );
+            out.write( Misc.newSHA1().digest( json ) );
+            out.writeInt( count );
+            for( int i = 0; i < count; ++i )
+                out.writeInt( offsets[i] );
+            for( int i = 0; i < count; ++i ) {
+                out.writeInt( utf8[i].length );
+                out.write( utf8[i] );
+            }
+            out.writeInt( tokens.size() );
+            tokens.writeTo( out );
+        }
+        return bytes.toByteArray();
+    }
+    
+    /**
+     * Reads the header of the snapshot open on the given channel.
+     * @param channel
+     * @return The header, or null if the snapshot isn't of the current format.
+     * @throws IOException
+     */
+    private static ByteBuffer readHeader( final FileChannel channel ) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate( HEADER_LENGTH );
+        readFully( channel, header );
+        if( header.getInt( 0 ) != MAGIC || header.getInt( 4 ) != VERSION )
+            return null;
+        return header;
+    }
+    
+    /**
+     * Maps the whole of the snapshot open on the given channel. The mapping stays valid after the channel is closed.
+     * @param channel
+     * @return
+     * @throws IOException
+     */
+    private static ByteBuffer map( final FileChannel channel ) throws IOException {
+        long length = channel.size();
+        if( length > Integer.MAX_VALUE )
+            throw new IOException( "Snapshot is too large." );
+        return channel.map( FileChannel.MapMode.READ_ONLY, 0, length );
+    }
+    
+    /**
+     * Records the given size and last modified time in the header of the given snapshot, which has been found to be up to date by its hash.
+     * Only warns if it can't.
+     * @param snapshot
+     * @param size
+     * @param modified
+     */
+    private static void restamp( final Path snapshot, final long size, final long modified ) {
+        try( FileChannel channel = FileChannel.open( snapshot, StandardOpenOption.WRITE ) ) {
+            ByteBuffer stamp = ByteBuffer.allocate( 16 );
+            stamp.putLong( size ).putLong( modified ).flip();
+            while( stamp.hasRemaining() )
+                channel.write( stamp, 8 + stamp.position() );
+        } catch( IOException e ) {
+            System.err.println( String.format( "Warning: couldn't update \"%s\" (%s).", snapshot, e ) );
+        }
+    }
+    
+    /**
+     * Fills the given buffer from the channel.
+     * @throws IOException If the channel ends first.
+     */
+    private static void readFully( final FileChannel channel, final ByteBuffer buffer ) throws IOException {
+        while( buffer.hasRemaining() )
+            if( channel.read( buffer ) == -1 )
+                throw new IOException( "Unexpected end of snapshot." );
+    }
+    
+    /**
+     * Writes a token that refers to the given string, adding the string to the string table if it isn't already there.
+     */
+    private static void writeString( final ByteArrayOutputStream tokens, final byte tag, final String value, final Map< String, Integer > indices, final List< String > strings ) {
+        Integer index = indices.get( value );
+        if( index == null ) {
+            index = strings.size();
+            strings.add( value );
+            indices.put( value, index );
+        }
+        tokens.write( tag );
+        
+        //Unsigned LEB128 varint
+        int v = index;
+        while( ( v & ~0x7F ) != 0 ) {
+            tokens.write( ( v & 0x7F ) | 0x80 );
+            v >>>= 7;
+        }
+        tokens.write( v );
+    }
+    
+    /**
+     * Reads the token stream of a binary JSON document.
+     * The structure of the token stream is checked up front (which is cheap, since nothing is decoded), so a damaged snapshot is caught when it's loaded;
+     * after that, tokens are read one at a time, and names and strings are decoded as they're read.
+     *
+     * Type mismatches throw IllegalStateException, as they do with JsonReader.
+     * Gson's map adapters call into JsonReader internals, so they can't read from this class.
+     */
+    public static class TokenReader extends JsonReader {
+        private final ByteBuffer bytes;
+        private final int        count;
+        private final int        offsetsStart;
+        private final int        stringsStart;
+        private final String[]   strings;
+        private final int        end;
+        private int              pos;
+        
+        /**
+         * TokenReader constructor.
+         * @param bytes - A binary JSON document, header included, from the start of the buffer to its limit.
+         * @throws IOException If bytes doesn't hold a binary JSON document.
+         */
+        public TokenReader( final ByteBuffer bytes ) throws IOException {
+            super( new StringReader( "" ) );
+            
+            if( bytes.limit() < HEADER_LENGTH + 4 || bytes.getInt( 0 ) != MAGIC || bytes.getInt( 4 ) != VERSION )
+                throw new IOException( "Not a binary JSON document." );
+            
+            try {
+                this.bytes        = bytes;
+                this.count        = bytes.getInt( HEADER_LENGTH );
+                this.offsetsStart = HEADER_LENGTH + 4;
+                if( this.count < 0 || this.count > ( bytes.limit() - this.offsetsStart ) / 4 )
+                    throw new IOException( "Binary JSON document is truncated." );
+                this.stringsStart = this.offsetsStart + 4 * this.count;
+                this.strings      = new String[ this.count ];
+                
+                //The token stream follows the last string
+                int tokensStart = this.stringsStart;
+                if( this.count > 0 ) {
+                    int lastString = this.stringsStart + bytes.getInt( this.offsetsStart + 4 * ( this.count - 1 ) );
+                    tokensStart = lastString + 4 + bytes.getInt( lastString );
+                }
+                this.pos = tokensStart + 4;
+                this.end = this.pos + bytes.getInt( tokensStart );
+                if( this.end != bytes.limit() )
+                    throw new IOException( "Binary JSON document has the wrong length." );
+            } catch( IndexOutOfBoundsException e ) {
+                throw new IOException( "Binary JSON document is truncated." );
+            }
+            this.check();
+        }
+        
+        @Override
+        public void beginObject() throws IOException {
+            this.expect( TAG_BEGIN_OBJECT, JsonToken.BEGIN_OBJECT );
+            ++this.pos;
+        }
+        
+        @Override
+        public void endObject() throws IOException {
+            this.expect( TAG_END_OBJECT, JsonToken.END_OBJECT );
+            ++this.pos;
+        }
+        
+        @Override
+        public void beginArray() throws IOException {
+            this.expect( TAG_BEGIN_ARRAY, JsonToken.BEGIN_ARRAY );
+            ++this.pos;
+        }
+        
+        @Override
+        public void endArray() throws IOException {
+            this.expect( TAG_END_ARRAY, JsonToken.END_ARRAY );
+            ++this.pos;
+        }
+        
+        @Override
+        public boolean hasNext() throws IOException {
+            JsonToken token = this.peek();
+            return token != JsonToken.END_OBJECT && token != JsonToken.END_ARRAY && token != JsonToken.END_DOCUMENT;
+        }
+        
+        @Override
+        public JsonToken peek() throws IOException {
+            if( this.pos >= this.end )
+                return JsonToken.END_DOCUMENT;
+            switch( this.bytes.get( this.pos ) ) {
+            case TAG_BEGIN_OBJECT: return JsonToken.BEGIN_OBJECT;
+            case TAG_END_OBJECT:   return JsonToken.END_OBJECT;
+            case TAG_BEGIN_ARRAY:  return JsonToken.BEGIN_ARRAY;
+            case TAG_END_ARRAY:    return JsonToken.END_ARRAY;
+            case TAG_NAME:         return JsonToken.NAME;
+            case TAG_STRING:       return JsonToken.STRING;
+            case TAG_NUMBER:       return JsonToken.NUMBER;
+            case TAG_TRUE:
+            case TAG_FALSE:        return JsonToken.BOOLEAN;
+            case TAG_NULL:         return JsonToken.NULL;
+            default:               throw new MalformedJsonException( "Unexpected tag " + this.bytes.get( this.pos ) + this.location() );
+            }
+        }
+        
+        @Override
+        public String nextName() throws IOException {
+            this.expect( TAG_NAME, JsonToken.NAME );
+            ++this.pos;
+            return this.string();
+        }
+        
+        /**
+         * Returns the next string. Like JsonReader, numbers are returned as they were written.
+         */
+        @Override
+        public String nextString() throws IOException {
+            byte tag = this.pos < this.end ? this.bytes.get( this.pos ) : 0;
+            if( tag != TAG_STRING && tag != TAG_NUMBER )
+                throw this.unexpected( JsonToken.STRING );
+            ++this.pos;
+            return this.string();
+        }
+        
+        @Override
+        public boolean nextBoolean() throws IOException {
+            byte tag = this.pos < this.end ? this.bytes.get( this.pos ) : 0;
+            if( tag != TAG_TRUE && tag != TAG_FALSE )
+                throw this.unexpected( JsonToken.BOOLEAN );
+            ++this.pos;
+            return tag == TAG_TRUE;
+        }
+        
+        @Override
+        public void nextNull() throws IOException {
+            this.expect( TAG_NULL, JsonToken.NULL );
+            ++this.pos;
+        }
+        
+        @Override
+        public double nextDouble() throws IOException {
+            return Double.parseDouble( this.nextNumber() );
+        }
+        
+        @Override
+        public long nextLong() throws IOException {
+            String number = this.nextNumber();
+            try {
+                return Long.parseLong( number );
+            } catch( NumberFormatException e ) {
+                //Like JsonReader, accept numbers like "1.0" or "1e3" as long as they're whole
+                double d = Double.parseDouble( number );
+                long   l = (long)d;
+                if( l != d )
+                    throw new NumberFormatException( "Expected a long but was " + number + this.location() );
+                return l;
+            }
+        }
+        
+        @Override
+        public int nextInt() throws IOException {
+            long l = this.nextLong();
+            if( (int)l != l )
+                throw new NumberFormatException( "Expected an int but was " + l + this.location() );
+            return (int)l;
+        }
+        
+        /**
+         * Skips the next value, the same way JsonReader does:
+         * arrays and objects are skipped along with everything in them, but a name is skipped without its value, and an end token on its own.
+         */
+        @Override
+        public void skipValue() throws IOException {
+            int depth = 0;
+            do {
+                if( this.pos >= this.end )
+                    return;
+                switch( this.bytes.get( this.pos++ ) ) {
+                case TAG_BEGIN_OBJECT:
+                case TAG_BEGIN_ARRAY:
+                    ++depth;
+                    break;
+                case TAG_END_OBJECT:
+                case TAG_END_ARRAY:
+                    --depth;
+                    break;
+                case TAG_NAME:
+                case TAG_STRING:
+                case TAG_NUMBER:
+                    this.index();
+                    break;
+                }
+            } while( depth > 0 );
+        }
+        
+        @Override
+        public String getPath() {
+            return "$";
+        }
+        
+        @Override
+        public void close() {
+            this.pos = this.end;
+        }
+        
+        @Override
+        public String toString() {
+            return this.getClass().getSimpleName() + this.location();
+        }
+        
+        /**
+         * Reads a number, or a string holding one (as JsonReader does).
+         */
+        private String nextNumber() throws IOException {
+            byte tag = this.pos < this.end ? this.bytes.get( this.pos ) : 0;
+            if( tag != TAG_NUMBER && tag != TAG_STRING )
+                throw this.unexpected( JsonToken.NUMBER );
+            ++this.pos;
+            return this.string();
+        }
+        
+        private void expect( final byte tag, final JsonToken token ) throws IOException {
+            if( this.pos >= this.end || this.bytes.get( this.pos ) != tag )
+                throw this.unexpected( token );
+        }
+        
+        private IllegalStateException unexpected( final JsonToken expected ) throws IOException {
+            return new IllegalStateException( "Expected " + expected + " but was " + this.peek() + this.location() );
+        }
+        
+        private String location() {
+            return " at token offset " + this.pos;
+        }
+        
+        /**
+         * Reads a varint string index and returns the string it refers to, decoding it if this is the first time it's been read.
+         */
+        private String string() {
+            int index = this.index();
+            String s = this.strings[ index ];
+            if( s == null ) {
+                int at = this.stringsStart + this.bytes.getInt( this.offsetsStart + 4 * index );
+                byte[] utf8 = new byte[ this.bytes.getInt( at ) ];
+                ( (ByteBuffer)this.bytes.duplicate().position( at + 4 ) ).get( utf8 );
+                s = new String( utf8, StandardCharsets.UTF_8 );
+                this.strings[ index ] = s;
+            }
+            return s;
+        }
+        
+        /**
+         * Reads an unsigned LEB128 varint.
+         */
+        private int index() {
+            int  index = 0;
+            int  shift = 0;
+            byte b;
+            do {
+                b = this.bytes.get( this.pos++ );
+                index |= ( b & 0x7F ) << shift;
+                shift += 7;
+            } while( ( b & 0x80 ) != 0 );
+            return index;
+        }
+        
+        /**
+         * Checks that the token stream holds a single well-formed value and that every string index (and the string it refers to) is in bounds.
+         * Leaves the reader where it was.
+         * @throws IOException If it doesn't.
+         */
+        private void check() throws IOException {
+            int       start   = this.pos;
+            boolean[] objects = new boolean[ 16 ];
+            boolean[] checked = new boolean[ this.count ];
+            int       depth   = 0;
+            boolean   name    = false;
+            try {
+                do {
+                    if( this.pos >= this.end )
+                        throw new IOException( "Unexpected end of binary JSON document." );
+                    byte tag = this.bytes.get( this.pos++ );
+                    
+                    //Inside an object, values are preceded by names
+                    if( name ) {
+                        if( tag == TAG_END_OBJECT ) {
+                            --depth;
+                            name = depth > 0 && objects[ depth - 1 ];
+                        } else if( tag == TAG_NAME ) {
+                            this.checkString( checked );
+                            name = false;
+                        } else {
+                            throw new IOException( "Expected a name in binary JSON object." );
+                        }
+                        continue;
+                    }
+                    
+                    switch( tag ) {
+                    case TAG_BEGIN_OBJECT:
+                    case TAG_BEGIN_ARRAY:
+                        if( depth == objects.length )
+                            objects = Arrays.copyOf( objects, 2 * depth );
+                        objects[ depth++ ] = tag == TAG_BEGIN_OBJECT;
+                        name = tag == TAG_BEGIN_OBJECT;
+                        continue;
+                    case TAG_END_ARRAY:
+                        if( depth == 0 || objects[ depth - 1 ] )
+                            throw new IOException( "Unexpected end of array in binary JSON document." );
+                        --depth;
+                        break;
+                    case TAG_STRING:
+                    case TAG_NUMBER:
+                        this.checkString( checked );
+                        break;
+                    case TAG_TRUE:
+                    case TAG_FALSE:
+                    case TAG_NULL:
+                        break;
+                    default:
+                        throw new IOException( String.format( "Unexpected tag %d in binary JSON document.", tag ) );
+                    }
+                    name = depth > 0 && objects[ depth - 1 ];
+                } while( depth > 0 );
+            } catch( IndexOutOfBoundsException e ) {
+                throw new IOException( "Binary JSON document is truncated." );
+            }
+            if( this.pos != this.end )
+                throw new IOException( "Trailing data after binary JSON document." );
+            this.pos = start;
+        }
+        
+        /**
+         * Reads a varint string index and checks that it, and the string it refers to, are in bounds.
+         */
+        private void checkString( final boolean[] checked ) throws IOException {
+            if( this.pos >= this.end )
+                throw new IOException( "Unexpected end of binary JSON document." );
+            int index = this.index();
+            if( index < 0 || index >= this.count )
+                throw new IOException( "String index out of bounds in binary JSON document." );
+            if( checked[ index ] )
+                return;
+            
+            int offset = this.bytes.getInt( this.offsetsStart + 4 * index );
+            int at     = this.stringsStart + offset;
+            if( offset < 0 || at + 4 > this.end || at + 4 + this.bytes.getInt( at ) > this.end || this.bytes.getInt( at ) < 0 )
+                throw new IOException( "String out of bounds in binary JSON document." );
+            checked[ index ] = true;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package net.theJ89.json;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Helpers shared by the hand-written streaming type adapters (e.g. CompleteMinecraftVersion.Adapter).
+ * These read and write values the same way Gson's built-in adapters and LowerCaseEnumTypeAdapterFactory do,
+ * so the adapters produce the same objects and JSON the reflective adapters did.
+ */
+public class JsonIO {
+    private JsonIO() {
+        throw new Error();
+    }
+    
+    /**
+     * If the next value is null, consumes it and returns true.
+     * Otherwise leaves the reader untouched and returns false.
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    public static boolean skipNull( final JsonReader in ) throws IOException {
+        if( in.peek() != JsonToken.NULL )
+            return false;
+        in.nextNull();
+        return true;
+    }
+    
+    /**
+     * Reads a URL string. Like Gson's URL adapter, the string "null" is read as a null URL.
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    public static URL nextURL( final JsonReader in ) throws IOException {
+        String url = in.nextString();
+        return "null".equals( url ) ? null : new URL( url );
+    }
+    
+    /**
+     * Reads an enum constant from its lower-case name (e.g. "old_beta" for OLD_BETA).
+     * Returns null if the name doesn't match any of the enum's constants.
+     * @param in
+     * @param type
+     * @return
+     * @throws IOException
+     */
+    public static < T extends Enum< T > > T nextEnum( final JsonReader in, final Class< T > type ) throws IOException {
+        return toEnum( in.nextString(), type );
+    }
+    
+    /**
+     * Converts a lower-case name (e.g. "old_beta") to the enum constant it names (e.g. OLD_BETA).
+     * Returns null if the name doesn't match any of the enum's constants.
+     * @param name
+     * @param type
+     * @return
+     */
+    public static < T extends Enum< T > > T toEnum( final String name, final Class< T > type ) {
+        try                                 { return Enum.valueOf( type, name.toUpperCase( Locale.US ) ); }
+        catch( IllegalArgumentException e ) { return null;                                                }
+    }
+    
+    /**
+     * Returns the lower-case name of the given enum constant, or null if it's null.
+     * @param value
+     * @return
+     */
+    public static String fromEnum( final Enum< ? > value ) {
+        return value != null ? value.toString().toLowerCase( Locale.US ) : null;
+    }
+    
+    /**
+     * Reads an array of strings.
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    public static List< String > nextStringList( final JsonReader in ) throws IOException {
+        List< String > list = new ArrayList< String >();
+        in.beginArray();
+        while( in.hasNext() )
+            list.add( skipNull( in ) ? null : in.nextString() );
+        in.endArray();
+        return list;
+    }
+    
+    /**
+     * Writes an array of strings, or null if the list is null.
+     * @param out
+     * @param list
+     * @throws IOException
+     */
+    public static void writeStringList( final JsonWriter out, final List< String > list ) throws IOException {
+        if( list == null ) {
+            out.nullValue();
+            return;
+        }
+        out.beginArray();
+        for( String s : list )
+            out.value( s );
+        out.endArray();
+    }
+}
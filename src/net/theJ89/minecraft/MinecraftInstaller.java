@@ -2,16 +2,19 @@ package net.theJ89.minecraft;
 
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.io.Writer;
 import java.net.URI;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.sql.SQLException;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Date;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.jar.JarEntry;
@@ -30,9 +33,18 @@ import net.minecraft.launcher.updater.CompleteMinecraftVersion;
 import net.minecraft.launcher.updater.DownloadType;
 import net.minecraft.launcher.updater.Executable;
 import net.minecraft.launcher.updater.Library;
+import net.theJ89.http.Download;
+import net.theJ89.http.Downloader;
 import net.theJ89.http.HTTP;
-import net.theJ89.http.HTTPResponse;
+import net.theJ89.install.InstallPlan;
+import net.theJ89.install.InstallTask;
+import net.theJ89.install.InstallTask.Kind;
+import net.theJ89.json.BinaryJson;
+import net.theJ89.mmm.AssetManager;
+import net.theJ89.mmm.LibraryManager;
+import net.theJ89.mmm.MMM;
 import net.theJ89.mmm.Side;
+import net.theJ89.mmm.VerifiedFiles;
 import net.theJ89.util.IO;
 import net.theJ89.util.Misc;
 import net.theJ89.util.Platform;
@@ -43,12 +55,15 @@ public class MinecraftInstaller {
     private static final URI               MINECRAFT_EULA_URL           = HTTP.stringToURI( "https://account.mojang.com/documents/minecraft_eula" );
     private static final String            MINECRAFT_EULA_FILENAME      = "eula.txt";
     private static final Date              MINECRAFT_1_7_10_RELEASETIME = new Date( 1400088563000L );
+    private static final String            LIBRARY_OWNER                = "minecraft";
     private static final DateTimeFormatter FMT                          = DateTimeFormatter.ofPattern( "EEE MMMM d HH:mm:ss zzz yyyy" ); //Thu May 26 15:48:28 CDT 2016
     
     private static final Gson gson;
     static {
         GsonBuilder gb = new GsonBuilder();
-        gb.registerTypeAdapter( Date.class, new DateTypeAdapter() );
+        gb.registerTypeAdapter( Date.class,                     new DateTypeAdapter()                  );
+        gb.registerTypeAdapter( CompleteMinecraftVersion.class, new CompleteMinecraftVersion.Adapter() );
+        gb.registerTypeAdapter( AssetIndex.class,               new AssetIndex.Adapter()               );
         gb.registerTypeAdapterFactory( new LowerCaseEnumTypeAdapterFactory() );
         gb.setPrettyPrinting();
         //Needed because we're serializing enum maps, which have non-primitive keys.
@@ -59,9 +74,10 @@ public class MinecraftInstaller {
         gson = gb.create();
     }
     
-    private Path   directory;
-    private String name;
-    private Side   side;
+    private Path       directory;
+    private String     name;
+    private Side       side;
+    private Downloader downloader;
     
     
     /**
@@ -72,137 +88,351 @@ public class MinecraftInstaller {
      * @throws IOException
      */
     public MinecraftInstaller( final Path directory, final String name, final Side side ) {
-        this.directory = directory;
-        this.name      = name;
-        this.side      = side;
+        this.directory  = directory;
+        this.name       = name;
+        this.side       = side;
+        this.downloader = null;
+    }
+    
+    /**
+     * Sets the downloader used to download the client / server executable, assets, and libraries.
+     * If this isn't set (or is set to null), install() creates a downloader with default settings for the duration of the install.
+     * @param downloader - The downloader to use.
+     */
+    public void setDownloader( final Downloader downloader ) {
+        this.downloader = downloader;
+    }
+    
+    public Downloader getDownloader() {
+        return this.downloader;
     }
     
     public void install() throws IOException {
+        Downloader downloader = this.downloader;
+        if( downloader != null ) {
+            this.install( downloader );
+            return;
+        }
+        
+        try( Downloader defaultDownloader = new Downloader() ) {
+            this.install( defaultDownloader );
+        }
+    }
+    
+    private void install( final Downloader downloader ) throws IOException {
+        this.plan().execute( downloader );
+        
+        //Minecraft 1.7.10 servers and above require agreement to a EULA before they can be used
+        if( this.side == Side.SERVER )
+            this.eula();
+    }
+    
+    /**
+     * Works out everything that needs to be done to install this version of Minecraft, without doing any of it.
+     * The returned plan can be summarized (e.g. for a dry run) or executed; see {@link InstallPlan}.
+     * @return
+     * @throws IOException
+     */
+    public InstallPlan plan() throws IOException {
+        InstallPlan plan = new InstallPlan();
+        this.plan( plan );
+        return plan;
+    }
+    
+    /**
+     * Adds the tasks needed to install this version of Minecraft to the given plan.
+     * @param plan
+     * @throws IOException
+     */
+    public void plan( final InstallPlan plan ) throws IOException {
         Path                     directory = this.directory;
         
         String                   name      = this.name;
         CompleteMinecraftVersion version   = MinecraftVersions.get( name );
         
-        String                   assetName = version.getAssets();
-        AssetIndex               assets    = MinecraftVersions.getAssetIndex( assetName );
-        
         Side                     side      = this.side;
         Target                   target    = Platform.getTarget();
         
         Map< DownloadType, Executable > downloads = version.getDownloads();
         if( side == Side.CLIENT ) {
-            //Create versions/ directory
-            Path versionDir = directory.resolve( MinecraftConstants.VERSIONS_DIRECTORY ).resolve( name );
-            Files.createDirectories( versionDir );
+            String     assetName = version.getAssets();
+            AssetIndex assets    = MinecraftVersions.getAssetIndex( assetName );
             
-            //Download client executable
-            Executable dl = downloads.get( DownloadType.CLIENT );
-            download( dl.getURL(), versionDir.resolve( name + ".jar" ), dl.getSha1() );
+            //Client executable
+            Path       versionDir = directory.resolve( MinecraftConstants.VERSIONS_DIRECTORY ).resolve( name );
+            Executable dl         = downloads.get( DownloadType.CLIENT );
+            plan.add( InstallTask.fetch( new Download( dl.getURL(), this.getClientJarPath(), dl.getSha1() ), dl.getSize() ) );
             
-            //Create version info file
+            //Version info file
             Path versionInfoPath = versionDir.resolve( name + ".json" );
-            System.out.println( "Creating version info file at \"" + versionInfoPath + "\"..." );
+            plan.add( InstallTask.create( Kind.WRITE, "version info file", versionInfoPath, () -> writeJSON( "version info file", version, versionInfoPath ) ) );
             
-            try( Writer writer = IO.newBufferedU8FileWriter( versionInfoPath ) ) {
-                gson.toJson( version, writer );
-            }
+            //Asset index file
+            Path assetsDir      = directory.resolve( MinecraftConstants.ASSETS_DIRECTORY );
+            Path assetIndexPath = assetsDir.resolve( MinecraftConstants.ASSETS_INDICES_DIRECTORY ).resolve( assetName + ".json" );
+            plan.add( InstallTask.create( Kind.WRITE, "asset index file", assetIndexPath, () -> writeJSON( "asset index file", assets, assetIndexPath ) ) );
             
-            //Create assets/ directories
-            Path assetsDir     = directory.resolve( MinecraftConstants.ASSETS_DIRECTORY );
-            Path assetsIndices = assetsDir.resolve( MinecraftConstants.ASSETS_INDICES_DIRECTORY );
-            Files.createDirectories( assetsIndices );
-            Path assetsObjects = assetsDir.resolve( MinecraftConstants.ASSETS_OBJECTS_DIRECTORY );
-            Files.createDirectories( assetsObjects );
+            //Assets objects directory.
+            //Unless we're running in portable mode, asset objects are kept in a store shared by every instance (see AssetManager),
+            //and this instance's objects directory is a link to the store if possible.
+            boolean     sharedAssets  = !MMM.isPortable();
+            Path        assetsObjects = assetsDir.resolve( MinecraftConstants.ASSETS_OBJECTS_DIRECTORY );
+            InstallTask objectsDir    = plan.add( InstallTask.create( Kind.WRITE, "assets objects directory", assetsObjects, () -> {
+                if( !sharedAssets || !AssetManager.linkObjects( assetsObjects ) )
+                    Files.createDirectories( assetsObjects );
+            } ) );
             
-            //Create asset index file
-            Path assetIndexPath = assetsIndices.resolve( assetName + ".json" );
-            System.out.println( "Creating asset index file at \"" + assetIndexPath + "\"..." );
-            try( Writer writer = IO.newBufferedU8FileWriter( assetIndexPath ) ) {
-                gson.toJson( assets, writer );
-            }
-            
-            //Download assets
-            boolean virtual = assets.isVirtual();
-            if( virtual ) {
-                //Create assets/virtual/ directory
-                Path assetsVirtual = assetsDir.resolve( MinecraftConstants.ASSETS_VIRTUAL_DIRECTORY );
-                Files.createDirectories( assetsVirtual );
+            //Assets.
+            //Virtual assets are placed according to their original paths, others are placed in the objects directory according to their hashes.
+            //When using the shared store, objects are downloaded to the store (if it doesn't have them already) and then linked to wherever
+            //this instance expects to find them. If the instance's objects directory is a link to the store, there's nothing left to link.
+            boolean virtual       = assets.isVirtual();
+            Path    assetsVirtual = assetsDir.resolve( MinecraftConstants.ASSETS_VIRTUAL_DIRECTORY );
+            for( Entry< String, AssetObject > entry : assets.getObjects().entrySet() ) {
+                AssetObject asset        = entry.getValue();
+                String      path         = asset.getPath();
+                URL         url          = new URL( BASE_ASSETS_URL + path );
+                Path        instancePath = virtual ? assetsVirtual.resolve( entry.getKey() ) : assetsObjects.resolve( path );
                 
-                //Download assets to the virtual directory according to their original paths
-                for( Entry< String, AssetObject> entry : assets.getObjects().entrySet() ) {
-                    AssetObject asset = entry.getValue();
-                    String path = asset.getPath();
-                    
-                    download( new URL( BASE_ASSETS_URL + path ), assetsVirtual.resolve( entry.getKey() ) , asset.getHash() );
-                }
-            } else {
-                //Download assets to the objects directory according to their hashes
-                for( Entry< String, AssetObject> entry : assets.getObjects().entrySet() ) {
-                    AssetObject asset = entry.getValue();
-                    String path = asset.getPath();
-                    
-                    download( new URL( BASE_ASSETS_URL + path ), assetsObjects.resolve( path ), asset.getHash() );
+                if( sharedAssets ) {
+                    InstallTask fetch = plan.add( InstallTask.fetch( new Download( url, AssetManager.getObjectPath( asset ), asset.getHash() ), asset.getSize() ) );
+                    plan.add( InstallTask.create( Kind.WRITE, entry.getKey(), instancePath, () -> AssetManager.linkObject( asset, instancePath ) ) ).dependsOn( fetch, objectsDir );
+                } else {
+                    plan.add( InstallTask.fetch( new Download( url, instancePath, asset.getHash() ), asset.getSize() ) ).dependsOn( objectsDir );
                 }
             }
             
-            //Download libraries
-            Path librariesDir = directory.resolve( MinecraftConstants.LIBRARIES_DIRECTORY );
-            Path nativesDir   = directory.resolve( MinecraftConstants.NATIVES_DIRECTORY );
-            
+            //Libraries.
+            //Unless we're running in portable mode, libraries are downloaded to a repository shared by every instance
+            //and then linked into this instance (see LibraryManager).
+            boolean     sharedLibraries = !MMM.isPortable();
+            Path        librariesDir    = directory.resolve( MinecraftConstants.LIBRARIES_DIRECTORY );
+            Path        nativesDir      = directory.resolve( MinecraftConstants.NATIVES_DIRECTORY );
+            InstallTask lastExtract     = null;
             for( Library library : version.getLibraries() ) {
                 Artifact artifact = library.getArtifact( target );
                 if( artifact == null )
                     continue;
                 
-                Path libPath = librariesDir.resolve( artifact.getPath() );
-                download( artifact.getURL(), libPath, artifact.getSha1() );
+                Path        libraryPath = librariesDir.resolve( artifact.getPath() );
+                InstallTask available;
+                if( sharedLibraries ) {
+                    Path        sharedPath = LibraryManager.getPath( artifact.getPath() );
+                    InstallTask prepare    = plan.add( InstallTask.create( Kind.WRITE, "shared library " + artifact.getPath(), sharedPath, () -> prepareLibrary( artifact ) ) );
+                    InstallTask fetch      = plan.add( InstallTask.fetch( new Download( artifact.getURL(), sharedPath, artifact.getSha1() ), artifact.getSize() ) ).dependsOn( prepare );
+                    available = plan.add( InstallTask.create( Kind.WRITE, artifact.getPath(), libraryPath, () -> linkLibrary( directory, artifact ) ) ).dependsOn( fetch );
+                } else {
+                    available = plan.add( InstallTask.fetch( new Download( artifact.getURL(), libraryPath, artifact.getSha1() ), artifact.getSize() ) );
+                }
                 
-                //Extract the library if it contains natives
-                if( library.isNative() )
-                    extract( libPath, nativesDir, library.getExtract() );
+                //Extract libraries that contain natives once we have them.
+                //Natives are extracted one library at a time, since several libraries may extract to the same directory.
+                if( library.isNative() ) {
+                    InstallTask extract = plan.add( InstallTask.create( Kind.EXTRACT, "natives from " + artifact.getPath(), libraryPath, () -> this.extract( libraryPath, nativesDir, library.getExtract() ) ) );
+                    lastExtract = extract.dependsOn( available, lastExtract );
+                }
             }
         } else if( side == Side.SERVER ) {
-            //Download server executable
+            //Server executable
             Executable dl = downloads.get( DownloadType.SERVER );
-            download( dl.getURL(), directory.resolve( "minecraft_server." + name + ".jar" ), dl.getSha1() );
-            
-            //Minecraft 1.7.10 servers and above require agreement to a EULA before they can be used
-            if( version.getReleaseTime().before( MINECRAFT_1_7_10_RELEASETIME ) )
-                return;
+            plan.add( InstallTask.fetch( new Download( dl.getURL(), directory.resolve( "minecraft_server." + name + ".jar" ), dl.getSha1() ), dl.getSize() ) );
+        }
+    }
+    
+    /**
+     * Returns the path the client executable is installed to.
+     * @return
+     */
+    public Path getClientJarPath() {
+        return this.directory.resolve( MinecraftConstants.VERSIONS_DIRECTORY ).resolve( this.name ).resolve( this.name + ".jar" );
+    }
+    
+    /**
+     * Generates a signed eula.txt if the server needs one and the user agrees to the EULA.
+     * install() calls this once the install plan has been executed; anyone executing the plan themselves should do the same.
+     * @throws IOException
+     */
+    public void eula() throws IOException {
+        //Minecraft 1.7.10 servers and above require agreement to a EULA before they can be used
+        if( MinecraftVersions.get( this.name ).getReleaseTime().before( MINECRAFT_1_7_10_RELEASETIME ) )
+            return;
+        
+        //If eula.txt doesn't exist, ask user if they want to generate a signed eula.txt.
+        Path eulaPath = this.directory.resolve( MINECRAFT_EULA_FILENAME );
+        if( Files.exists( eulaPath ) || !this.eulaPrompt() )
+            return;
+        
+        System.out.println( "Generating signed \"" + MINECRAFT_EULA_FILENAME + "\"..." );
+        try( Writer out = IO.newBufferedU8FileWriter( eulaPath ) ) {
+            out.write(
+                "#By changing the setting below to TRUE you are indicating your agreement to our EULA ("+ MINECRAFT_EULA_URL + ").\n" +
+                "#" + ZonedDateTime.now().format( FMT ) + "\n" +
+                "eula=true\n"
+            );
+        }
+    }
+    
+    /**
+     * Serializes the given object to a JSON file at the given path, creating any missing directories along the way.
+     * @param description - Describes the file, for progress messages.
+     * @param obj
+     * @param path
+     * @throws IOException
+     */
+    private static void writeJSON( final String description, final Object obj, final Path path ) throws IOException {
+        System.out.println( "Creating " + description + " at \"" + path + "\"..." );
+        Files.createDirectories( path.getParent() );
+        try( Writer writer = IO.newBufferedU8FileWriter( path ) ) {
+            gson.toJson( obj, writer );
+        }
+        BinaryJson.deleteSnapshot( path );
+    }
+    
+    /**
+     * Uninstalls Minecraft from this instance.
+     * For now this only releases the instance's references to Minecraft's libraries in the shared repository (see {@link LibraryManager#release(Path, String)}),
+     * which removes any of them that no other instance is using. The files in the instance itself are left in place.
+     * @throws IOException
+     */
+    public void uninstall() throws IOException {
+        if( MMM.isPortable() )
+            return;
+        try {
+            LibraryManager.release( this.directory, LIBRARY_OWNER );
+        } catch( SQLException e ) {
+            throw new RuntimeException( e );
+        }
+    }
+    
+    /**
+     * Checks the integrity of this installation.
+     * Every file we would have downloaded during install() is checked against its expected SHA-1 hash.
+     * Thanks to VerifiedFiles, only files that have changed since they were last checked are actually read.
+     *
+     * Files that are missing or fail the check are deleted, so that the next call to install() downloads them again.
+     * Libraries and asset objects linked from the shared stores (see LibraryManager and AssetManager) are removed from the stores as well;
+     * otherwise the next install would simply link the same corrupt copy back into place.
+     * The binary snapshots of the version info and asset index files are deleted too.
+     *
+     * @return The paths of the files that were missing or failed the check.
+     * @throws IOException
+     */
+    public List< Path > verify() throws IOException {
+        Map< Path, String >      sharedLibraries = new HashMap< Path, String >();
+        Map< Path, AssetObject > sharedAssets    = new HashMap< Path, AssetObject >();
+        Map< Path, String >      files           = this.getFiles( sharedLibraries, sharedAssets );
+        
+        System.out.println( "Verifying " + files.size() + " files in \"" + this.directory + "\"..." );
+        List< Path > failed;
+        try {
+            failed = VerifiedFiles.verify( files );
+            for( Path path : failed ) {
+                System.out.println( "* \"" + path + "\" is missing or corrupt." );
+                Files.deleteIfExists( path );
+                VerifiedFiles.forget( path );
+                
+                String      libraryPath = sharedLibraries.get( path );
+                AssetObject asset       = sharedAssets.get( path );
+                if( libraryPath != null ) { LibraryManager.evict( libraryPath ); }
+                else if( asset != null )  { AssetManager.evict( asset );         }
+            }
+        } catch( SQLException e ) {
+            throw new RuntimeException( e );
+        }
+        
+        //The binary snapshots of the version info and asset index files (see BinaryJson) are only caches.
+        //Drop them, so the next load compiles them from the files themselves.
+        if( this.side == Side.CLIENT ) {
+            Path versionsDir = this.directory.resolve( MinecraftConstants.VERSIONS_DIRECTORY );
+            Path indicesDir  = this.directory.resolve( MinecraftConstants.ASSETS_DIRECTORY ).resolve( MinecraftConstants.ASSETS_INDICES_DIRECTORY );
+            BinaryJson.deleteSnapshot( MinecraftVersions.getVersionInfo( versionsDir, this.name ) );
+            BinaryJson.deleteSnapshot( indicesDir.resolve( MinecraftVersions.get( this.name ).getAssets() + ".json" ) );
+        }
+        return failed;
+    }
+    
+    /**
+     * Returns the path of every file this installation downloads, mapped to its expected SHA-1 hash.
+     * Unless we're running in portable mode, libraries and asset objects are linked from the shared stores;
+     * the paths of these are also added to the given maps, along with the library path or asset object they're linked from.
+     * @param sharedLibraries
+     * @param sharedAssets
+     * @return
+     * @throws IOException
+     */
+    private Map< Path, String > getFiles( final Map< Path, String > sharedLibraries, final Map< Path, AssetObject > sharedAssets ) throws IOException {
+        Path                     directory = this.directory;
+        String                   name      = this.name;
+        CompleteMinecraftVersion version   = MinecraftVersions.get( name );
+        Map< DownloadType, Executable > downloads = version.getDownloads();
+        
+        Map< Path, String > files = new LinkedHashMap< Path, String >();
+        if( this.side == Side.CLIENT ) {
+            //Client executable
+            Path versionDir = directory.resolve( MinecraftConstants.VERSIONS_DIRECTORY ).resolve( name );
+            files.put( versionDir.resolve( name + ".jar" ), downloads.get( DownloadType.CLIENT ).getSha1() );
             
-            //If eula.txt doesn't exist, ask user if they want to generate a signed eula.txt.
-            Path eulaPath = directory.resolve( MINECRAFT_EULA_FILENAME );
-            if( Files.exists( eulaPath ) || !this.eulaPrompt() )
-                return;
+            //Assets
+            AssetIndex assets    = MinecraftVersions.getAssetIndex( version.getAssets() );
+            Path       assetsDir = directory.resolve( MinecraftConstants.ASSETS_DIRECTORY );
+            Path       assetsSub = assetsDir.resolve( assets.isVirtual() ? MinecraftConstants.ASSETS_VIRTUAL_DIRECTORY : MinecraftConstants.ASSETS_OBJECTS_DIRECTORY );
+            for( Entry< String, AssetObject > entry : assets.getObjects().entrySet() ) {
+                AssetObject asset = entry.getValue();
+                Path        path  = assetsSub.resolve( assets.isVirtual() ? entry.getKey() : asset.getPath() );
+                files.put( path, asset.getHash() );
+                if( !MMM.isPortable() )
+                    sharedAssets.put( path, asset );
+            }
             
-            System.out.println( "Generating signed \"" + MINECRAFT_EULA_FILENAME + "\"..." );
-            try( Writer out = IO.newBufferedU8FileWriter( eulaPath ) ) {
-                out.write(
-                    "#By changing the setting below to TRUE you are indicating your agreement to our EULA ("+ MINECRAFT_EULA_URL + ").\n" +
-                    "#" + ZonedDateTime.now().format( FMT ) + "\n" +
-                    "eula=true\n"
-                );
+            //Libraries
+            Path   librariesDir = directory.resolve( MinecraftConstants.LIBRARIES_DIRECTORY );
+            Target target       = Platform.getTarget();
+            for( Library library : version.getLibraries() ) {
+                Artifact artifact = library.getArtifact( target );
+                if( artifact == null )
+                    continue;
+                Path path = librariesDir.resolve( artifact.getPath() );
+                files.put( path, artifact.getSha1() );
+                if( !MMM.isPortable() )
+                    sharedLibraries.put( path, artifact.getPath() );
             }
+        } else if( this.side == Side.SERVER ) {
+            //Server executable
+            files.put( directory.resolve( "minecraft_server." + name + ".jar" ), downloads.get( DownloadType.SERVER ).getSha1() );
+        }
+        return files;
+    }
+    
+    /**
+     * Prepares the shared library repository for the given library and returns the path it should be downloaded to.
+     * @param artifact
+     * @return
+     * @throws IOException
+     */
+    private static Path prepareLibrary( final Artifact artifact ) throws IOException {
+        try {
+            return LibraryManager.prepare( artifact.getPath(), artifact.getSha1() );
+        } catch( SQLException e ) {
+            throw new RuntimeException( e );
         }
     }
     
-    public void uninstall() {
-        //TODO
+    /**
+     * Links the given library from the shared library repository into the instance at the given directory.
+     * @param directory
+     * @param artifact
+     * @throws IOException
+     */
+    private static void linkLibrary( final Path directory, final Artifact artifact ) throws IOException {
+        try {
+            LibraryManager.link( directory, LIBRARY_OWNER, artifact.getPath(), artifact.getSha1() );
+        } catch( SQLException e ) {
+            throw new RuntimeException( e );
+        }
     }
     
     public void download( final URL url, final Path path, final String sha1 ) throws IOException {
-        if( Files.exists( path ) )
-            return;
-        System.out.println( "Downloading " + url + " to " + path + ":" );
-        Files.createDirectories( path.getParent() );
-        try(
-            HTTPResponse res = HTTP.get( url );
-            OutputStream out = IO.newBufferedFileOutputStream( path )
-        ) {
-            if( !res.ok() )
-                throw new RuntimeException( "Error downloading \"" + url + "\"." );
-            IO.copy_SHA1( res.getInputStream(), out, sha1 );
-        }
+        new Download( url, path, sha1 ).run();
     }
     
     public void extract( Path jar, Path dir, ExtractRules rules ) throws IOException {
@@ -3,21 +3,25 @@ package net.theJ89.minecraft;
 import java.io.IOException;
 import java.io.Reader;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.time.Instant;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
 import com.mojang.launcher.updater.DateTypeAdapter;
 import com.mojang.launcher.updater.LowerCaseEnumTypeAdapterFactory;
 import com.mojang.launcher.updater.download.assets.AssetIndex;
@@ -25,40 +29,74 @@ import com.mojang.launcher.updater.download.assets.AssetIndex;
 import net.minecraft.launcher.game.MinecraftReleaseType;
 import net.minecraft.launcher.updater.CompleteMinecraftVersion;
 import net.minecraft.launcher.updater.PartialMinecraftVersion;
+import net.theJ89.database.SQLiteConnection;
 import net.theJ89.database.SQLiteDatabase;
+import net.theJ89.database.SQLiteProfile;
 import net.theJ89.http.HTTP;
+import net.theJ89.http.HTTPRequest;
+import net.theJ89.http.HTTPResponse;
+import net.theJ89.json.BinaryJson;
 import net.theJ89.mmm.MMM;
 import net.theJ89.util.IO;
+import net.theJ89.util.LoadingCache;
+import net.theJ89.util.Misc;
 
 public class MinecraftVersions {
     private static final URL    VERSION_MANIFEST_URL = HTTP.stringToURL( "https://launchermeta.mojang.com/mc/game/version_manifest.json" );
     private static final String DATABASE_FILENAME    = "minecraft.db";
     
+    //Maximum number of rows changed in a single batch
+    private static final int    BATCH_SIZE           = 500;
+    
+    //HTTP status code the server responds with if the manifest hasn't changed since we last fetched it
+    private static final int    HTTP_NOT_MODIFIED    = 304;
+    
+    //By default, the manifest is always checked for changes when update() is called
+    public static final long    DEFAULT_MAX_AGE      = 0;
+    
     private static final Gson gson;
     static {
         GsonBuilder gb = new GsonBuilder();
-        gb.registerTypeAdapter( Date.class, new DateTypeAdapter() );
+        gb.registerTypeAdapter( Date.class,                     new DateTypeAdapter()                  );
+        gb.registerTypeAdapter( CompleteMinecraftVersion.class, new CompleteMinecraftVersion.Adapter() );
+        gb.registerTypeAdapter( AssetIndex.class,               new AssetIndex.Adapter()               );
         gb.registerTypeAdapterFactory( new LowerCaseEnumTypeAdapterFactory() );
         
         gson = gb.create();
     }
 
     private static SQLiteDatabase    db;
-    private static PreparedStatement stmt_getMinecraftVersionID;
-    private static PreparedStatement stmt_getMinecraftVersionNames;
-    private static PreparedStatement stmt_getMinecraftVersion;
-    private static PreparedStatement stmt_addMinecraftVersion;
-    private static PreparedStatement stmt_updMinecraftVersion;
-    private static PreparedStatement stmt_delMinecraftVersion;
     
-    private static PreparedStatement stmt_getLatestVersions;
-    private static PreparedStatement stmt_getLatestVersion;
-    private static PreparedStatement stmt_addLatestVersion;
-    private static PreparedStatement stmt_updLatestVersion;
-    private static PreparedStatement stmt_delLatestVersion;
+    //In-memory copy of the versions and latest versions in db, replaced after each update
+    private static volatile MinecraftVersionsSnapshot snapshot;
+    
+    //How long (in seconds) update() trusts the last fetched manifest before checking it for changes again
+    private static long maxAge = DEFAULT_MAX_AGE;
+    
+    //Queries used with the connections leased from db (see SQLiteConnection.prepare())
+    private static final String SQL_ADD_MINECRAFT_VERSION = "INSERT INTO \"MinecraftVersion\" VALUES ( ?, ?, ?, ?, ?, ? )";
+    private static final String SQL_UPD_MINECRAFT_VERSION = "UPDATE \"MinecraftVersion\" SET \"type\" = ?, \"time\" = ?, \"releaseTime\" = ?, \"url\" = ? WHERE \"id\" = ?";
+    private static final String SQL_DEL_MINECRAFT_VERSION = "DELETE FROM \"MinecraftVersion\" WHERE \"id\" = ?";
+    
+    private static final String SQL_ADD_LATEST_VERSION    = "INSERT INTO \"LatestVersion\" VALUES ( ?, ? )";
+    private static final String SQL_UPD_LATEST_VERSION    = "UPDATE \"LatestVersion\" SET \"mc_id\" = ? WHERE \"type\" = ?";
+    private static final String SQL_DEL_LATEST_VERSION    = "DELETE FROM \"LatestVersion\" WHERE \"type\" = ?";
+    
+    private static final String SQL_GET_MANIFEST          = "SELECT \"etag\", \"lastModified\", \"sha1\", \"fetched\" FROM \"Manifest\" WHERE \"url\" = ?";
+    private static final String SQL_SET_MANIFEST          = "INSERT OR REPLACE INTO \"Manifest\" VALUES( ?, ?, ?, ?, ? )";
+    private static final String SQL_SET_MANIFEST_FETCHED  = "UPDATE \"Manifest\" SET \"fetched\" = ? WHERE \"url\" = ?";
+    
+    //Loaded version info and asset indices. Versions are weighed as 1 each, and asset indices by their number of objects.
+    //Both are reloaded if their .json file changes (see stamp()).
+    private static final long VERSION_CACHE_SIZE = 32;
+    private static final long ASSET_CACHE_WEIGHT = 32768;
     
-    private static final Map< String, CompleteMinecraftVersion > versions = new HashMap< String, CompleteMinecraftVersion >();
-    private static final Map< String, AssetIndex >               assets   = new HashMap< String, AssetIndex >();
+    private static final LoadingCache< String, CompleteMinecraftVersion > versions = new LoadingCache< String, CompleteMinecraftVersion >(
+        MinecraftVersions::load,           ( v ) -> 1,                         ( name ) -> stamp( getVersionInfoPath( name ) ), VERSION_CACHE_SIZE
+    );
+    private static final LoadingCache< String, AssetIndex >               assets   = new LoadingCache< String, AssetIndex >(
+        MinecraftVersions::loadAssetIndex, ( i ) -> Math.max( 1, i.size() ), ( name ) -> stamp( getAssetIndexPath( name ) ), ASSET_CACHE_WEIGHT
+    );
     
     
     private MinecraftVersions() {
@@ -69,29 +107,16 @@ public class MinecraftVersions {
         db = new SQLiteDatabase( MMM.getDirectory().resolve( DATABASE_FILENAME ) );
         
         createDatabaseTables();
-        createPreparedStatements();
+        snapshot = db.read( MinecraftVersionsSnapshot::load );
     }
     
     public static void close() {
-        IO.closeQuietly( stmt_getMinecraftVersionID );
-        IO.closeQuietly( stmt_getMinecraftVersionNames );
-        IO.closeQuietly( stmt_getMinecraftVersion );
-        IO.closeQuietly( stmt_addMinecraftVersion );
-        IO.closeQuietly( stmt_updMinecraftVersion );
-        IO.closeQuietly( stmt_delMinecraftVersion );
-        
-        IO.closeQuietly( stmt_getLatestVersions );
-        IO.closeQuietly( stmt_getLatestVersion );
-        IO.closeQuietly( stmt_addLatestVersion );
-        IO.closeQuietly( stmt_updLatestVersion );
-        IO.closeQuietly( stmt_delLatestVersion );
-        
         IO.closeQuietly( db );
     }
     
     private static void createDatabaseTables() throws SQLException {
-        db.performTransaction( () -> {
-            try( Statement stmt = db.createStatement() ) {
+        db.write( ( conn ) -> {
+            try( Statement stmt = conn.createStatement() ) {
                 stmt.executeUpdate(
                     "CREATE TABLE IF NOT EXISTS \"MinecraftVersion\"( " +
                     "    \"id\" INTEGER PRIMARY KEY AUTOINCREMENT, "    +
@@ -110,6 +135,16 @@ public class MinecraftVersions {
                     ") WITHOUT ROWID"
                 );
                 
+                stmt.executeUpdate(
+                    "CREATE TABLE IF NOT EXISTS \"Manifest\"( " +
+                    "    \"url\" TEXT PRIMARY KEY, "          +
+                    "    \"etag\" TEXT, "                     +
+                    "    \"lastModified\" TEXT, "             +
+                    "    \"sha1\" TEXT NOT NULL, "            +
+                    "    \"fetched\" BIGINT NOT NULL "        +
+                    ") WITHOUT ROWID"
+                );
+                
                 stmt.executeUpdate(
                     "CREATE VIEW IF NOT EXISTS \"NamedLatestVersion\" AS " +
                     "    SELECT \"mv\".\"name\", \"lv\".\"type\""          +
@@ -121,185 +156,322 @@ public class MinecraftVersions {
         } );
     }
     
-    private static void createPreparedStatements() throws SQLException {
-        stmt_getMinecraftVersionID    = db.createPreparedStatement( "SELECT \"id\" FROM \"MinecraftVersion\" WHERE \"name\" = ? LIMIT 1" );
-        stmt_getMinecraftVersionNames = db.createPreparedStatement( "SELECT \"id\", \"name\" FROM \"MinecraftVersion\"" );
-        stmt_getMinecraftVersion      = db.createPreparedStatement( "SELECT \"name\", \"type\", \"time\", \"releaseTime\", \"url\" FROM \"MinecraftVersion\" WHERE \"id\" = ? LIMIT 1" );
-        stmt_addMinecraftVersion      = db.createPreparedStatement( "INSERT INTO \"MinecraftVersion\" VALUES ( NULL, ?, ?, ?, ?, ? )" );
-        stmt_updMinecraftVersion      = db.createPreparedStatement( "UPDATE \"MinecraftVersion\" SET \"type\" = ?, \"time\" = ?, \"releaseTime\" = ?, \"url\" = ? WHERE \"id\" = ?" );
-        stmt_delMinecraftVersion      = db.createPreparedStatement( "DELETE FROM \"MinecraftVersion\" WHERE \"id\" = ?" );
-        
-        stmt_getLatestVersions        = db.createPreparedStatement( "SELECT \"name\", \"type\" FROM \"NamedLatestVersion\"" );
-        stmt_getLatestVersion         = db.createPreparedStatement( "SELECT \"name\" FROM \"NamedLatestVersion\" WHERE \"type\" = ? LIMIT 1" );
-        stmt_addLatestVersion         = db.createPreparedStatement( "INSERT INTO \"LatestVersion\" VALUES ( ?, ? )" );
-        stmt_updLatestVersion         = db.createPreparedStatement( "UPDATE \"LatestVersion\" SET \"mc_id\" = ? WHERE \"type\" = ?" );
-        stmt_delLatestVersion         = db.createPreparedStatement( "DELETE FROM \"LatestVersion\" WHERE \"type\" = ?" );
+    /**
+     * Sets how long (in seconds) update() trusts the last fetched manifest before checking it for changes again.
+     * @param seconds - Max age of the manifest, or 0 to check it every time.
+     */
+    public static void setMaxAge( final long seconds ) {
+        maxAge = seconds;
+    }
+    
+    /**
+     * Returns how long (in seconds) update() trusts the last fetched manifest before checking it for changes again.
+     * @return
+     */
+    public static long getMaxAge() {
+        return maxAge;
     }
     
+    /**
+     * Updates the local Minecraft Versions database from Mojang's version manifest, unless the manifest was fetched less than getMaxAge() seconds ago.
+     * @throws IOException
+     * @throws SQLException
+     */
     public static void update() throws IOException, SQLException {
-        //Fetch Minecraft versions manifest from Mojang
-        MinecraftVersionManifest mvm = HTTP.get( VERSION_MANIFEST_URL ).getObject( MinecraftVersionManifest.class );
+        update( maxAge );
+    }
+    
+    /**
+     * Updates the local Minecraft Versions database from Mojang's version manifest.
+     *
+     * The manifest's ETag, Last-Modified date and hash are recorded in the database along with the versions it lists.
+     * If the manifest was fetched less than maxAge seconds ago, we don't ask for it at all.
+     * Otherwise we ask the server to send it only if it's changed, and if it hasn't (or it's the same as last time), the database is left as it is.
+     *
+     * Everything that's already in the database is loaded up front with a single query (see {@link MinecraftVersionsSnapshot}),
+     * compared with the manifest in memory, and the differences are written back in batches.
+     * @param maxAge - Max age of the last fetched manifest, in seconds.
+     * @throws IOException
+     * @throws SQLException
+     */
+    public static void update( final long maxAge ) throws IOException, SQLException {
+        final String   url      = VERSION_MANIFEST_URL.toString();
+        final long     now      = Instant.now().getEpochSecond();
+        final Manifest previous = db.read( ( conn ) -> getManifest( conn, url ) );
+        if( previous != null && now - previous.fetched < maxAge ) {
+            System.out.println( "Minecraft versions manifest is up to date." );
+            return;
+        }
         
-        db.performTransaction( () -> {
-            //Build map of version name -> version id for all old versions
-            Map< String, Integer > old_ids = new HashMap< String, Integer >();
-            try( ResultSet rs = stmt_getMinecraftVersionNames.executeQuery() ) {
-                while( rs.next() )
-                    old_ids.put( rs.getString( 2 ), rs.getInt( 1 ) );
-            }
-            
-            //Build map of version name -> version for all new versions 
-            Map< String, PartialMinecraftVersion > new_versions = new HashMap< String, PartialMinecraftVersion >();
-            for( PartialMinecraftVersion mv : mvm.getVersions() )
-                new_versions.put( mv.getID(), mv );
-            
-            //Make a set of both new and old version names
-            Set< String > all_versions = new HashSet< String >( old_ids.keySet() );
-            all_versions.addAll( new_versions.keySet() );
-            
-            //Add, update, and remove Minecraft versions depending on which maps they appear in
-            for( String name : all_versions ) {
-                Integer old_id = old_ids.get( name );
-                PartialMinecraftVersion new_mv = new_versions.get( name );
+        //Fetch Minecraft versions manifest from Mojang, if it's changed since we last fetched it
+        HTTPRequest request = new HTTPRequest( VERSION_MANIFEST_URL );
+        if( previous != null ) {
+            if( previous.etag != null )
+                request.setHeader( "If-None-Match", previous.etag );
+            if( previous.lastModified != null )
+                request.setHeader( "If-Modified-Since", previous.lastModified );
+        }
+        
+        final Manifest                 manifest;
+        final MinecraftVersionManifest mvm;
+        try( HTTPResponse resp = request.get() ) {
+            if( resp.getStatus() == HTTP_NOT_MODIFIED && previous != null ) {
+                manifest = null;
+                mvm      = null;
+            } else if( !resp.ok() ) {
+                throw new IOException( String.format( "HTTP %d for URL \"%s\".", resp.getStatus(), url ) );
+            } else {
+                byte[] content = resp.getResponse();
+                MessageDigest digest = Misc.newSHA1();
+                digest.update( content );
+                manifest = new Manifest( resp.getHeader( "ETag" ), resp.getHeader( "Last-Modified" ), IO.toHex( digest ), now );
                 
-                if( old_id != null ) {
-                    if( new_mv != null ) {
-                        //Update the Minecraft version if it has changed
-                        PartialMinecraftVersion old_mv = getVersion( old_id );
-                        if( !Objects.equals( old_mv, new_mv ) ) {
-                            stmt_updMinecraftVersion.setInt( 1, new_mv.getType().getID() );
-                            stmt_updMinecraftVersion.setLong( 2, new_mv.getTime().getTime() / 1000 );
-                            stmt_updMinecraftVersion.setLong( 3, new_mv.getReleaseTime().getTime() / 1000 );
-                            stmt_updMinecraftVersion.setString( 4, new_mv.getUrl() );
-                            stmt_updMinecraftVersion.setInt( 5, old_id );
-                            if( stmt_updMinecraftVersion.executeUpdate() == 0 )
-                                throw new RuntimeException( "Failed to update Minecraft version." );
-                            System.out.println( String.format( "Minecraft %s was updated.", name ) );
-                            //TODO: Refresh this version and determine if anything has changed
-                        }
-                    //This version is no longer listed; delete it
-                    } else {
-                        stmt_delMinecraftVersion.setInt( 1, old_id );
-                        if( stmt_delMinecraftVersion.executeUpdate() == 0 )
-                            throw new RuntimeException( "Failed to delete Minecraft version." );
-                        System.out.println( String.format( "Minecraft %s was removed.", name ) );
-                    }
-                //Add new versions
-                } else if( new_mv != null ) {
-                    stmt_addMinecraftVersion.setString( 1, name );
-                    stmt_addMinecraftVersion.setInt( 2, new_mv.getType().getID() );
-                    stmt_addMinecraftVersion.setLong( 3, new_mv.getTime().getTime() / 1000 );
-                    stmt_addMinecraftVersion.setLong( 4, new_mv.getReleaseTime().getTime() / 1000 );
-                    stmt_addMinecraftVersion.setString( 5, new_mv.getUrl() );
-                    if( stmt_addMinecraftVersion.executeUpdate() == 0 )
-                        throw new RuntimeException( "Failed to add new Minecraft version." );
-                    System.out.println( String.format( "Minecraft %s was added.", name ) );
-                }
+                //The server may send us the manifest even if it's the same as it was last time; there's no need to look at it in that case
+                mvm = previous != null && Objects.equals( previous.sha1, manifest.sha1 )
+                    ? null
+                    : gson.fromJson( new String( content, StandardCharsets.UTF_8 ), MinecraftVersionManifest.class );
             }
-            
-            //Get last known latest versions
-            MinecraftLatestVersions old_mlv = getLatestVersions();
-            MinecraftLatestVersions new_mlv = mvm.getLatestVersions();
-            
-            //Update latest versions if necessary
-            if( Objects.equals( old_mlv, new_mlv ) )
-                return;
-            for( MinecraftReleaseType type : MinecraftReleaseType.values() ) {
-                String oldName = old_mlv.get( type );
-                String newName = new_mlv.get( type );
-                
-                //Find the ID of the Minecraft new Minecraft version with this name
-                if( oldName != null ) {
-                    if( newName != null ) {
-                        //Update a latest version
-                        if( !Objects.equals( oldName, newName ) ) {
-                            stmt_updLatestVersion.setInt( 1, getVersionID( newName ) );
-                            stmt_updLatestVersion.setInt( 2, type.getID() );
-                            if( stmt_updLatestVersion.executeUpdate() == 0 )
-                                throw new RuntimeException( "Couldn't update latest version." );
-                        }
-                    //Remove a latest version
-                    } else {
-                        stmt_delLatestVersion.setInt( 1, type.getID() ); 
-                        if( stmt_delLatestVersion.executeUpdate() == 0 )
-                            throw new RuntimeException( "Couldn't delete latest version." );
-                    }
-                //Add a latest version
-                } else if( newName != null ) {
-                    stmt_addLatestVersion.setInt( 1, type.getID() );
-                    stmt_addLatestVersion.setInt( 2, getVersionID( newName ) );
-                    if( stmt_addLatestVersion.executeUpdate() == 0 )
-                        throw new RuntimeException( "Couldn't add latest version." );
+        }
+        
+        //The manifest hasn't changed; just remember when we last checked it
+        if( mvm == null ) {
+            System.out.println( "Minecraft versions manifest is unchanged." );
+            db.write( ( conn ) -> {
+                if( manifest != null ) {
+                    setManifest( conn, url, manifest );
+                } else {
+                    PreparedStatement stmt_setManifestFetched = conn.prepare( SQL_SET_MANIFEST_FETCHED );
+                    stmt_setManifestFetched.setLong( 1, now );
+                    stmt_setManifestFetched.setString( 2, url );
+                    stmt_setManifestFetched.executeUpdate();
                 }
-            }
+            } );
+            return;
+        }
+        
+        db.write( SQLiteProfile.BULK_REFRESH, ( conn ) -> {
+            setManifest( conn, url, manifest );
+            apply( conn, mvm );
         } );
+        
+        //Now that the update has been committed, swap in a snapshot of the new state
+        snapshot = db.read( MinecraftVersionsSnapshot::load );
     }
     
     /**
-     * Returns the latest versions for all release types.
-     * @return
+     * Updates the local Minecraft Versions database from a local copy of Mojang's version manifest.
+     * The versions are compared and written back the same way update() does, but nothing is fetched, and the manifest isn't recorded.
+     * Used by the benchmark in bench/ to time updates against a fixed manifest.
+     * @param manifestPath - Path of the manifest file.
+     * @throws IOException
      * @throws SQLException
      */
-    public static MinecraftLatestVersions getLatestVersions() throws SQLException {
-        MinecraftLatestVersions mlv = new MinecraftLatestVersions();
-        try( ResultSet rs = stmt_getLatestVersions.executeQuery() ) {
-            while( rs.next() )
-                mlv.set( MinecraftReleaseType.get( rs.getInt( 2 ) ), rs.getString( 1 ) );
+    public static void update( final Path manifestPath ) throws IOException, SQLException {
+        final MinecraftVersionManifest mvm;
+        try( Reader reader = IO.newBufferedU8FileReader( manifestPath ) ) {
+            mvm = gson.fromJson( reader, MinecraftVersionManifest.class );
         }
-        return mlv;
+        
+        db.write( SQLiteProfile.BULK_REFRESH, ( conn ) -> apply( conn, mvm ) );
+        snapshot = db.read( MinecraftVersionsSnapshot::load );
     }
     
     /**
-     * Returns the latest version for the given release type, or null if the latest version is unknown.
-     * @param type
-     * @return
+     * Brings the versions in the database in line with the given manifest.
+     * Everything that's already in the database is loaded up front with a single query per table (see {@link MinecraftVersionsSnapshot}),
+     * compared with the manifest in memory, and the differences are written back in batches.
+     * @param conn - Connection to write to, in a transaction.
+     * @param mvm - The manifest.
      * @throws SQLException
      */
-    public static String getLatestVersion( final MinecraftReleaseType type ) throws SQLException {
-        stmt_getLatestVersion.setInt( 1, type.getID() );
-        try( ResultSet rs = stmt_getLatestVersion.executeQuery() ) {
-            if( !rs.next() )
-                return null;
-            return rs.getString( 1 );
+    private static void apply( final SQLiteConnection conn, final MinecraftVersionManifest mvm ) throws SQLException {
+        //Load all old versions, and build map of version name -> version for all new versions
+        MinecraftVersionsSnapshot old = MinecraftVersionsSnapshot.load( conn );
+        Map< String, PartialMinecraftVersion > old_versions = old.getVersions();
+        Map< String, PartialMinecraftVersion > new_versions = new HashMap< String, PartialMinecraftVersion >();
+        for( PartialMinecraftVersion mv : mvm.getVersions() )
+            new_versions.put( mv.getID(), mv );
+        
+        //Map of version name -> version id for all versions, old and new.
+        //New versions are given their IDs up front so they can be inserted in a batch, and so we know their IDs when updating the latest versions.
+        Map< String, Integer > ids = new HashMap< String, Integer >();
+        int next_id = 1;
+        for( String name : old_versions.keySet() ) {
+            int id = old.getID( name );
+            ids.put( name, id );
+            next_id = Math.max( next_id, id + 1 );
+        }
+        
+        //Remove versions that are no longer listed
+        PreparedStatement stmt_delMinecraftVersion = conn.prepare( SQL_DEL_MINECRAFT_VERSION );
+        int removed = 0;
+        for( String name : old_versions.keySet() ) {
+            if( new_versions.containsKey( name ) )
+                continue;
+            stmt_delMinecraftVersion.setInt( 1, ids.remove( name ) );
+            stmt_delMinecraftVersion.addBatch();
+            System.out.println( String.format( "Minecraft %s was removed.", name ) );
+            removed = flush( stmt_delMinecraftVersion, removed + 1 );
+        }
+        if( removed > 0 )
+            stmt_delMinecraftVersion.executeBatch();
+        
+        //Add new versions, and update versions that have changed
+        PreparedStatement stmt_addMinecraftVersion = conn.prepare( SQL_ADD_MINECRAFT_VERSION );
+        PreparedStatement stmt_updMinecraftVersion = conn.prepare( SQL_UPD_MINECRAFT_VERSION );
+        int added   = 0;
+        int updated = 0;
+        for( PartialMinecraftVersion new_mv : new_versions.values() ) {
+            String                  name   = new_mv.getID();
+            PartialMinecraftVersion old_mv = old_versions.get( name );
+            if( old_mv == null ) {
+                int id = next_id++;
+                ids.put( name, id );
+                stmt_addMinecraftVersion.setInt( 1, id );
+                stmt_addMinecraftVersion.setString( 2, name );
+                stmt_addMinecraftVersion.setInt( 3, new_mv.getType().getID() );
+                stmt_addMinecraftVersion.setLong( 4, new_mv.getTime().getTime() / 1000 );
+                stmt_addMinecraftVersion.setLong( 5, new_mv.getReleaseTime().getTime() / 1000 );
+                stmt_addMinecraftVersion.setString( 6, new_mv.getUrl() );
+                stmt_addMinecraftVersion.addBatch();
+                System.out.println( String.format( "Minecraft %s was added.", name ) );
+                added = flush( stmt_addMinecraftVersion, added + 1 );
+            } else if( !Objects.equals( old_mv, new_mv ) ) {
+                stmt_updMinecraftVersion.setInt( 1, new_mv.getType().getID() );
+                stmt_updMinecraftVersion.setLong( 2, new_mv.getTime().getTime() / 1000 );
+                stmt_updMinecraftVersion.setLong( 3, new_mv.getReleaseTime().getTime() / 1000 );
+                stmt_updMinecraftVersion.setString( 4, new_mv.getUrl() );
+                stmt_updMinecraftVersion.setInt( 5, ids.get( name ) );
+                stmt_updMinecraftVersion.addBatch();
+                System.out.println( String.format( "Minecraft %s was updated.", name ) );
+                //TODO: Refresh this version and determine if anything has changed
+                updated = flush( stmt_updMinecraftVersion, updated + 1 );
+            }
+        }
+        if( added > 0 )
+            stmt_addMinecraftVersion.executeBatch();
+        if( updated > 0 )
+            stmt_updMinecraftVersion.executeBatch();
+        
+        //Get last known latest versions
+        MinecraftLatestVersions old_mlv = old.getLatestVersions();
+        MinecraftLatestVersions new_mlv = mvm.getLatestVersions();
+        
+        //Update latest versions if necessary
+        if( Objects.equals( old_mlv, new_mlv ) )
+            return;
+        PreparedStatement stmt_addLatestVersion = conn.prepare( SQL_ADD_LATEST_VERSION );
+        PreparedStatement stmt_updLatestVersion = conn.prepare( SQL_UPD_LATEST_VERSION );
+        PreparedStatement stmt_delLatestVersion = conn.prepare( SQL_DEL_LATEST_VERSION );
+        for( MinecraftReleaseType type : MinecraftReleaseType.values() ) {
+            String oldName = old_mlv.get( type );
+            String newName = new_mlv.get( type );
+            
+            if( oldName != null ) {
+                if( newName != null ) {
+                    //Update a latest version
+                    if( !Objects.equals( oldName, newName ) ) {
+                        stmt_updLatestVersion.setInt( 1, getVersionID( ids, newName ) );
+                        stmt_updLatestVersion.setInt( 2, type.getID() );
+                        if( stmt_updLatestVersion.executeUpdate() == 0 )
+                            throw new RuntimeException( "Couldn't update latest version." );
+                    }
+                //Remove a latest version
+                } else {
+                    stmt_delLatestVersion.setInt( 1, type.getID() ); 
+                    if( stmt_delLatestVersion.executeUpdate() == 0 )
+                        throw new RuntimeException( "Couldn't delete latest version." );
+                }
+            //Add a latest version
+            } else if( newName != null ) {
+                stmt_addLatestVersion.setInt( 1, type.getID() );
+                stmt_addLatestVersion.setInt( 2, getVersionID( ids, newName ) );
+                if( stmt_addLatestVersion.executeUpdate() == 0 )
+                    throw new RuntimeException( "Couldn't add latest version." );
+            }
         }
     }
     
     /**
-     * Returns basic details about a Minecraft version with the given database id.
-     * @param id
+     * Returns what we know about the manifest at the given URL from the last time we fetched it, or null if we've never fetched it.
+     * @param conn
+     * @param url
      * @return
      * @throws SQLException
      */
-    private static PartialMinecraftVersion getVersion( final int id ) throws SQLException {
-        stmt_getMinecraftVersion.setInt( 1, id );
-        try( ResultSet rs = stmt_getMinecraftVersion.executeQuery() ) {
+    private static Manifest getManifest( final SQLiteConnection conn, final String url ) throws SQLException {
+        PreparedStatement stmt_getManifest = conn.prepare( SQL_GET_MANIFEST );
+        stmt_getManifest.setString( 1, url );
+        try( ResultSet rs = stmt_getManifest.executeQuery() ) {
             if( !rs.next() )
-                throw new RuntimeException( "Couldn't get Minecraft version information." );
-            return new PartialMinecraftVersion(
-                rs.getString( 1 ),
-                MinecraftReleaseType.get( rs.getInt( 2 ) ),
-                new Date( rs.getLong( 3 ) * 1000 ),
-                new Date( rs.getLong( 4 ) * 1000 ),
-                rs.getString( 5 )
-            );
+                return null;
+            return new Manifest( rs.getString( 1 ), rs.getString( 2 ), rs.getString( 3 ), rs.getLong( 4 ) );
         }
     }
     
+    /**
+     * Records what we know about the manifest at the given URL.
+     * @param conn
+     * @param url
+     * @param manifest
+     * @throws SQLException
+     */
+    private static void setManifest( final SQLiteConnection conn, final String url, final Manifest manifest ) throws SQLException {
+        PreparedStatement stmt_setManifest = conn.prepare( SQL_SET_MANIFEST );
+        stmt_setManifest.setString( 1, url );
+        stmt_setManifest.setString( 2, manifest.etag );
+        stmt_setManifest.setString( 3, manifest.lastModified );
+        stmt_setManifest.setString( 4, manifest.sha1 );
+        stmt_setManifest.setLong(   5, manifest.fetched );
+        stmt_setManifest.executeUpdate();
+    }
+    
+    /**
+     * Executes the given statement's batch if it has reached BATCH_SIZE statements.
+     * @param stmt
+     * @param count - Number of statements in the batch.
+     * @return The number of statements left in the batch.
+     * @throws SQLException
+     */
+    private static int flush( final PreparedStatement stmt, final int count ) throws SQLException {
+        if( count < BATCH_SIZE )
+            return count;
+        stmt.executeBatch();
+        return 0;
+    }
+    
     /**
      * Returns the database ID for the version with the given name
+     * @param ids - Map of version name -> version ID.
      * @param name
      * @return
-     * @throws SQLException 
      */
-    private static int getVersionID( final String name ) throws SQLException {
-        stmt_getMinecraftVersionID.setString( 1, name );
-        try( ResultSet rs = stmt_getMinecraftVersionID.executeQuery() ) {
-            if( !rs.next() )
-                throw new RuntimeException( "Unrecognized Minecraft version." );
-            return rs.getInt( 1 );
-        }
+    private static int getVersionID( final Map< String, Integer > ids, final String name ) {
+        Integer id = ids.get( name );
+        if( id == null )
+            throw new RuntimeException( "Unrecognized Minecraft version." );
+        return id;
     }
-
+    
+    /**
+     * Returns the latest versions for all release types.
+     * @return
+     * @throws SQLException
+     */
+    public static MinecraftLatestVersions getLatestVersions() throws SQLException {
+        return snapshot.getLatestVersions();
+    }
+    
+    /**
+     * Returns the latest version for the given release type, or null if the latest version is unknown.
+     * @param type
+     * @return
+     * @throws SQLException
+     */
+    public static String getLatestVersion( final MinecraftReleaseType type ) throws SQLException {
+        return snapshot.getLatestVersion( type );
+    }
+    
     /**
      * Return information about a version of Minecraft.
      * Loads the information if it isn't already.
@@ -308,10 +480,7 @@ public class MinecraftVersions {
      * @throws IOException
      */
     public static CompleteMinecraftVersion get( final String name ) throws IOException {
-        CompleteMinecraftVersion v = versions.get( name );
-        if( v == null )
-            v = load( name );
-        return v;
+        return versions.get( name );
     }
 
     /**
@@ -320,19 +489,16 @@ public class MinecraftVersions {
      * @return
      */
     public static AssetIndex getAssetIndex( final String name ) throws IOException {
-        AssetIndex i = assets.get( name );
-        if( i == null )
-            i = loadAssetIndex( name );
-        return i;
+        return assets.get( name );
     }
     
     /**
      * TEMP
      */
     public static CompleteMinecraftVersion load( final Path versionsDir, final String name ) throws IOException {
-        CompleteMinecraftVersion v = null;
-        try( Reader r = IO.newBufferedU8FileReader( getVersionInfo( versionsDir, name ) ) ) {
-            v = gson.fromJson( r, CompleteMinecraftVersion.class );
+        CompleteMinecraftVersion v;
+        try( JsonReader reader = BinaryJson.load( getVersionInfo( versionsDir, name ) ) ) {
+            v = gson.fromJson( reader, CompleteMinecraftVersion.class );
         }
         
         String inheritsFrom = v.getInheritsFrom();
@@ -358,13 +524,11 @@ public class MinecraftVersions {
      * @throws IOException
      */
     private static CompleteMinecraftVersion load( final String name ) throws IOException {
-        CompleteMinecraftVersion v = null;
-        try( Reader r = IO.newBufferedU8FileReader( Paths.get( MinecraftConstants.VERSIONS_DIRECTORY, name, name + ".json" ) ) ) {
-            v = gson.fromJson( r, CompleteMinecraftVersion.class );
+        CompleteMinecraftVersion v;
+        try( JsonReader reader = BinaryJson.load( getVersionInfoPath( name ) ) ) {
+            v = gson.fromJson( reader, CompleteMinecraftVersion.class );
         }
         v.validate( name );
-    
-        versions.put( name, v );
         return v;
     }
 
@@ -377,13 +541,47 @@ public class MinecraftVersions {
      * @throws IOException
      */
     private static AssetIndex loadAssetIndex( final String name ) throws IOException {
-        AssetIndex i = null;
-        try( Reader r = IO.newBufferedU8FileReader( Paths.get( MinecraftConstants.ASSETS_DIRECTORY, MinecraftConstants.ASSETS_INDICES_DIRECTORY, name + ".json" ) ) ) {
-            i = gson.fromJson( r, AssetIndex.class );
+        AssetIndex i;
+        try( JsonReader reader = BinaryJson.load( getAssetIndexPath( name ) ) ) {
+            i = gson.fromJson( reader, AssetIndex.class );
         }
         i.validate();
-
-        assets.put( name, i );
         return i;
     }
+    
+    private static Path getVersionInfoPath( final String name ) {
+        return Paths.get( MinecraftConstants.VERSIONS_DIRECTORY, name, name + ".json" );
+    }
+    
+    private static Path getAssetIndexPath( final String name ) {
+        return Paths.get( MinecraftConstants.ASSETS_DIRECTORY, MinecraftConstants.ASSETS_INDICES_DIRECTORY, name + ".json" );
+    }
+    
+    /**
+     * Returns a stamp for the file at the given path that changes whenever the file does (its size and last modified time).
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    private static String stamp( final Path path ) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes( path, BasicFileAttributes.class );
+        return attrs.size() + ":" + attrs.lastModifiedTime().toMillis();
+    }
+    
+    /**
+     * What we know about the version manifest from the last time we fetched it.
+     */
+    private static class Manifest {
+        public final String etag;
+        public final String lastModified;
+        public final String sha1;
+        public final long   fetched;
+        
+        public Manifest( final String etag, final String lastModified, final String sha1, final long fetched ) {
+            this.etag         = etag;
+            this.lastModified = lastModified;
+            this.sha1         = sha1;
+            this.fetched      = fetched;
+        }
+    }
 }
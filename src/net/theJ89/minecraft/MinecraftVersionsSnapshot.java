@@ -0,0 +1,102 @@
+package net.theJ89.minecraft;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.minecraft.launcher.game.MinecraftReleaseType;
+import net.minecraft.launcher.updater.PartialMinecraftVersion;
+import net.theJ89.database.SQLiteConnection;
+
+/**
+ * An immutable copy of the versions and latest versions in the local Minecraft Versions database.
+ * MinecraftVersions loads one of these when it's initialized and replaces it after each update, so lookups are just map lookups,
+ * and any number of threads can read from it without locking.
+ */
+class MinecraftVersionsSnapshot {
+    private static final String SQL_GET_MINECRAFT_VERSIONS = "SELECT \"id\", \"name\", \"type\", \"time\", \"releaseTime\", \"url\" FROM \"MinecraftVersion\"";
+    private static final String SQL_GET_LATEST_VERSIONS    = "SELECT \"name\", \"type\" FROM \"NamedLatestVersion\"";
+    
+    private final Map< String, Integer >                 ids;
+    private final Map< String, PartialMinecraftVersion > versions;
+    private final Map< MinecraftReleaseType, String >    latest;
+    
+    private MinecraftVersionsSnapshot( final Map< String, Integer > ids, final Map< String, PartialMinecraftVersion > versions, final Map< MinecraftReleaseType, String > latest ) {
+        this.ids      = Collections.unmodifiableMap( ids );
+        this.versions = Collections.unmodifiableMap( versions );
+        this.latest   = latest;
+    }
+    
+    /**
+     * Loads a snapshot of the database using the given connection.
+     * @param conn
+     * @return
+     * @throws SQLException
+     */
+    public static MinecraftVersionsSnapshot load( final SQLiteConnection conn ) throws SQLException {
+        Map< String, Integer >                 ids      = new HashMap< String, Integer >();
+        Map< String, PartialMinecraftVersion > versions = new HashMap< String, PartialMinecraftVersion >();
+        try( ResultSet rs = conn.prepare( SQL_GET_MINECRAFT_VERSIONS ).executeQuery() ) {
+            while( rs.next() ) {
+                String name = rs.getString( 2 );
+                ids.put( name, rs.getInt( 1 ) );
+                versions.put( name, new PartialMinecraftVersion(
+                    name,
+                    MinecraftReleaseType.get( rs.getInt( 3 ) ),
+                    new Date( rs.getLong( 4 ) * 1000 ),
+                    new Date( rs.getLong( 5 ) * 1000 ),
+                    rs.getString( 6 )
+                ) );
+            }
+        }
+        
+        Map< MinecraftReleaseType, String > latest = new EnumMap< MinecraftReleaseType, String >( MinecraftReleaseType.class );
+        try( ResultSet rs = conn.prepare( SQL_GET_LATEST_VERSIONS ).executeQuery() ) {
+            while( rs.next() )
+                latest.put( MinecraftReleaseType.get( rs.getInt( 2 ) ), rs.getString( 1 ) );
+        }
+        
+        return new MinecraftVersionsSnapshot( ids, versions, latest );
+    }
+    
+    /**
+     * Returns the database ID of the version with the given name, or null if there is no such version.
+     * @param name
+     * @return
+     */
+    public Integer getID( final String name ) {
+        return this.ids.get( name );
+    }
+    
+    /**
+     * Returns an unmodifiable map of version name -> basic details about that version.
+     * @return
+     */
+    public Map< String, PartialMinecraftVersion > getVersions() {
+        return this.versions;
+    }
+    
+    /**
+     * Returns the latest version for the given release type, or null if the latest version is unknown.
+     * @param type
+     * @return
+     */
+    public String getLatestVersion( final MinecraftReleaseType type ) {
+        return this.latest.get( type );
+    }
+    
+    /**
+     * Returns a new MinecraftLatestVersions with the latest versions for all release types.
+     * @return
+     */
+    public MinecraftLatestVersions getLatestVersions() {
+        MinecraftLatestVersions mlv = new MinecraftLatestVersions();
+        for( Map.Entry< MinecraftReleaseType, String > entry : this.latest.entrySet() )
+            mlv.set( entry.getKey(), entry.getValue() );
+        return mlv;
+    }
+}
@@ -1,5 +1,115 @@
 package net.theJ89.mmm;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+
+import com.mojang.launcher.updater.download.assets.AssetIndex.AssetObject;
+
+import net.theJ89.minecraft.MinecraftConstants;
+import net.theJ89.util.IO;
+
+/**
+ * AssetManager maintains a store of asset objects shared by every instance.
+ *
+ * Asset objects are named after their SHA-1 hash (see {@link AssetObject#getPath()}), so the store is content-addressable:
+ * an object only ever needs to be downloaded once, no matter how many instances or asset indices refer to it.
+ * The store lives in the "assets/objects" directory of MMM's installation directory.
+ *
+ * Instances refer to the store rather than keeping their own copies of each object.
+ * Where possible an instance's "assets/objects" directory is simply a symbolic link to the store.
+ * Otherwise (e.g. on Windows without the privilege to create symbolic links, or for the "virtual" assets
+ * older versions of Minecraft use) individual objects are linked into the instance, or copied as a last resort.
+ *
+ * The store isn't used in portable mode (see {@link MMM#isPortable()}); instances keep their own assets instead.
+ */
 public class AssetManager {
+    private AssetManager() {
+        throw new Error();
+    }
 
+    /**
+     * Returns the shared assets directory.
+     * @return
+     */
+    public static Path getDirectory() {
+        return MMM.getDirectory().resolve( MinecraftConstants.ASSETS_DIRECTORY );
+    }
+    
+    /**
+     * Returns the directory shared asset objects are stored in.
+     * @return
+     */
+    public static Path getObjectsDirectory() {
+        return getDirectory().resolve( MinecraftConstants.ASSETS_OBJECTS_DIRECTORY );
+    }
+    
+    /**
+     * Returns the path the given asset object is (or would be) stored at in the shared store.
+     * @param asset
+     * @return
+     */
+    public static Path getObjectPath( final AssetObject asset ) {
+        return getObjectsDirectory().resolve( asset.getPath() );
+    }
+    
+    /**
+     * Removes the given asset object from the shared store, e.g. because it's been found to be corrupt.
+     * The next install that needs the object will download it again.
+     * @param asset
+     * @throws IOException
+     * @throws SQLException
+     */
+    public static void evict( final AssetObject asset ) throws IOException, SQLException {
+        Path path = getObjectPath( asset );
+        System.out.println( "Removing asset object \"" + asset.getPath() + "\" from the shared store..." );
+        Files.deleteIfExists( path );
+        VerifiedFiles.forget( path );
+    }
+    
+    /**
+     * Makes the given instance objects directory a symbolic link to the shared objects directory.
+     *
+     * Returns true if the instance objects directory refers to the shared store once this function returns.
+     * Returns false if it is (or must remain) an ordinary directory; in this case objects must be linked into it
+     * individually with {@link #linkObject(AssetObject, Path)}.
+     *
+     * @param objectsDir - The "assets/objects" directory of an instance.
+     * @return
+     * @throws IOException
+     */
+    public static boolean linkObjects( final Path objectsDir ) throws IOException {
+        Path shared = getObjectsDirectory();
+        Files.createDirectories( shared );
+        
+        //Already linked?
+        if( Files.isSymbolicLink( objectsDir ) )
+            return Files.isSameFile( objectsDir, shared );
+        
+        //Leave existing directories (e.g. from an install made in portable mode) alone
+        if( Files.exists( objectsDir ) )
+            return false;
+        
+        Files.createDirectories( objectsDir.getParent() );
+        try {
+            Files.createSymbolicLink( objectsDir, shared );
+            return true;
+        } catch( UnsupportedOperationException | IOException e ) {
+            return false;
+        }
+    }
+    
+    /**
+     * Places the given asset object (which must already be in the shared store) at the given path.
+     * The object is linked to its location in the store if possible, and copied otherwise (see {@link IO#link(Path, Path)}).
+     * Does nothing if a file already exists at the given path.
+     *
+     * @param asset - The asset object.
+     * @param to - Path to place the object at.
+     * @throws IOException
+     */
+    public static void linkObject( final AssetObject asset, final Path to ) throws IOException {
+        IO.link( getObjectPath( asset ), to );
+    }
 }
@@ -0,0 +1,150 @@
+package net.theJ89.mmm;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.theJ89.forge.ForgeInstaller;
+import net.theJ89.http.Downloader;
+import net.theJ89.install.InstallPlan;
+import net.theJ89.install.InstallTask;
+import net.theJ89.install.InstallTask.Kind;
+import net.theJ89.minecraft.MinecraftInstaller;
+import net.theJ89.util.Misc;
+
+/**
+ * Installer installs Minecraft, and optionally Minecraft Forge, to a directory.
+ *
+ * Very little of a Forge install depends on the Minecraft install: the Forge binary, its version info and its libraries can all be
+ * fetched while Minecraft is being installed. Rather than installing Minecraft and then Forge, Installer runs both installs
+ * side by side, sharing a single Downloader (and with it the same per-host limits and pooled connections).
+ * The only Forge task that waits on the Minecraft install is writing Forge's version info file, which refers to the Minecraft client .jar.
+ */
+public class Installer {
+    private Path       directory;
+    private String     mc_name;
+    private String     forge_name;
+    private Side       side;
+    private Downloader downloader;
+    
+    /**
+     * Installer constructor.
+     * @param directory - Directory to install to.
+     * @param mc_name - The name of the Minecraft version to install (e.g. "1.8.9")
+     * @param forge_name - The name of the Forge version to install (e.g. "11.15.1.1902"), or null to install Minecraft alone.
+     * @param side - Which side to install (e.g. Side.CLIENT or Side.SERVER)
+     */
+    public Installer( final Path directory, final String mc_name, final String forge_name, final Side side ) {
+        this.directory  = directory;
+        this.mc_name    = mc_name;
+        this.forge_name = forge_name;
+        this.side       = side;
+        this.downloader = null;
+    }
+    
+    /**
+     * Sets the downloader shared by the Minecraft and Forge installs.
+     * If this isn't set (or is set to null), install() creates a downloader with default settings for the duration of the install.
+     * @param downloader - The downloader to use.
+     */
+    public void setDownloader( final Downloader downloader ) {
+        this.downloader = downloader;
+    }
+    
+    public Downloader getDownloader() {
+        return this.downloader;
+    }
+    
+    public void install() throws IOException {
+        Downloader downloader = this.downloader;
+        if( downloader != null ) {
+            this.install( downloader );
+            return;
+        }
+        
+        try( Downloader defaultDownloader = new Downloader() ) {
+            this.install( defaultDownloader );
+        }
+    }
+    
+    private void install( final Downloader downloader ) throws IOException {
+        MinecraftInstaller minecraft = new MinecraftInstaller( this.directory, this.mc_name, this.side );
+        minecraft.setDownloader( downloader );
+        
+        //Minecraft alone
+        if( this.forge_name == null ) {
+            minecraft.plan().execute( downloader );
+            if( this.side == Side.SERVER )
+                minecraft.eula();
+            return;
+        }
+        
+        ForgeInstaller forge = new ForgeInstaller( this.directory, this.mc_name, this.forge_name, this.side );
+        forge.setDownloader( downloader );
+        
+        //Forge is installed in the background while Minecraft is installed on this thread.
+        CompletableFuture< InstallPlan > minecraftPlan = new CompletableFuture< InstallPlan >();
+        ExecutorService background = Executors.newSingleThreadExecutor( Misc.newDaemonThreadFactory( "Installer-Forge-" ) );
+        CompletableFuture< Void > forgeInstall = CompletableFuture.runAsync( () -> {
+            try {
+                System.out.println( "Installing Minecraft Forge " + this.forge_name + "..." );
+                
+                //Forge's install can't be planned without the Forge binary, so we fetch that while Minecraft's install is being planned.
+                Path forgeBinary = forge.download();
+                
+                //If Minecraft's plan fetches the client .jar, the Forge plan includes that task as well so Forge's version info file can wait for it.
+                //The task is shared between the plans, and the Downloader makes sure it only runs once.
+                InstallPlan plan = new InstallPlan();
+                InstallTask clientJar = minecraftPlan.join().get( Kind.FETCH, minecraft.getClientJarPath() );
+                if( clientJar != null )
+                    plan.add( clientJar );
+                forge.plan( plan, forgeBinary );
+                plan.execute( downloader );
+            } catch( IOException e ) {
+                throw new UncheckedIOException( e );
+            } catch( SQLException e ) {
+                throw new RuntimeException( e );
+            }
+        }, background );
+        background.shutdown();
+        
+        //Install Minecraft
+        Throwable failure = null;
+        try {
+            InstallPlan plan = null;
+            try {
+                plan = minecraft.plan();
+            } finally {
+                //Make sure the Forge install isn't left waiting on a plan that will never arrive
+                minecraftPlan.complete( plan != null ? plan : new InstallPlan() );
+            }
+            plan.execute( downloader );
+        } catch( IOException | RuntimeException e ) {
+            failure = e;
+        }
+        
+        //Wait for the Forge install to finish
+        try {
+            forgeInstall.join();
+        } catch( CompletionException e ) {
+            Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+            if( failure == null ) { failure = cause;                }
+            else                  { failure.addSuppressed( cause ); }
+        }
+        
+        if( failure instanceof IOException )
+            throw (IOException)failure;
+        if( failure instanceof RuntimeException )
+            throw (RuntimeException)failure;
+        if( failure instanceof Error )
+            throw (Error)failure;
+        
+        if( this.side == Side.SERVER )
+            minecraft.eula();
+    }
+}
@@ -1,5 +1,295 @@
 package net.theJ89.mmm;
 
-public class LibraryManager {
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.theJ89.database.SQLiteDatabase;
+import net.theJ89.minecraft.MinecraftConstants;
+import net.theJ89.util.IO;
+import net.theJ89.util.Misc;
 
+/**
+ * LibraryManager maintains a repository of Java libraries shared by every instance.
+ *
+ * The repository lives in the "libraries" directory of MMM's installation directory and uses the same Maven-style layout
+ * as an instance's own libraries directory (see {@link net.minecraft.launcher.updater.Library#getPathFromName(String)}).
+ * Both the Minecraft and Forge installers download libraries to the repository and then link them into the instances that need them,
+ * so installing a version of Minecraft or Forge whose libraries are already in the repository doesn't require any library downloads.
+ *
+ * A local database records the SHA-1 hash of every library in the repository and which instances are using it.
+ * The hashes let us avoid storing (or downloading) the same file twice under different names.
+ * The references let us remove a library from the repository once no instance needs it anymore (see {@link #release(Path, String)}).
+ * Each reference also names its owner (e.g. the Minecraft or Forge install) so each install in an instance can be released separately.
+ *
+ * The repository isn't used in portable mode (see {@link MMM#isPortable()}); instances keep their own libraries instead.
+ */
+public class LibraryManager {
+    private static final String DATABASE_FILENAME = "libraries.db";
+    
+    private static final String SQL_GET_LIBRARY         = "SELECT \"sha1\", \"size\" FROM \"Library\" WHERE \"path\" = ? LIMIT 1";
+    private static final String SQL_GET_LIBRARY_BY_SHA1 = "SELECT \"path\" FROM \"Library\" WHERE \"sha1\" = ?";
+    private static final String SQL_ADD_LIBRARY         = "INSERT OR REPLACE INTO \"Library\" VALUES( ?, ?, ? )";
+    private static final String SQL_DEL_LIBRARY         = "DELETE FROM \"Library\" WHERE \"path\" = ?";
+    private static final String SQL_GET_UNREFERENCED    = "SELECT \"path\" FROM \"Library\" WHERE \"path\" NOT IN ( SELECT \"path\" FROM \"LibraryReference\" )";
+    
+    private static final String SQL_GET_REFERENCE_COUNT = "SELECT COUNT( DISTINCT \"instance\" ) FROM \"LibraryReference\" WHERE \"path\" = ?";
+    private static final String SQL_ADD_REFERENCE       = "INSERT OR IGNORE INTO \"LibraryReference\" VALUES( ?, ?, ? )";
+    private static final String SQL_DEL_REFERENCES      = "DELETE FROM \"LibraryReference\" WHERE \"instance\" = ? AND \"owner\" = ?";
+    
+    private static SQLiteDatabase db;
+    
+    private LibraryManager() {
+        throw new Error();
+    }
+    
+    public static void init() throws ClassNotFoundException, SQLException {
+        db = new SQLiteDatabase( MMM.getDirectory().resolve( DATABASE_FILENAME ) );
+        
+        createDatabaseTables();
+    }
+    
+    public static void close() {
+        IO.closeQuietly( db );
+    }
+    
+    private static void createDatabaseTables() throws SQLException {
+        db.write( ( conn ) -> {
+            try( Statement stmt = conn.createStatement() ) {
+                stmt.executeUpdate(
+                    "CREATE TABLE IF NOT EXISTS \"Library\"( " +
+                    "    \"path\" TEXT NOT NULL PRIMARY KEY, " +
+                    "    \"sha1\" TEXT NOT NULL, "             +
+                    "    \"size\" BIGINT NOT NULL "            +
+                    ") WITHOUT ROWID"
+                );
+                stmt.executeUpdate(
+                    "CREATE INDEX IF NOT EXISTS \"LibrarySHA1\" ON \"Library\"( \"sha1\" )"
+                );
+                stmt.executeUpdate(
+                    "CREATE TABLE IF NOT EXISTS \"LibraryReference\"( "                          +
+                    "    \"instance\" TEXT NOT NULL, "                                           +
+                    "    \"owner\" TEXT NOT NULL, "                                              +
+                    "    \"path\" TEXT NOT NULL REFERENCES \"Library\"( \"path\" ), "            +
+                    "    PRIMARY KEY ( \"instance\", \"owner\", \"path\" ) "                     +
+                    ") WITHOUT ROWID"
+                );
+                stmt.executeUpdate(
+                    "CREATE INDEX IF NOT EXISTS \"LibraryReferencePath\" ON \"LibraryReference\"( \"path\" )"
+                );
+            }
+        } );
+    }
+    
+    /**
+     * Returns the shared library repository directory.
+     * @return
+     */
+    public static Path getDirectory() {
+        return MMM.getDirectory().resolve( MinecraftConstants.LIBRARIES_DIRECTORY );
+    }
+    
+    /**
+     * Returns the path the library with the given relative path is (or would be) stored at in the repository.
+     * @param libraryPath - Path of the library relative to a libraries directory (e.g. "org/lwjgl/lwjgl/lwjgl_util/2.9.1/lwjgl_util-2.9.1.jar")
+     * @return
+     */
+    public static Path getPath( final String libraryPath ) {
+        return getDirectory().resolve( libraryPath );
+    }
+    
+    /**
+     * Prepares the repository to receive the library with the given relative path, and returns the path it should be downloaded to.
+     *
+     * If the library isn't in the repository, but a library with the same SHA-1 hash is (under another name),
+     * that library is linked to the requested path (provided it still has that hash), and there's no need to download it.
+     * Either way, the returned path won't need to be downloaded if a file exists there when this function returns.
+     *
+     * @param libraryPath - Path of the library relative to a libraries directory.
+     * @param sha1 - Expected SHA-1 hash of the library, or null if it's unknown.
+     * @return
+     * @throws IOException
+     * @throws SQLException
+     */
+    public static Path prepare( final String libraryPath, final String sha1 ) throws IOException, SQLException {
+        Path path = getPath( libraryPath );
+        if( Files.exists( path ) || sha1 == null )
+            return path;
+        
+        for( String other : findBySHA1( sha1 ) ) {
+            Path otherPath = getPath( other );
+            if( !VerifiedFiles.verify( otherPath, sha1 ) )
+                continue;
+            
+            System.out.println( "Linking library \"" + libraryPath + "\" to identical library \"" + other + "\"..." );
+            try {
+                IO.link( otherPath, path );
+            } catch( FileAlreadyExistsException e ) {
+                //Another thread prepared the same library while we were looking; theirs is just as good.
+            }
+            break;
+        }
+        return path;
+    }
+    
+    /**
+     * Records that the given owner in the given instance uses the library with the given relative path, which must already be in the repository,
+     * and links the library into the instance's libraries directory.
+     *
+     * @param instanceDir - The instance's directory.
+     * @param owner - What in the instance is using the library (e.g. "minecraft" or "forge"). See {@link #release(Path, String)}.
+     * @param libraryPath - Path of the library relative to a libraries directory.
+     * @param sha1 - SHA-1 hash of the library, or null if it's unknown (in which case it will be computed).
+     * @throws IOException
+     * @throws SQLException
+     */
+    public static void link( final Path instanceDir, final String owner, final String libraryPath, String sha1 ) throws IOException, SQLException {
+        Path path = getPath( libraryPath );
+        
+        //Has the library been recorded?
+        long    size  = Files.size( path );
+        boolean known = db.read( ( conn ) -> {
+            PreparedStatement stmt_getLibrary = conn.prepare( SQL_GET_LIBRARY );
+            stmt_getLibrary.setString( 1, libraryPath );
+            try( ResultSet rs = stmt_getLibrary.executeQuery() ) {
+                return rs.next() && rs.getLong( 2 ) == size;
+            }
+        } );
+        if( !known && sha1 == null ) {
+            MessageDigest digest = Misc.newSHA1();
+            IO.update( path, digest );
+            sha1 = IO.toHex( digest );
+        }
+        
+        //Record the library (if we haven't already) and the reference together, so release() never sees one without the other
+        final String librarySHA1 = sha1;
+        db.write( ( conn ) -> {
+            if( !known ) {
+                PreparedStatement stmt_addLibrary = conn.prepare( SQL_ADD_LIBRARY );
+                stmt_addLibrary.setString( 1, libraryPath );
+                stmt_addLibrary.setString( 2, librarySHA1 );
+                stmt_addLibrary.setLong(   3, size );
+                stmt_addLibrary.executeUpdate();
+            }
+            
+            PreparedStatement stmt_addReference = conn.prepare( SQL_ADD_REFERENCE );
+            stmt_addReference.setString( 1, getInstanceKey( instanceDir ) );
+            stmt_addReference.setString( 2, owner );
+            stmt_addReference.setString( 3, libraryPath );
+            stmt_addReference.executeUpdate();
+        } );
+        
+        IO.link( path, instanceDir.resolve( MinecraftConstants.LIBRARIES_DIRECTORY ).resolve( libraryPath ) );
+    }
+    
+    /**
+     * Releases all of the given owner's references to libraries in the repository from the given instance.
+     * Any libraries that are no longer referenced by an instance are deleted from the repository.
+     * The instance's own links to those libraries are left alone.
+     *
+     * @param instanceDir - The instance's directory.
+     * @param owner - The owner passed to {@link #link(Path, String, String, String)}.
+     * @return The number of libraries deleted from the repository.
+     * @throws IOException
+     * @throws SQLException
+     */
+    public static int release( final Path instanceDir, final String owner ) throws IOException, SQLException {
+        List< String > unreferenced = new ArrayList< String >();
+        db.write( ( conn ) -> {
+            PreparedStatement stmt_delReferences = conn.prepare( SQL_DEL_REFERENCES );
+            stmt_delReferences.setString( 1, getInstanceKey( instanceDir ) );
+            stmt_delReferences.setString( 2, owner );
+            stmt_delReferences.executeUpdate();
+            
+            try( ResultSet rs = conn.prepare( SQL_GET_UNREFERENCED ).executeQuery() ) {
+                while( rs.next() )
+                    unreferenced.add( rs.getString( 1 ) );
+            }
+            PreparedStatement stmt_delLibrary = conn.prepare( SQL_DEL_LIBRARY );
+            for( String libraryPath : unreferenced ) {
+                stmt_delLibrary.setString( 1, libraryPath );
+                stmt_delLibrary.executeUpdate();
+            }
+        } );
+        
+        for( String libraryPath : unreferenced ) {
+            Path path = getPath( libraryPath );
+            System.out.println( "Removing unused library \"" + libraryPath + "\"..." );
+            Files.deleteIfExists( path );
+            VerifiedFiles.forget( path );
+        }
+        return unreferenced.size();
+    }
+    
+    /**
+     * Returns the number of instances using the library with the given relative path.
+     * @param libraryPath
+     * @return
+     * @throws SQLException
+     */
+    public static int getReferenceCount( final String libraryPath ) throws SQLException {
+        return db.read( ( conn ) -> {
+            PreparedStatement stmt_getReferenceCount = conn.prepare( SQL_GET_REFERENCE_COUNT );
+            stmt_getReferenceCount.setString( 1, libraryPath );
+            try( ResultSet rs = stmt_getReferenceCount.executeQuery() ) {
+                return rs.next() ? rs.getInt( 1 ) : 0;
+            }
+        } );
+    }
+    
+    /**
+     * Removes the library with the given relative path from the repository, e.g. because it's been found to be corrupt.
+     * The next install that needs the library will download it again.
+     * Instances that have already linked the library are left alone.
+     *
+     * @param libraryPath - Path of the library relative to a libraries directory.
+     * @throws IOException
+     * @throws SQLException
+     */
+    public static void evict( final String libraryPath ) throws IOException, SQLException {
+        Path path = getPath( libraryPath );
+        System.out.println( "Removing library \"" + libraryPath + "\" from the shared repository..." );
+        
+        db.write( ( conn ) -> {
+            PreparedStatement stmt_delLibrary = conn.prepare( SQL_DEL_LIBRARY );
+            stmt_delLibrary.setString( 1, libraryPath );
+            stmt_delLibrary.executeUpdate();
+        } );
+        Files.deleteIfExists( path );
+        VerifiedFiles.forget( path );
+    }
+    
+    /**
+     * Returns the relative paths of every library in the repository with the given SHA-1 hash.
+     * @param sha1
+     * @return
+     * @throws SQLException
+     */
+    public static List< String > findBySHA1( final String sha1 ) throws SQLException {
+        return db.read( ( conn ) -> {
+            List< String > paths = new ArrayList< String >();
+            PreparedStatement stmt_getLibraryBySHA1 = conn.prepare( SQL_GET_LIBRARY_BY_SHA1 );
+            stmt_getLibraryBySHA1.setString( 1, sha1 );
+            try( ResultSet rs = stmt_getLibraryBySHA1.executeQuery() ) {
+                while( rs.next() )
+                    paths.add( rs.getString( 1 ) );
+            }
+            return paths;
+        } );
+    }
+    
+    /**
+     * Instances are identified by the absolute path of their directory.
+     */
+    private static String getInstanceKey( final Path instanceDir ) {
+        return instanceDir.toAbsolutePath().normalize().toString();
+    }
 }
@@ -8,6 +8,7 @@ import java.nio.file.Paths;
 import java.sql.SQLException;
 
 import net.theJ89.forge.ForgeVersions;
+import net.theJ89.http.ConnectionPool;
 import net.theJ89.minecraft.MinecraftVersions;
 import net.theJ89.util.Platform;
 
@@ -38,6 +39,9 @@ public class MMM {
      * @throws IOException
      */
     public static void init() throws IOException {
+        //Must happen before the first HTTP connection is opened; see ConnectionPool
+        ConnectionPool.configureDefaults();
+        
         //Locate MMM's install directory.
         if( Files.isRegularFile( MMM_INSTALL_FILE ) ) {
             Path dir = Paths.get( new String( Files.readAllBytes( MMM_INSTALL_FILE ), StandardCharsets.UTF_8 ) );
@@ -59,6 +63,8 @@ public class MMM {
         try {
             MinecraftVersions.init();
             ForgeVersions.init();
+            LibraryManager.init();
+            VerifiedFiles.init();
         } catch (ClassNotFoundException | SQLException e) {
             throw new RuntimeException( e );
         }
@@ -72,6 +78,8 @@ public class MMM {
     public static void close() {
         MinecraftVersions.close();
         ForgeVersions.close();
+        LibraryManager.close();
+        VerifiedFiles.close();
     }
     
     /**
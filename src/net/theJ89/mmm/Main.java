@@ -10,8 +10,6 @@ import java.sql.SQLException;
 import com.mojang.authlib.exceptions.AuthenticationException;
 import com.mojang.authlib.exceptions.InvalidCredentialsException;
 
-import net.theJ89.forge.ForgeInstaller;
-import net.theJ89.minecraft.MinecraftInstaller;
 import net.theJ89.util.Password;
 
 public class Main {
@@ -51,14 +49,10 @@ public class Main {
             Side iside = Side.CLIENT;
             Instance i = new Instance( "MMM Install Test", "1.8.9", iside, idir );
             
-            //Install minecraft
-            MinecraftInstaller installer = new MinecraftInstaller( idir, "1.8.9", iside );
+            //Install minecraft and forge
+            Installer installer = new Installer( idir, "1.8.9", "11.15.1.1902", iside );
             installer.install();
             
-            //Install forge
-            ForgeInstaller installer2 = new ForgeInstaller( idir, "1.8.9", "11.15.1.1902", iside );
-            installer2.install();
-            
             //Launch minecraft (TEMP)
             i.launch( "1.8.9-forge1.8.9-11.15.1.1902-1.8.9", Auth.getUserData() );
             
@@ -0,0 +1,286 @@
+package net.theJ89.mmm;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import net.theJ89.database.SQLiteConnection;
+import net.theJ89.database.SQLiteDatabase;
+import net.theJ89.util.IO;
+import net.theJ89.util.Misc;
+
+/**
+ * VerifiedFiles remembers the SHA-1 hashes of files we've already read, so they don't need to be read again.
+ *
+ * Alongside each hash we record the file's size, modification time, and file key (its inode on Unix-like systems) at the time it was hashed.
+ * If none of these have changed since then, the file is assumed to be unchanged, and the recorded hash is used rather than rehashing the file.
+ * Checking the integrity of an instance therefore only involves reading the files that were added or modified since the last check.
+ *
+ * Records are kept in a local database in MMM's installation directory.
+ */
+public class VerifiedFiles {
+    private static final String DATABASE_FILENAME = "verified.db";
+    
+    private static final String SQL_GET_FILE = "SELECT \"size\", \"mtime\", \"fileKey\", \"sha1\" FROM \"VerifiedFile\" WHERE \"path\" = ? LIMIT 1";
+    private static final String SQL_ADD_FILE = "INSERT OR REPLACE INTO \"VerifiedFile\" VALUES( ?, ?, ?, ?, ? )";
+    private static final String SQL_DEL_FILE = "DELETE FROM \"VerifiedFile\" WHERE \"path\" = ?";
+    
+    private static SQLiteDatabase db;
+    
+    /**
+     * What a file looked like when we stat'ed it.
+     */
+    private static class FileStat {
+        private final String key;
+        private final long   size;
+        private final long   mtime;
+        private final String fileKey;
+        
+        private FileStat( final String key, final BasicFileAttributes attrs ) {
+            this.key     = key;
+            this.size    = attrs.size();
+            this.mtime   = attrs.lastModifiedTime().to( TimeUnit.NANOSECONDS );
+            this.fileKey = attrs.fileKey() != null ? attrs.fileKey().toString() : null;
+        }
+    }
+    
+    private VerifiedFiles() {
+        throw new Error();
+    }
+    
+    public static void init() throws ClassNotFoundException, SQLException {
+        db = new SQLiteDatabase( MMM.getDirectory().resolve( DATABASE_FILENAME ) );
+        
+        createDatabaseTables();
+    }
+    
+    public static void close() {
+        IO.closeQuietly( db );
+    }
+    
+    private static void createDatabaseTables() throws SQLException {
+        db.write( ( conn ) -> {
+            try( Statement stmt = conn.createStatement() ) {
+                stmt.executeUpdate(
+                    "CREATE TABLE IF NOT EXISTS \"VerifiedFile\"( " +
+                    "    \"path\" TEXT NOT NULL PRIMARY KEY, "     +
+                    "    \"size\" BIGINT NOT NULL, "               +
+                    "    \"mtime\" BIGINT NOT NULL, "              +
+                    "    \"fileKey\" TEXT, "                       +
+                    "    \"sha1\" TEXT NOT NULL "                  +
+                    ") WITHOUT ROWID"
+                );
+            }
+        } );
+    }
+    
+    /**
+     * Returns the SHA-1 hash of the file at the given path, or null if there is no file at the given path.
+     * The file is only read if it has changed since its hash was last recorded (or if its hash has never been recorded).
+     *
+     * @param path
+     * @return
+     * @throws IOException
+     * @throws SQLException
+     */
+    public static String getSHA1( final Path path ) throws IOException, SQLException {
+        //Stat the file before we hash it.
+        //If the file is modified while we're hashing it, its stat won't match the one we record, and we'll hash it again next time.
+        FileStat stat = stat( path );
+        if( stat == null ) {
+            db.write( ( conn ) -> forget( conn, getKey( path ) ) );
+            return null;
+        }
+        
+        //Has the file changed since we last hashed it?
+        String sha1 = db.read( ( conn ) -> getRecordedSHA1( conn, stat ) );
+        if( sha1 != null )
+            return sha1;
+        
+        //It has (or we've never seen it before); hash it again.
+        //The file is read without holding a connection, so hashing a large file doesn't keep anyone else waiting.
+        String hashed = hash( path );
+        db.write( ( conn ) -> record( conn, stat, hashed ) );
+        return hashed;
+    }
+    
+    /**
+     * Returns true if the file at the given path exists and has the given SHA-1 hash, false otherwise.
+     * See {@link #getSHA1(Path)}.
+     *
+     * @param path
+     * @param sha1 - Expected SHA-1 hash. If this is null, only checks that the file exists.
+     * @return
+     * @throws IOException
+     * @throws SQLException
+     */
+    public static boolean verify( final Path path, final String sha1 ) throws IOException, SQLException {
+        if( sha1 == null )
+            return Files.isRegularFile( path );
+        return sha1.equalsIgnoreCase( Objects.toString( getSHA1( path ), "" ) );
+    }
+    
+    /**
+     * Checks each of the given files against its expected SHA-1 hash, and returns the paths of the files that are missing or don't match.
+     * The recorded hashes of all of the files are looked up on one connection, and updated in a single transaction.
+     *
+     * @param files - Maps the path of each file to check to its expected SHA-1 hash (or null if only the file's existence should be checked).
+     * @return
+     * @throws IOException
+     * @throws SQLException
+     */
+    public static List< Path > verify( final Map< Path, String > files ) throws IOException, SQLException {
+        //Stat every file we need to hash
+        List< Path >           failed  = new ArrayList< Path >();
+        Map< Path, FileStat >  stats   = new LinkedHashMap< Path, FileStat >();
+        List< String >         missing = new ArrayList< String >();
+        for( Entry< Path, String > entry : files.entrySet() ) {
+            Path path = entry.getKey();
+            if( entry.getValue() == null ) {
+                if( !Files.isRegularFile( path ) )
+                    failed.add( path );
+                continue;
+            }
+            FileStat stat = stat( path );
+            if( stat == null ) {
+                missing.add( getKey( path ) );
+                failed.add( path );
+            } else {
+                stats.put( path, stat );
+            }
+        }
+        
+        //Look up the hashes of the files that haven't changed since we last hashed them
+        Map< Path, String > recorded = db.read( ( conn ) -> {
+            Map< Path, String > sha1s = new HashMap< Path, String >();
+            for( Entry< Path, FileStat > entry : stats.entrySet() )
+                sha1s.put( entry.getKey(), getRecordedSHA1( conn, entry.getValue() ) );
+            return sha1s;
+        } );
+        
+        //Hash the rest, and check them all
+        Map< FileStat, String > hashed = new LinkedHashMap< FileStat, String >();
+        for( Entry< Path, FileStat > entry : stats.entrySet() ) {
+            Path   path = entry.getKey();
+            String sha1 = recorded.get( path );
+            if( sha1 == null ) {
+                sha1 = hash( path );
+                hashed.put( entry.getValue(), sha1 );
+            }
+            if( !sha1.equalsIgnoreCase( files.get( path ) ) )
+                failed.add( path );
+        }
+        
+        if( !hashed.isEmpty() || !missing.isEmpty() ) {
+            db.write( ( conn ) -> {
+                for( Entry< FileStat, String > entry : hashed.entrySet() )
+                    record( conn, entry.getKey(), entry.getValue() );
+                for( String key : missing )
+                    forget( conn, key );
+            } );
+        }
+        return failed;
+    }
+    
+    /**
+     * Forgets the recorded hash of the file at the given path (if any).
+     * @param path
+     * @throws SQLException
+     */
+    public static void forget( final Path path ) throws SQLException {
+        db.write( ( conn ) -> forget( conn, getKey( path ) ) );
+    }
+    
+    /**
+     * Stats the file at the given path, or returns null if there is no file at the given path.
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    private static FileStat stat( final Path path ) throws IOException {
+        try {
+            return new FileStat( getKey( path ), Files.readAttributes( path, BasicFileAttributes.class ) );
+        } catch( NoSuchFileException e ) {
+            return null;
+        }
+    }
+    
+    /**
+     * Reads the file at the given path and returns its SHA-1 hash.
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    private static String hash( final Path path ) throws IOException {
+        MessageDigest digest = Misc.newSHA1();
+        IO.update( path, digest );
+        return IO.toHex( digest );
+    }
+    
+    /**
+     * Returns the recorded hash of the given file, or null if it has changed since its hash was recorded (or its hash has never been recorded).
+     * @param conn
+     * @param stat
+     * @return
+     * @throws SQLException
+     */
+    private static String getRecordedSHA1( final SQLiteConnection conn, final FileStat stat ) throws SQLException {
+        PreparedStatement stmt_getFile = conn.prepare( SQL_GET_FILE );
+        stmt_getFile.setString( 1, stat.key );
+        try( ResultSet rs = stmt_getFile.executeQuery() ) {
+            if( rs.next()                      &&
+                rs.getLong( 1 ) == stat.size   &&
+                rs.getLong( 2 ) == stat.mtime  &&
+                Objects.equals( rs.getString( 3 ), stat.fileKey )
+            ) {
+                return rs.getString( 4 );
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Records the hash of the given file.
+     * @param conn
+     * @param stat
+     * @param sha1
+     * @throws SQLException
+     */
+    private static void record( final SQLiteConnection conn, final FileStat stat, final String sha1 ) throws SQLException {
+        PreparedStatement stmt_addFile = conn.prepare( SQL_ADD_FILE );
+        stmt_addFile.setString( 1, stat.key );
+        stmt_addFile.setLong(   2, stat.size );
+        stmt_addFile.setLong(   3, stat.mtime );
+        stmt_addFile.setString( 4, stat.fileKey );
+        stmt_addFile.setString( 5, sha1 );
+        stmt_addFile.executeUpdate();
+    }
+    
+    private static void forget( final SQLiteConnection conn, final String key ) throws SQLException {
+        PreparedStatement stmt_delFile = conn.prepare( SQL_DEL_FILE );
+        stmt_delFile.setString( 1, key );
+        stmt_delFile.executeUpdate();
+    }
+    
+    /**
+     * Files are identified by their absolute path.
+     */
+    private static String getKey( final Path path ) {
+        return path.toAbsolutePath().normalize().toString();
+    }
+}
@@ -15,6 +15,7 @@ import java.io.RandomAccessFile;
 import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.security.MessageDigest;
 import java.util.jar.JarFile;
@@ -209,14 +210,14 @@ public class IO {
         
         byte[] buf = new byte[4096];
         int c;
-        MessageDigest md5 = Misc.newSHA1();
+        MessageDigest md5 = Misc.newMD5();
         while( ( c = in.read( buf ) ) != -1 ) {
             out.write( buf, 0, c );
             md5.update( buf, 0, c );
         }
         String computedHash = String.format( "%032x", new BigInteger( 1, md5.digest() ) );
         if( !computedHash.equals( hash ) )
-            throw new RuntimeException( "SHA-1 hash (" + computedHash + ") doesn't match expected hash (" + hash + ")." );
+            throw new RuntimeException( "MD5 hash (" + computedHash + ") doesn't match expected hash (" + hash + ")." );
     }
     
     /**
@@ -283,6 +284,91 @@ public class IO {
             throw new RuntimeException( "SHA-1 hash (" + computedHash + ") doesn't match expected hash (" + sha1Hash + ")." );
     }
     
+    /**
+     * Same as {@link #copy(InputStream, OutputStream)}, but also updates each of the given digests with the data as it passes from in to out.
+     * @param in
+     * @param out
+     * @param digests
+     * @throws IOException
+     */
+    public static void copy( final InputStream in, final OutputStream out, final MessageDigest... digests ) throws IOException {
+        byte[] buf = new byte[4096];
+        int c;
+        while( ( c = in.read( buf ) ) != -1 ) {
+            out.write( buf, 0, c );
+            for( MessageDigest digest : digests )
+                digest.update( buf, 0, c );
+        }
+    }
+    
+    /**
+     * Reads the file at the given path from start to finish, updating each of the given digests with its contents.
+     * @param path
+     * @param digests
+     * @throws IOException
+     */
+    public static void update( final Path path, final MessageDigest... digests ) throws IOException {
+        byte[] buf = new byte[8192];
+        int c;
+        try( InputStream in = Files.newInputStream( path ) ) {
+            while( ( c = in.read( buf ) ) != -1 )
+                for( MessageDigest digest : digests )
+                    digest.update( buf, 0, c );
+        }
+    }
+    
+    /**
+     * Completes the given digest and returns the resulting hash as a lowercase hexadecimal string.
+     * @param digest
+     * @return
+     */
+    public static String toHex( final MessageDigest digest ) {
+        return String.format( "%0" + ( 2 * digest.getDigestLength() ) + "x", new BigInteger( 1, digest.digest() ) );
+    }
+    
+    /**
+     * Checks the file at the given path against the given MD5 and/or SHA-1 hash (either may be null), reading the file only once.
+     * A RuntimeException is generated if either hash doesn't match.
+     * @param path
+     * @param md5Hash
+     * @param sha1Hash
+     * @throws IOException
+     */
+    public static void verify( final Path path, final String md5Hash, final String sha1Hash ) throws IOException {
+        MessageDigest md5  = md5Hash  != null ? Misc.newMD5()  : null;
+        MessageDigest sha1 = sha1Hash != null ? Misc.newSHA1() : null;
+        if( md5 != null && sha1 != null ) { update( path, md5, sha1 ); }
+        else if( md5 != null )            { update( path, md5 );       }
+        else if( sha1 != null )           { update( path, sha1 );      }
+        else                              { return;                    }
+        
+        verify( md5, md5Hash, sha1, sha1Hash );
+    }
+    
+    /**
+     * Completes the given MD5 and/or SHA-1 digests (either may be null) and compares them against the given hashes.
+     * A RuntimeException is generated if either hash doesn't match.
+     * @param md5
+     * @param md5Hash
+     * @param sha1
+     * @param sha1Hash
+     */
+    public static void verify( final MessageDigest md5, final String md5Hash, final MessageDigest sha1, final String sha1Hash ) {
+        //Check MD5 hash
+        if( md5 != null ) {
+            String computedHash = toHex( md5 );
+            if( !computedHash.equals( md5Hash ) )
+                throw new RuntimeException( "MD5 hash (" + computedHash + ") doesn't match expected hash (" + md5Hash + ")." );
+        }
+        
+        //Check SHA-1 hash
+        if( sha1 != null ) {
+            String computedHash = toHex( sha1 );
+            if( !computedHash.equals( sha1Hash ) )
+                throw new RuntimeException( "SHA-1 hash (" + computedHash + ") doesn't match expected hash (" + sha1Hash + ")." );
+        }
+    }
+    
     /**
      * Reads len bytes from the given RandomAccessFile at the given position
      * and returns a byte array containing the bytes we read.
@@ -331,6 +417,36 @@ public class IO {
         }
     }
     
+    /**
+     * Makes the file at from also appear at to, without copying it if at all possible.
+     * In order of preference, to is made a hard link to from, a symbolic link to from, or a copy of from.
+     * Hard links are preferred since they keep working if from is later deleted, but can't span file systems.
+     * Does nothing if a file already exists at to.
+     * @param from
+     * @param to
+     * @throws IOException
+     */
+    public static void link( final Path from, final Path to ) throws IOException {
+        if( Files.exists( to, LinkOption.NOFOLLOW_LINKS ) )
+            return;
+        Files.createDirectories( to.getParent() );
+        
+        //Try a hard link first...
+        try {
+            Files.createLink( to, from );
+            return;
+        } catch( UnsupportedOperationException | IOException e ) {}
+        
+        //...then a symbolic link...
+        try {
+            Files.createSymbolicLink( to, from.toAbsolutePath() );
+            return;
+        } catch( UnsupportedOperationException | IOException e ) {}
+        
+        //...and if neither is possible, settle for a copy.
+        Files.copy( from, to );
+    }
+    
     /**
      * Returns a ZipFile or JarFile, depending on the extension of the given file.
      * @param path
@@ -0,0 +1,229 @@
+package net.theJ89.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A thread-safe cache that loads values on demand.
+ *
+ * <ul>
+ * <li>Loads are single-flight: if several threads ask for the same key at once, one of them loads it and the others wait for the result.
+ *     Loads of different keys run in parallel. A failed load isn't cached; the next get() tries again.</li>
+ * <li>The cache is bounded by weight (see {@link Weigher}). When a load pushes the total weight over the maximum,
+ *     the least recently used values are evicted until it fits again.</li>
+ * <li>Each value is loaded along with a stamp describing its source (see {@link Stamper}), e.g. a file's size and modification time.
+ *     If the stamp has changed by the time the value is asked for again, the value is reloaded.</li>
+ * </ul>
+ */
+public class LoadingCache< K, V > {
+    /**
+     * Loads the value for a key that isn't in the cache.
+     */
+    @FunctionalInterface
+    public static interface Loader< K, V > {
+        V load( K key ) throws IOException;
+    }
+    
+    /**
+     * Returns how much of the cache's maximum weight a value takes up (e.g. 1 for every value to limit the number of values).
+     */
+    @FunctionalInterface
+    public static interface Weigher< V > {
+        long weigh( V value );
+    }
+    
+    /**
+     * Returns a stamp for a key's source that changes whenever the source does (compared with equals()).
+     * This is called on every get(), so it should be cheap compared to loading the value.
+     */
+    @FunctionalInterface
+    public static interface Stamper< K > {
+        Object stamp( K key ) throws IOException;
+    }
+    
+    private static class Node< V > {
+        public final Object                 stamp;
+        public final CompletableFuture< V > value;
+        public long                         weight;
+        
+        public Node( final Object stamp ) {
+            this.stamp  = stamp;
+            this.value  = new CompletableFuture< V >();
+            this.weight = 0;
+        }
+    }
+    
+    private final Loader< K, V > loader;
+    private final Weigher< V >   weigher;
+    private final Stamper< K >   stamper;
+    private final long           maxWeight;
+    
+    //Nodes in least to most recently used order. Guarded by lock, along with weight.
+    private final LinkedHashMap< K, Node< V > > nodes;
+    private final ReentrantLock                 lock;
+    private long                                weight;
+    
+    /**
+     * LoadingCache constructor.
+     * @param loader - Loads values for keys that aren't cached.
+     * @param weigher - Weighs loaded values.
+     * @param stamper - Stamps the source of a key's value, so changes to it can be detected.
+     * @param maxWeight - Maximum total weight of the cached values. The most recently loaded value is kept even if it alone is heavier than this.
+     */
+    public LoadingCache( final Loader< K, V > loader, final Weigher< V > weigher, final Stamper< K > stamper, final long maxWeight ) {
+        this.loader    = loader;
+        this.weigher   = weigher;
+        this.stamper   = stamper;
+        this.maxWeight = maxWeight;
+        
+        this.nodes     = new LinkedHashMap< K, Node< V > >( 16, 0.75f, true );
+        this.lock      = new ReentrantLock();
+        this.weight    = 0;
+    }
+    
+    /**
+     * Returns the value for the given key, loading it if it isn't cached, or if its source has changed since it was loaded.
+     * @param key
+     * @return
+     * @throws IOException - If the stamper or loader throws one, or the thread is interrupted while waiting for another thread to load the value.
+     */
+    public V get( final K key ) throws IOException {
+        Object     stamp = this.stamper.stamp( key );
+        Node< V >  node;
+        boolean    owner = false;
+        
+        this.lock.lock();
+        try {
+            node = this.nodes.get( key );
+            
+            //Values whose source has changed are replaced. Values that are still loading are waited on regardless.
+            if( node != null && node.value.isDone() && !Objects.equals( node.stamp, stamp ) ) {
+                this.remove( key, node );
+                node = null;
+            }
+            if( node == null ) {
+                node = new Node< V >( stamp );
+                this.nodes.put( key, node );
+                owner = true;
+            }
+        } finally {
+            this.lock.unlock();
+        }
+        
+        if( owner )
+            return this.load( key, node );
+        return await( node );
+    }
+    
+    /**
+     * Removes the value for the given key, if it's cached.
+     * A load of the key that is in progress is unaffected, but its value won't be cached.
+     * @param key
+     */
+    public void invalidate( final K key ) {
+        this.lock.lock();
+        try {
+            Node< V > node = this.nodes.get( key );
+            if( node != null )
+                this.remove( key, node );
+        } finally {
+            this.lock.unlock();
+        }
+    }
+    
+    /**
+     * Loads the value for the given node, which the calling thread has just added to the cache, and wakes up any threads waiting for it.
+     * @param key
+     * @param node
+     * @return
+     * @throws IOException
+     */
+    private V load( final K key, final Node< V > node ) throws IOException {
+        V value;
+        try {
+            value = this.loader.load( key );
+        } catch( IOException | RuntimeException | Error e ) {
+            this.lock.lock();
+            try {
+                if( this.nodes.get( key ) == node )
+                    this.remove( key, node );
+            } finally {
+                this.lock.unlock();
+            }
+            node.value.completeExceptionally( e );
+            throw e;
+        }
+        
+        this.lock.lock();
+        try {
+            //The node may have been invalidated while we were loading; if so, don't count its weight.
+            if( this.nodes.get( key ) == node ) {
+                node.weight  = this.weigher.weigh( value );
+                this.weight += node.weight;
+                this.evict( node );
+            }
+        } finally {
+            this.lock.unlock();
+        }
+        node.value.complete( value );
+        return value;
+    }
+    
+    /**
+     * Evicts least recently used values until the cache's total weight is within its maximum.
+     * Values that are still loading and the given node are skipped.
+     * Must be called while holding the lock.
+     * @param keep
+     */
+    private void evict( final Node< V > keep ) {
+        Iterator< Node< V > > it = this.nodes.values().iterator();
+        while( this.weight > this.maxWeight && it.hasNext() ) {
+            Node< V > node = it.next();
+            if( node == keep || !node.value.isDone() )
+                continue;
+            it.remove();
+            this.weight -= node.weight;
+        }
+    }
+    
+    /**
+     * Removes the given node from the cache. Must be called while holding the lock.
+     * @param key
+     * @param node
+     */
+    private void remove( final K key, final Node< V > node ) {
+        this.nodes.remove( key );
+        this.weight -= node.weight;
+    }
+    
+    /**
+     * Waits for another thread to finish loading the given node's value.
+     * Exceptions thrown by the load are rethrown here.
+     * @param node
+     * @return
+     * @throws IOException
+     */
+    private static < V > V await( final Node< V > node ) throws IOException {
+        try {
+            return node.value.get();
+        } catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException( "Interrupted while waiting for a value to load." );
+        } catch( ExecutionException e ) {
+            Throwable cause = e.getCause();
+            if( cause instanceof IOException )
+                throw (IOException)cause;
+            if( cause instanceof RuntimeException )
+                throw (RuntimeException)cause;
+            if( cause instanceof Error )
+                throw (Error)cause;
+            throw new RuntimeException( cause );
+        }
+    }
+}
@@ -7,6 +7,8 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
 public class Misc {
@@ -105,6 +107,21 @@ public class Misc {
         };
     }
     
+    /**
+     * Returns a thread factory that creates daemon threads named prefix + "1", prefix + "2", and so on.
+     * Pools using it never keep the JVM alive while they're idle.
+     * @param prefix
+     * @return
+     */
+    public static ThreadFactory newDaemonThreadFactory( final String prefix ) {
+        final AtomicInteger threadNumber = new AtomicInteger( 1 );
+        return ( r ) -> {
+            Thread t = new Thread( r, prefix + threadNumber.getAndIncrement() );
+            t.setDaemon( true );
+            return t;
+        };
+    }
+    
     /**
      * Returns a new MD5 instance.
      * @return